@@ -0,0 +1,226 @@
+package com.library.seat.bench;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.library.seat.LibrarySeatApplication;
+import com.library.seat.common.Result;
+import com.library.seat.modules.reservation.entity.Reservation;
+import com.library.seat.modules.reservation.service.ReservationService;
+import com.library.seat.modules.reservation.service.SeatAvailabilityIndex;
+import com.library.seat.modules.reservation.service.SlotClaimService;
+import com.library.seat.modules.seat.entity.Seat;
+import com.library.seat.modules.seat.service.SeatService;
+import com.library.seat.modules.sys.entity.SysUser;
+import com.library.seat.modules.sys.service.ISysConfigService;
+import com.library.seat.modules.sys.service.UserDetailsServiceImpl;
+
+/**
+ * 预约冲突检测模式基准测试
+ * 启动完整应用 (连接 application.yml 中配置的 MySQL 与 Redis)，用固定种子生成同一份预约请求序列，
+ * 先后在 redis 与 optimistic 两种模式下由多个线程并发调用 ReservationService.reserve，
+ * 统计吞吐、成功/冲突/异常次数与耗时分位数，并校验没有任何 座位-时段 或 用户-时段 被重复预约成功。
+ * 每轮结束后删除本轮创建的预约、释放 Redis 占用、重建内存索引并恢复座位状态，保证两种模式面对相同初始状态。
+ * 请求只落在少量热点座位上以制造冲突；第一轮为预热，不计入结果。
+ * <p>
+ * 会写入真实数据 (预约、通知、日志)，只应对开发库运行。
+ * 运行：mvn -Pbench test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.library.seat.bench.ReservationModeBenchmark [-Dexec.args="线程数 请求数 热点座位数 用户数"]
+ */
+public class ReservationModeBenchmark {
+
+    private static final String[] SLOTS = {"morning", "afternoon", "evening"};
+
+    private static final String[] MODES = {"redis", "optimistic"};
+
+    private final ReservationService reservationService;
+    private final SeatService seatService;
+    private final SlotClaimService slotClaimService;
+    private final SeatAvailabilityIndex availabilityIndex;
+
+    private ReservationModeBenchmark(ConfigurableApplicationContext context) {
+        reservationService = context.getBean(ReservationService.class);
+        seatService = context.getBean(SeatService.class);
+        slotClaimService = context.getBean(SlotClaimService.class);
+        availabilityIndex = context.getBean(SeatAvailabilityIndex.class);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        int requests = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        int hotSeats = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+        int users = args.length > 3 ? Integer.parseInt(args[3]) : 200;
+
+        SpringApplication application = new SpringApplication(LibrarySeatApplication.class);
+        application.setDefaultProperties(Map.of("server.port", "0"));
+        ConfigurableApplicationContext context = application.run();
+        try {
+            ReservationModeBenchmark bench = new ReservationModeBenchmark(context);
+            int minScore = context.getBean(ISysConfigService.class).getIntValue("min_credit_score", 60);
+            List<Long> userIds = context.getBean(UserDetailsServiceImpl.class).list(new LambdaQueryWrapper<SysUser>()
+                            .select(SysUser::getId)
+                            .eq(SysUser::getStatus, "active")
+                            .ge(SysUser::getCreditScore, minScore)
+                            .last("LIMIT " + users))
+                    .stream().map(SysUser::getId).toList();
+            List<Seat> seats = bench.seatService.list(new LambdaQueryWrapper<Seat>()
+                    .select(Seat::getId, Seat::getStatus)
+                    .ne(Seat::getStatus, "maintenance")
+                    .last("LIMIT " + hotSeats));
+            if (userIds.isEmpty() || seats.isEmpty()) {
+                System.out.println("No eligible users or seats in the configured database");
+                return;
+            }
+
+            List<Reservation> workload = workload(requests, userIds, seats);
+            System.out.printf("threads=%d requests=%d seats=%d users=%d%n", threads, requests, seats.size(), userIds.size());
+            System.out.printf("%-11s %10s %10s %10s %8s %10s %10s %10s %10s%n",
+                    "mode", "req/s", "succeeded", "conflicts", "errors", "p50(ms)", "p95(ms)", "p99(ms)", "max(ms)");
+
+            for (int round = 0; round < 2; round++) {
+                for (String mode : MODES) {
+                    RoundResult result = bench.run(mode, workload, threads, seats);
+                    if (round > 0) {
+                        result.print(mode);
+                    }
+                }
+            }
+        } finally {
+            context.close();
+        }
+    }
+
+    /**
+     * 固定种子生成的请求序列：随机用户在热点座位中随机选择一个时段
+     */
+    private static List<Reservation> workload(int requests, List<Long> userIds, List<Seat> seats) {
+        Random random = new Random(42);
+        List<Reservation> workload = new ArrayList<>(requests);
+        for (int i = 0; i < requests; i++) {
+            Reservation reservation = new Reservation();
+            reservation.setUserId(userIds.get(random.nextInt(userIds.size())));
+            reservation.setSeatId(seats.get(random.nextInt(seats.size())).getId());
+            reservation.setSlot(SLOTS[random.nextInt(SLOTS.length)]);
+            workload.add(reservation);
+        }
+        return workload;
+    }
+
+    private RoundResult run(String mode, List<Reservation> workload, int threads, List<Seat> seats) throws Exception {
+        ReflectionTestUtils.setField(reservationService, "conflictMode", mode);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Attempt>> futures = new ArrayList<>(workload.size());
+        long startedAt = System.nanoTime();
+        try {
+            for (Reservation template : workload) {
+                futures.add(executor.submit(() -> attempt(template)));
+            }
+            List<Attempt> attempts = new ArrayList<>(futures.size());
+            for (Future<Attempt> future : futures) {
+                attempts.add(future.get());
+            }
+            long elapsed = System.nanoTime() - startedAt;
+            return RoundResult.of(attempts, elapsed);
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+            cleanup(futures, seats);
+        }
+    }
+
+    private Attempt attempt(Reservation template) {
+        // reserve 会改写入参，每次请求使用副本
+        Reservation reservation = new Reservation();
+        reservation.setUserId(template.getUserId());
+        reservation.setSeatId(template.getSeatId());
+        reservation.setSlot(template.getSlot());
+        long startedAt = System.nanoTime();
+        try {
+            Result<Map<String, Object>> result = reservationService.reserve(reservation);
+            Long id = result.isSuccess() ? (Long) result.getData().get("id") : null;
+            return new Attempt(template, System.nanoTime() - startedAt, result.isSuccess(), id, false);
+        } catch (Exception e) {
+            return new Attempt(template, System.nanoTime() - startedAt, false, null, true);
+        }
+    }
+
+    /**
+     * 删除本轮创建的预约并撤销其 Redis 占用与内存索引，恢复座位原状态
+     */
+    private void cleanup(List<Future<Attempt>> futures, List<Seat> seats) throws Exception {
+        List<Long> ids = new ArrayList<>();
+        for (Future<Attempt> future : futures) {
+            Attempt attempt = future.get();
+            if (attempt.reservationId() != null) {
+                ids.add(attempt.reservationId());
+            }
+        }
+        if (!ids.isEmpty()) {
+            for (Reservation res : reservationService.listByIds(ids)) {
+                slotClaimService.releaseAfterCommit(res);
+            }
+            reservationService.removeByIds(ids);
+        }
+        availabilityIndex.rebuild();
+        for (Seat seat : seats) {
+            seatService.updateStatus(seat.getId(), seat.getStatus());
+        }
+    }
+
+    private record Attempt(Reservation request, long elapsedNanos, boolean success, Long reservationId, boolean error) {
+    }
+
+    private record RoundResult(long elapsedNanos, int total, int succeeded, int errors, long[] sortedNanos) {
+
+        static RoundResult of(List<Attempt> attempts, long elapsedNanos) {
+            Set<String> seatSlots = new HashSet<>();
+            Set<String> userSlots = new HashSet<>();
+            int succeeded = 0;
+            int errors = 0;
+            long[] nanos = new long[attempts.size()];
+            for (int i = 0; i < attempts.size(); i++) {
+                Attempt attempt = attempts.get(i);
+                nanos[i] = attempt.elapsedNanos();
+                if (attempt.error()) {
+                    errors++;
+                }
+                if (!attempt.success()) continue;
+                succeeded++;
+                Reservation request = attempt.request();
+                if (!seatSlots.add(request.getSeatId() + ":" + request.getSlot())
+                        || !userSlots.add(request.getUserId() + ":" + request.getSlot())) {
+                    throw new IllegalStateException("Duplicate active reservation accepted: " + request.getSeatId()
+                            + "/" + request.getUserId() + "/" + request.getSlot());
+                }
+            }
+            Arrays.sort(nanos);
+            return new RoundResult(elapsedNanos, attempts.size(), succeeded, errors, nanos);
+        }
+
+        void print(String mode) {
+            System.out.printf("%-11s %10.0f %10d %10d %8d %10.2f %10.2f %10.2f %10.2f%n",
+                    mode, total / (elapsedNanos / 1_000_000_000.0), succeeded, total - succeeded - errors, errors,
+                    percentile(0.50), percentile(0.95), percentile(0.99), sortedNanos[sortedNanos.length - 1] / 1_000_000.0);
+        }
+
+        double percentile(double p) {
+            int index = Math.min(sortedNanos.length - 1, (int) Math.ceil(p * sortedNanos.length) - 1);
+            return sortedNanos[Math.max(0, index)] / 1_000_000.0;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.library.seat.common.cache;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+
+/**
+ * 容量有限、带过期时间的本机缓存
+ * 基于 ConcurrentHashMap，读写不加全局锁；每条记录记下最近访问时间，读取时只更新该字段。
+ * 写入后超出容量时由一个线程整理：先删除已过期的记录，仍超出时按最近访问时间淘汰最旧的一批，
+ * 降到容量的 90%，整理开销分摊到多次写入上。淘汰顺序是近似 LRU，整理期间容量可能短暂超出。
+ */
+public class BoundedTtlCache<K, V> {
+
+    private final Map<K, Node<V>> entries = new ConcurrentHashMap<>();
+
+    private final int maxEntries;
+
+    private final long ttlMillis;
+
+    private final AtomicBoolean trimming = new AtomicBoolean();
+
+    private static class Node<V> {
+        final V value;
+        final long expiresAt;
+        volatile long accessedAt;
+
+        Node(V value, long now, long ttlMillis) {
+            this.value = value;
+            this.expiresAt = now + ttlMillis;
+            this.accessedAt = now;
+        }
+    }
+
+    private record Candidate<K, V>(K key, Node<V> node, long accessedAt) {
+    }
+
+    public BoundedTtlCache(int maxEntries, long ttlMillis) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * 未过期的值，不存在或已过期时返回 null
+     */
+    public V get(K key) {
+        long now = System.currentTimeMillis();
+        Node<V> node = entries.get(key);
+        if (node == null) return null;
+        if (node.expiresAt <= now) {
+            entries.remove(key, node);
+            return null;
+        }
+        node.accessedAt = now;
+        return node.value;
+    }
+
+    /**
+     * 写入或覆盖，过期时间从现在重新计算
+     */
+    public void put(K key, V value) {
+        entries.put(key, new Node<>(value, System.currentTimeMillis(), ttlMillis));
+        trimIfNeeded();
+    }
+
+    /**
+     * 原子地写入：已有未过期的值时不写入并返回该值，否则写入并返回 null
+     */
+    public V putIfAbsent(K key, V value) {
+        long now = System.currentTimeMillis();
+        Node<V> created = new Node<>(value, now, ttlMillis);
+        Node<V> current = entries.compute(key, (k, old) -> old != null && old.expiresAt > now ? old : created);
+        if (current != created) {
+            current.accessedAt = now;
+            return current.value;
+        }
+        trimIfNeeded();
+        return null;
+    }
+
+    public void remove(K key) {
+        entries.remove(key);
+    }
+
+    public void removeIf(Predicate<V> predicate) {
+        entries.values().removeIf(node -> predicate.test(node.value));
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private void trimIfNeeded() {
+        if (entries.size() <= maxEntries || !trimming.compareAndSet(false, true)) return;
+        try {
+            long now = System.currentTimeMillis();
+            entries.values().removeIf(node -> node.expiresAt <= now);
+            int excess = entries.size() - (maxEntries - maxEntries / 10);
+            if (excess <= 0) return;
+
+            // 先固定访问时间再排序，避免排序期间被并发读取改动
+            List<Candidate<K, V>> candidates = new ArrayList<>(entries.size());
+            entries.forEach((key, node) -> candidates.add(new Candidate<>(key, node, node.accessedAt)));
+            candidates.sort(Comparator.comparingLong(Candidate::accessedAt));
+            for (int i = 0; i < excess && i < candidates.size(); i++) {
+                Candidate<K, V> candidate = candidates.get(i);
+                entries.remove(candidate.key(), candidate.node());
+            }
+        } finally {
+            trimming.set(false);
+        }
+    }
+}
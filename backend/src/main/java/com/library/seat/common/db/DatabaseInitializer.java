@@ -1,5 +1,7 @@
 package com.library.seat.common.db;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
@@ -9,6 +11,7 @@ import javax.sql.DataSource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.ClassPathResource;
 import org.springframework.stereotype.Component;
 
 import jakarta.annotation.PostConstruct;
@@ -23,6 +26,8 @@ public class DatabaseInitializer {
 
     private static final Logger log = LoggerFactory.getLogger(DatabaseInitializer.class);
 
+    private static final String QUARTZ_SCRIPT = "org/quartz/impl/jdbcjobstore/tables_mysql_innodb.sql";
+
     @Autowired
     private DataSource dataSource;
 
@@ -142,12 +147,45 @@ public class DatabaseInitializer {
                 "ALTER TABLE `sys_reservation` ADD COLUMN `deadline` datetime DEFAULT NULL COMMENT '签到/暂离截止时间'",
                 "ALTER TABLE `sys_reservation` ADD COLUMN `type` varchar(20) DEFAULT 'appointment' COMMENT '类型: appointment, immediate'",
                 "ALTER TABLE `sys_reservation` ADD COLUMN `slot` varchar(20) DEFAULT NULL COMMENT '时段: morning, afternoon, evening'",
-                "ALTER TABLE `sys_reservation` ADD COLUMN `reservation_date` date DEFAULT NULL COMMENT '预约日期'"
+                "ALTER TABLE `sys_reservation` ADD COLUMN `reservation_date` date DEFAULT NULL COMMENT '预约日期'",
+                "ALTER TABLE `sys_reservation` ADD KEY `idx_status_deadline` (`status`, `deadline`)",
+                "ALTER TABLE `sys_reservation` ADD COLUMN `last_present_time` datetime DEFAULT NULL COMMENT '最后在场时间（用于占座检测）'",
+                "ALTER TABLE `sys_reservation` ADD COLUMN `total_away_minutes` int(11) DEFAULT '0' COMMENT '累计离开时长(分钟)'",
+                "ALTER TABLE `sys_reservation` ADD COLUMN `occupancy_alert_sent` tinyint(1) DEFAULT '0' COMMENT '是否已发送占座预警 0:否 1:是'",
+                "ALTER TABLE `sys_reservation` ADD KEY `idx_status_present` (`status`, `last_present_time`)"
             };
             for (String sql : resAlters) {
                 try { stmt.execute(sql); } catch (SQLException e) { }
             }
 
+            // 活跃预约唯一性约束: 仅 reserved/checked_in/away 状态生成键值，其余为 NULL (唯一索引允许多个 NULL)，
+            // 保证同一 (座位, 日期, 时段) 与 (用户, 日期, 时段) 最多只有一条活跃预约
+            String[] activeKeyAlters = {
+                "ALTER TABLE `sys_reservation` ADD COLUMN `active_seat_key` varchar(64) GENERATED ALWAYS AS (" +
+                        "IF(`status` IN ('reserved','checked_in','away') AND `deleted` = 0, " +
+                        "CONCAT(`seat_id`, ':', DATE(`start_time`), ':', `slot`), NULL)) STORED COMMENT '活跃预约座位键'",
+                "ALTER TABLE `sys_reservation` ADD COLUMN `active_user_key` varchar(64) GENERATED ALWAYS AS (" +
+                        "IF(`status` IN ('reserved','checked_in','away') AND `deleted` = 0, " +
+                        "CONCAT(`user_id`, ':', DATE(`start_time`), ':', `slot`), NULL)) STORED COMMENT '活跃预约用户键'"
+            };
+            for (String sql : activeKeyAlters) {
+                try { stmt.execute(sql); } catch (SQLException e) { }
+            }
+            String[] activeKeyIndexes = {
+                "ALTER TABLE `sys_reservation` ADD UNIQUE KEY `uk_active_seat` (`active_seat_key`)",
+                "ALTER TABLE `sys_reservation` ADD UNIQUE KEY `uk_active_user` (`active_user_key`)"
+            };
+            for (String sql : activeKeyIndexes) {
+                try {
+                    stmt.execute(sql);
+                } catch (SQLException e) {
+                    // 1061: 索引已存在；其它错误 (如存量数据中已有重复的活跃预约) 需要人工处理
+                    if (e.getErrorCode() != 1061) {
+                        log.warn("Failed to create active reservation unique key: {}", e.getMessage());
+                    }
+                }
+            }
+
             // 5. 创建违规申诉表
             log.info("Checking/Creating table: sys_appeal");
             stmt.execute("CREATE TABLE IF NOT EXISTS `sys_appeal` (" +
@@ -227,10 +265,84 @@ public class DatabaseInitializer {
                     "(8, 'checkin_after_window', '15', '预约起始后可签到时间(分钟)'), " +
                     "(9, 'late_reservation_grace_period', '5', '过时预约签到宽限时间(分钟)')");
 
+            // 10. 创建事务消息发件箱表
+            log.info("Checking/Creating table: sys_outbox");
+            stmt.execute("CREATE TABLE IF NOT EXISTS `sys_outbox` (" +
+                    "`id` bigint(20) NOT NULL AUTO_INCREMENT COMMENT '主键ID'," +
+                    "`event_type` varchar(32) NOT NULL COMMENT '类型: user_push, notification'," +
+                    "`recipient` varchar(64) DEFAULT NULL COMMENT '接收人 (用户ID或用户名)'," +
+                    "`destination` varchar(128) DEFAULT NULL COMMENT '推送目的地'," +
+                    "`payload` text NOT NULL COMMENT '消息内容 (JSON)'," +
+                    "`status` varchar(16) DEFAULT 'pending' COMMENT 'pending, sent, failed'," +
+                    "`attempts` int(11) DEFAULT '0' COMMENT '投递失败次数'," +
+                    "`last_error` varchar(500) DEFAULT NULL COMMENT '最近一次失败原因'," +
+                    "`create_time` datetime(3) DEFAULT CURRENT_TIMESTAMP(3) COMMENT '创建时间'," +
+                    "`sent_time` datetime(3) DEFAULT NULL COMMENT '投递时间'," +
+                    "PRIMARY KEY (`id`)," +
+                    "KEY `idx_status_id` (`status`, `id`)" +
+                    ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='事务消息发件箱表'");
+
+            // 11. 创建定时任务运行记录表
+            log.info("Checking/Creating table: sys_job_log");
+            stmt.execute("CREATE TABLE IF NOT EXISTS `sys_job_log` (" +
+                    "`id` bigint(20) NOT NULL AUTO_INCREMENT COMMENT '主键ID'," +
+                    "`job_name` varchar(64) NOT NULL COMMENT '任务名称'," +
+                    "`instance_id` varchar(128) DEFAULT NULL COMMENT '执行节点'," +
+                    "`scheduled_time` datetime(3) DEFAULT NULL COMMENT '计划触发时间'," +
+                    "`fire_time` datetime(3) DEFAULT NULL COMMENT '实际触发时间'," +
+                    "`duration_ms` bigint(20) DEFAULT NULL COMMENT '耗时(毫秒)'," +
+                    "`status` varchar(16) NOT NULL COMMENT 'success, failed, misfired'," +
+                    "`message` varchar(500) DEFAULT NULL COMMENT '错误信息或补偿说明'," +
+                    "`create_time` datetime(3) DEFAULT CURRENT_TIMESTAMP(3) COMMENT '创建时间'," +
+                    "PRIMARY KEY (`id`)," +
+                    "KEY `idx_job_time` (`job_name`, `fire_time`)," +
+                    "KEY `idx_create_time` (`create_time`)" +
+                    ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='定时任务运行记录表'");
+
+            // 12. 创建 Quartz 集群调度表
+            initQuartzTables(stmt);
+
             log.info("Database initialization completed successfully.");
 
         } catch (SQLException e) {
             log.error("Database initialization failed", e);
         }
     }
+
+    /**
+     * 使用 Quartz 自带的 MySQL InnoDB 建表脚本创建 QRTZ_ 表。
+     * 去掉脚本中的 DROP TABLE 并改为 IF NOT EXISTS，多个节点同时启动或重复执行都不会清掉已有的调度状态。
+     */
+    private void initQuartzTables(Statement stmt) throws SQLException {
+        log.info("Checking/Creating Quartz tables: QRTZ_*");
+        String script;
+        try {
+            script = new String(new ClassPathResource(QUARTZ_SCRIPT).getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            log.error("Quartz schema script {} not found", QUARTZ_SCRIPT, e);
+            return;
+        }
+
+        StringBuilder body = new StringBuilder();
+        for (String line : script.split("\\R")) {
+            if (!line.trim().startsWith("#")) {
+                body.append(line).append('\n');
+            }
+        }
+        for (String sql : body.toString().split(";")) {
+            String upper = sql.trim().toUpperCase();
+            if (upper.isEmpty() || upper.startsWith("DROP") || upper.equals("COMMIT")) continue;
+            if (upper.startsWith("CREATE TABLE ") && !upper.startsWith("CREATE TABLE IF NOT EXISTS")) {
+                sql = "CREATE TABLE IF NOT EXISTS " + sql.trim().substring("CREATE TABLE ".length());
+            }
+            try {
+                stmt.execute(sql);
+            } catch (SQLException e) {
+                // 1061: 索引已存在
+                if (e.getErrorCode() != 1061) {
+                    throw e;
+                }
+            }
+        }
+    }
 }
@@ -3,6 +3,9 @@ package com.library.seat.common.exception;
 import com.library.seat.common.Result;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -23,6 +26,13 @@ public class GlobalExceptionHandler {
         return Result.error(403, "权限不足");
     }
 
+    @ExceptionHandler(TooManyRequestsException.class)
+    public ResponseEntity<Result<String>> handleTooManyRequestsException(TooManyRequestsException e) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(Result.error(429, e.getMessage()));
+    }
+
     @ExceptionHandler(Exception.class)
     public Result<String> handleException(Exception e) {
         log.error("System Error: ", e);
@@ -0,0 +1,18 @@
+package com.library.seat.common.exception;
+
+/**
+ * 限流拒绝，由 GlobalExceptionHandler 转换为 429 并带上 Retry-After
+ */
+public class TooManyRequestsException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public TooManyRequestsException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
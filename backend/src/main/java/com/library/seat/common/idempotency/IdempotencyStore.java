@@ -0,0 +1,161 @@
+package com.library.seat.common.idempotency;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import com.alibaba.fastjson2.JSON;
+import com.library.seat.common.Result;
+import com.library.seat.common.cache.BoundedTtlCache;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * 幂等键存储
+ * 同一作用域 (用户 + 接口) 下携带相同 Idempotency-Key 的重复请求直接返回首次请求的 Result，不再进入业务层。
+ * 本机使用 BoundedTtlCache；开启 redis-enabled 后以 Redis 作为第二级，
+ * 使重试落到其它实例时同样生效。Redis 不可用时退化为仅本机缓存。
+ */
+@Component
+public class IdempotencyStore {
+
+    private static final Logger log = LoggerFactory.getLogger(IdempotencyStore.class);
+
+    private static final String REDIS_PREFIX = "idem:";
+    private static final String IN_FLIGHT = "__in_flight__";
+    private static final int MAX_KEY_LENGTH = 64;
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    @Value("${idempotency.max-entries:10000}")
+    private int maxEntries;
+
+    @Value("${idempotency.ttl-seconds:600}")
+    private long ttlSeconds;
+
+    @Value("${idempotency.redis-enabled:false}")
+    private boolean redisEnabled;
+
+    private BoundedTtlCache<String, Entry> entries;
+
+    /**
+     * result 为 null 表示处理中
+     */
+    private record Entry(Result<?> result) {
+
+        boolean inFlight() {
+            return result == null;
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        entries = new BoundedTtlCache<>(maxEntries, TimeUnit.SECONDS.toMillis(ttlSeconds));
+    }
+
+    /**
+     * 以幂等方式执行 action；key 为空时直接执行
+     *
+     * @param key   请求头 Idempotency-Key
+     * @param scope 作用域，如 "12:reserve"、"12:check-in:35"
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Result<T> execute(String key, String scope, Supplier<Result<T>> action) {
+        if (key == null || key.isBlank()) {
+            return action.get();
+        }
+        if (key.length() > MAX_KEY_LENGTH) {
+            return Result.error(400, "Idempotency-Key 长度不能超过 " + MAX_KEY_LENGTH);
+        }
+
+        String id = scope + ":" + key;
+        Entry existing = claimLocal(id);
+        if (existing != null) {
+            return existing.inFlight() ? inFlightError() : (Result<T>) existing.result();
+        }
+
+        if (redisEnabled) {
+            Result<T> remote = claimRemote(id);
+            if (remote != null) {
+                if (Integer.valueOf(409).equals(remote.getCode())) {
+                    release(id, false);
+                } else {
+                    complete(id, remote, false);
+                }
+                return remote;
+            }
+        }
+
+        Result<T> result;
+        try {
+            result = action.get();
+        } catch (RuntimeException e) {
+            // 执行异常不缓存，允许客户端重试
+            release(id, redisEnabled);
+            throw e;
+        }
+        complete(id, result, redisEnabled);
+        return result;
+    }
+
+    /**
+     * 返回已存在的记录 (完成或处理中)；不存在时写入处理中标记并返回 null
+     */
+    private Entry claimLocal(String id) {
+        return entries.putIfAbsent(id, new Entry(null));
+    }
+
+    /**
+     * Redis 上尝试占用；已有结果时返回该结果，已被其它实例占用时返回 409，成功占用返回 null
+     */
+    @SuppressWarnings("unchecked")
+    private <T> Result<T> claimRemote(String id) {
+        try {
+            Boolean claimed = redisTemplate.opsForValue().setIfAbsent(REDIS_PREFIX + id, IN_FLIGHT, ttlSeconds, TimeUnit.SECONDS);
+            if (Boolean.TRUE.equals(claimed)) {
+                return null;
+            }
+            String value = redisTemplate.opsForValue().get(REDIS_PREFIX + id);
+            if (value == null || IN_FLIGHT.equals(value)) {
+                return inFlightError();
+            }
+            return JSON.parseObject(value, Result.class);
+        } catch (Exception e) {
+            log.warn("Idempotency Redis tier unavailable, using local store only: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private void complete(String id, Result<?> result, boolean writeRemote) {
+        entries.put(id, new Entry(result));
+        if (writeRemote) {
+            try {
+                redisTemplate.opsForValue().set(REDIS_PREFIX + id, JSON.toJSONString(result), ttlSeconds, TimeUnit.SECONDS);
+            } catch (Exception e) {
+                log.warn("Failed to store idempotent result in Redis: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void release(String id, boolean releaseRemote) {
+        entries.remove(id);
+        if (releaseRemote) {
+            try {
+                redisTemplate.delete(REDIS_PREFIX + id);
+            } catch (Exception e) {
+                log.warn("Failed to release idempotency key in Redis: {}", e.getMessage());
+            }
+        }
+    }
+
+    private static <T> Result<T> inFlightError() {
+        return Result.error(409, "请求正在处理中，请勿重复提交");
+    }
+}
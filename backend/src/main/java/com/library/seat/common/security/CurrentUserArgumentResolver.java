@@ -0,0 +1,33 @@
+package com.library.seat.common.security;
+
+import org.springframework.core.MethodParameter;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.ModelAndViewContainer;
+
+/**
+ * 解析 @CurrentUser 参数，直接取 SecurityContext 中的 LoginUser，不查库
+ */
+public class CurrentUserArgumentResolver implements HandlerMethodArgumentResolver {
+
+    @Override
+    public boolean supportsParameter(MethodParameter parameter) {
+        if (!parameter.hasParameterAnnotation(CurrentUser.class)) return false;
+        Class<?> type = parameter.getParameterType();
+        return type == LoginUser.class || type == Long.class;
+    }
+
+    @Override
+    public Object resolveArgument(MethodParameter parameter, ModelAndViewContainer mavContainer,
+                                  NativeWebRequest webRequest, WebDataBinderFactory binderFactory) {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        LoginUser user = auth != null && auth.getPrincipal() instanceof LoginUser ? (LoginUser) auth.getPrincipal() : null;
+        if (parameter.getParameterType() == Long.class) {
+            return user != null ? user.getId() : null;
+        }
+        return user;
+    }
+}
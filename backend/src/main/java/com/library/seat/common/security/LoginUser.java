@@ -0,0 +1,92 @@
+package com.library.seat.common.security;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+/**
+ * 已认证用户
+ * 除用户名外还带有用户ID、角色和账号状态，鉴权后放入 SecurityContext，
+ * 控制器通过 @CurrentUser 直接取得，无需再按用户名查库。
+ * 只有登录校验密码时携带密码哈希，缓存与请求上下文中的实例不含密码。
+ */
+public class LoginUser implements UserDetails {
+
+    private final Long id;
+
+    private final String username;
+
+    private final String password;
+
+    private final String role;
+
+    private final String status;
+
+    private final List<GrantedAuthority> authorities;
+
+    public LoginUser(Long id, String username, String password, String role, String status) {
+        this.id = id;
+        this.username = username;
+        this.password = password;
+        this.role = role;
+        this.status = status;
+        this.authorities = role != null
+                ? Collections.singletonList(new SimpleGrantedAuthority(role))
+                : Collections.emptyList();
+    }
+
+    /**
+     * 去掉密码哈希的副本，用于缓存和请求上下文
+     */
+    public LoginUser withoutPassword() {
+        return password == null ? this : new LoginUser(id, username, null, role, status);
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getRole() {
+        return role;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    /**
+     * 是否为管理员或图书馆员
+     */
+    public boolean isStaff() {
+        return "admin".equals(role) || "librarian".equals(role);
+    }
+
+    @Override
+    public String getUsername() {
+        return username;
+    }
+
+    @Override
+    public String getPassword() {
+        return password;
+    }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return authorities;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return "active".equals(status);
+    }
+
+    @Override
+    public String toString() {
+        return "LoginUser{id=" + id + ", username=" + username + ", role=" + role + "}";
+    }
+}
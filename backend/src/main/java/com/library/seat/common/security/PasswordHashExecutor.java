@@ -0,0 +1,134 @@
+package com.library.seat.common.security;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.library.seat.common.exception.TooManyRequestsException;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * 密码哈希专用线程池
+ * 登录、注册中的 BCrypt 计算 (约 100ms CPU) 放到独立的有界线程池执行，请求线程提交后立即释放，
+ * 登录高峰不再占满 Tomcat 线程、拖慢预约与签到。
+ * 线程池与队列都满时直接拒绝，返回 429 与按当前积压估算的 Retry-After。
+ */
+@Component
+public class PasswordHashExecutor {
+
+    private static final Logger log = LoggerFactory.getLogger(PasswordHashExecutor.class);
+
+    private static final long MAX_RETRY_AFTER_SECONDS = 30;
+
+    /**
+     * 0 表示取 CPU 核数的一半 (至少 1)
+     */
+    @Value("${auth.hash.pool-size:0}")
+    private int poolSize;
+
+    @Value("${auth.hash.queue-capacity:32}")
+    private int queueCapacity;
+
+    private ThreadPoolExecutor executor;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder totalTaskNanos = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final AtomicLong maxTaskNanos = new AtomicLong();
+
+    @PostConstruct
+    public void start() {
+        if (poolSize <= 0) {
+            poolSize = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        }
+        AtomicInteger counter = new AtomicInteger();
+        executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+                    Thread thread = new Thread(r, "password-hash-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        log.info("Password hash executor started with {} threads, queue capacity {}", poolSize, queueCapacity);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * 提交包含密码哈希的任务；线程池饱和时抛出 TooManyRequestsException
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> task) {
+        long queuedAt = System.nanoTime();
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                long startedAt = System.nanoTime();
+                totalWaitNanos.add(startedAt - queuedAt);
+                try {
+                    future.complete(task.get());
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                } finally {
+                    long took = System.nanoTime() - startedAt;
+                    totalTaskNanos.add(took);
+                    maxTaskNanos.accumulateAndGet(took, Math::max);
+                    completed.increment();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new TooManyRequestsException("登录人数较多，请稍后重试", retryAfterSeconds());
+        }
+        submitted.increment();
+        return future;
+    }
+
+    /**
+     * 按当前积压与平均耗时估算排空所需秒数
+     */
+    private long retryAfterSeconds() {
+        long backlog = executor.getQueue().size() + executor.getActiveCount();
+        double seconds = backlog * averageTaskMillis() / poolSize / 1000.0;
+        return Math.min(MAX_RETRY_AFTER_SECONDS, Math.max(1, (long) Math.ceil(seconds)));
+    }
+
+    private double averageTaskMillis() {
+        long count = completed.sum();
+        return count > 0 ? totalTaskNanos.sum() / 1_000_000.0 / count : 100;
+    }
+
+    public Map<String, Object> getStats() {
+        long count = completed.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("poolSize", poolSize);
+        stats.put("queueCapacity", queueCapacity);
+        stats.put("queueDepth", executor.getQueue().size());
+        stats.put("active", executor.getActiveCount());
+        stats.put("submitted", submitted.sum());
+        stats.put("completed", count);
+        stats.put("rejected", rejected.sum());
+        stats.put("avgTaskMs", count > 0 ? Math.round(averageTaskMillis() * 10) / 10.0 : 0);
+        stats.put("maxTaskMs", TimeUnit.NANOSECONDS.toMillis(maxTaskNanos.get()));
+        stats.put("avgQueueWaitMs", count > 0 ? TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.sum() / count) : 0);
+        return stats;
+    }
+}
@@ -0,0 +1,90 @@
+package com.library.seat.common.security;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Component;
+
+import com.library.seat.common.cache.BoundedTtlCache;
+import com.library.seat.common.utils.JwtUtils;
+import com.library.seat.modules.sys.service.UserDetailsServiceImpl;
+
+import io.jsonwebtoken.Claims;
+import jakarta.annotation.PostConstruct;
+
+/**
+ * 已认证用户缓存
+ * 令牌验签通过后按用户名取缓存中的 LoginUser，命中时不再查库；未命中时查询一次 (同时校验用户未被封禁)。
+ * 容量有限、按过期时间淘汰；管理员修改或封禁用户后立即失效，其它节点上的缓存最迟在过期后失效。
+ */
+@Component
+public class PrincipalCache {
+
+    @Autowired
+    private UserDetailsServiceImpl userDetailsService;
+
+    @Value("${security.principal-cache.max-entries:10000}")
+    private int maxEntries;
+
+    @Value("${security.principal-cache.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    private BoundedTtlCache<String, LoginUser> entries;
+
+    /**
+     * 每次失效递增，防止失效前开始的查库结果在失效后写回缓存
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        entries = new BoundedTtlCache<>(maxEntries, TimeUnit.SECONDS.toMillis(ttlSeconds));
+    }
+
+    /**
+     * 已验签令牌对应的用户；用户不存在、已封禁或令牌中的用户ID与当前用户不一致 (同名用户被重建) 时返回 null
+     */
+    public LoginUser resolve(Claims claims) {
+        LoginUser user = get(claims.getSubject());
+        if (user == null) return null;
+        Object uid = claims.get(JwtUtils.CLAIM_USER_ID);
+        if (uid instanceof Number && ((Number) uid).longValue() != user.getId()) {
+            return null;
+        }
+        return user;
+    }
+
+    public LoginUser get(String username) {
+        if (username == null) return null;
+        LoginUser cached = entries.get(username);
+        if (cached != null) {
+            return cached;
+        }
+        long expectedGeneration = generation.get();
+
+        LoginUser user;
+        try {
+            user = userDetailsService.loadUserByUsername(username).withoutPassword();
+        } catch (UsernameNotFoundException e) {
+            return null;
+        }
+
+        // 先写入再检查：查库期间发生过失效则撤回，失效在写入之后发生时由 invalidate 自己清除
+        entries.put(username, user);
+        if (generation.get() != expectedGeneration) {
+            entries.remove(username);
+        }
+        return user;
+    }
+
+    /**
+     * 用户被修改或封禁后移除其缓存
+     */
+    public void invalidate(Long userId) {
+        generation.incrementAndGet();
+        entries.removeIf(user -> user.getId().equals(userId));
+    }
+}
@@ -0,0 +1,164 @@
+package com.library.seat.common.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+/**
+ * 刷新令牌存储 (Redis)
+ * 登录时签发一个刷新令牌族 (family)，之后每次 /auth/refresh 都作废当前刷新令牌并签发同族的新令牌。
+ * 已使用过的令牌保留到过期，再次出现视为被盗用，整个令牌族立即失效，双方都需重新登录；
+ * 刚轮换后的短暂宽限期内的重复使用 (多个标签页同时刷新) 只拒绝、不作废。
+ * Redis 中只保存令牌的 SHA-256 摘要。刷新不校验密码、不写用户表，用户状态取自 PrincipalCache。
+ */
+@Component
+public class RefreshTokenStore {
+
+    private static final Logger log = LoggerFactory.getLogger(RefreshTokenStore.class);
+
+    private static final String TOKEN_PREFIX = "auth:rt:";
+
+    private static final String FAMILY_PREFIX = "auth:rtf:";
+
+    /**
+     * KEYS[1]: 令牌键, KEYS[2]: 令牌族键; ARGV[1]: 当前时间 (毫秒), ARGV[2]: 宽限期 (毫秒)
+     * 返回 1 轮换成功，0 令牌不存在或令牌族已失效，-1 检测到重复使用 (已作废令牌族)，-2 宽限期内的重复使用
+     */
+    private static final DefaultRedisScript<Long> ROTATE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[2]) == 0 then\n" +
+            "  return 0\n" +
+            "end\n" +
+            "local used = redis.call('HGET', KEYS[1], 'used')\n" +
+            "if not used then\n" +
+            "  return 0\n" +
+            "end\n" +
+            "if used == '1' then\n" +
+            "  local usedAt = tonumber(redis.call('HGET', KEYS[1], 'usedAt') or '0')\n" +
+            "  if tonumber(ARGV[1]) - usedAt <= tonumber(ARGV[2]) then\n" +
+            "    return -2\n" +
+            "  end\n" +
+            "  redis.call('DEL', KEYS[2])\n" +
+            "  return -1\n" +
+            "end\n" +
+            "redis.call('HSET', KEYS[1], 'used', '1', 'usedAt', ARGV[1])\n" +
+            "return 1", Long.class);
+
+    private final SecureRandom random = new SecureRandom();
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    @Autowired
+    private PrincipalCache principalCache;
+
+    @Value("${jwt.refresh.ttl-seconds:1209600}")
+    private long ttlSeconds;
+
+    @Value("${jwt.refresh.reuse-grace-ms:10000}")
+    private long reuseGraceMs;
+
+    /**
+     * 一次成功的轮换：令牌对应的用户和新的刷新令牌
+     */
+    public record Rotation(LoginUser user, String refreshToken) {
+    }
+
+    /**
+     * 登录时签发新令牌族的第一个刷新令牌
+     */
+    public String issue(LoginUser user) {
+        String family = UUID.randomUUID().toString().replace("-", "");
+        redisTemplate.opsForValue().set(FAMILY_PREFIX + family, String.valueOf(user.getId()), ttlSeconds, TimeUnit.SECONDS);
+        return create(family, user);
+    }
+
+    /**
+     * 作废传入的刷新令牌并签发同族新令牌；令牌无效、已被使用或用户已封禁时返回 null
+     */
+    public Rotation rotate(String refreshToken) {
+        String family = familyOf(refreshToken);
+        if (family == null) return null;
+
+        String tokenKey = TOKEN_PREFIX + digest(refreshToken);
+        Long outcome = redisTemplate.execute(ROTATE_SCRIPT, Arrays.asList(tokenKey, FAMILY_PREFIX + family),
+                String.valueOf(System.currentTimeMillis()), String.valueOf(reuseGraceMs));
+        if (outcome == null || outcome != 1) {
+            if (outcome != null && outcome == -1) {
+                log.warn("Refresh token reuse detected, revoked token family {}", family);
+            }
+            return null;
+        }
+
+        List<Object> fields = redisTemplate.opsForHash().multiGet(tokenKey, Arrays.asList("uid", "username"));
+        LoginUser user = principalCache.get((String) fields.get(1));
+        if (user == null || !String.valueOf(user.getId()).equals(fields.get(0))) {
+            // 用户已封禁或被删除
+            redisTemplate.delete(FAMILY_PREFIX + family);
+            return null;
+        }
+
+        redisTemplate.expire(FAMILY_PREFIX + family, ttlSeconds, TimeUnit.SECONDS);
+        return new Rotation(user, create(family, user));
+    }
+
+    /**
+     * 退出登录：作废该刷新令牌所在的整个令牌族
+     */
+    public void revoke(String refreshToken) {
+        String family = familyOf(refreshToken);
+        if (family == null) return;
+        if (Boolean.TRUE.equals(redisTemplate.hasKey(TOKEN_PREFIX + digest(refreshToken)))) {
+            redisTemplate.delete(FAMILY_PREFIX + family);
+        }
+    }
+
+    private String create(String family, LoginUser user) {
+        byte[] secret = new byte[32];
+        random.nextBytes(secret);
+        String token = family + "." + Base64.getUrlEncoder().withoutPadding().encodeToString(secret);
+
+        Map<String, String> fields = new LinkedHashMap<>();
+        fields.put("uid", String.valueOf(user.getId()));
+        fields.put("username", user.getUsername());
+        fields.put("used", "0");
+        String tokenKey = TOKEN_PREFIX + digest(token);
+        redisTemplate.opsForHash().putAll(tokenKey, fields);
+        redisTemplate.expire(tokenKey, ttlSeconds, TimeUnit.SECONDS);
+        return token;
+    }
+
+    /**
+     * 令牌格式为 {令牌族}.{随机串}
+     */
+    private static String familyOf(String refreshToken) {
+        if (refreshToken == null) return null;
+        int dot = refreshToken.indexOf('.');
+        return dot > 0 ? refreshToken.substring(0, dot) : null;
+    }
+
+    private static String digest(String token) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(sha256.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
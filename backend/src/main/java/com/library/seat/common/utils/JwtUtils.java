@@ -1,6 +1,8 @@
 package com.library.seat.common.utils;
 
+import com.library.seat.common.security.LoginUser;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
@@ -8,6 +10,7 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
+import jakarta.annotation.PostConstruct;
 import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
 import java.util.Date;
@@ -18,14 +21,27 @@ import java.util.function.Function;
 @Component
 public class JwtUtils {
 
+    public static final String CLAIM_ROLE = "role";
+
+    public static final String CLAIM_USER_ID = "uid";
+
     @Value("${jwt.secret:library_seat_secret_key_change_it}")
     private String secret;
 
-    @Value("${jwt.expiration:3600000}") // 1 hour
+    @Value("${jwt.expiration:900000}") // 15 minutes, renewed via refresh token
     private Long expiration;
 
-    private SecretKey getSigningKey() {
-        return Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+    private SecretKey signingKey;
+
+    private JwtParser parser;
+
+    /**
+     * 签名密钥与解析器只构建一次
+     */
+    @PostConstruct
+    public void init() {
+        signingKey = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+        parser = Jwts.parser().verifyWith(signingKey).build();
     }
 
     public String extractUsername(String token) {
@@ -41,28 +57,30 @@ public class JwtUtils {
         return claimsResolver.apply(claims);
     }
 
-    private Claims extractAllClaims(String token) {
-        return Jwts.parser()
-                .verifyWith(getSigningKey())
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
+    /**
+     * 验签并解析令牌 (一次解析)，签名无效或已过期时抛出 JwtException
+     */
+    public Claims parseClaims(String token) {
+        return parser.parseSignedClaims(token).getPayload();
     }
 
-    private Boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+    private Claims extractAllClaims(String token) {
+        return parseClaims(token);
     }
 
     public String generateToken(UserDetails userDetails) {
         Map<String, Object> claims = new HashMap<>();
         if (userDetails.getAuthorities() != null && !userDetails.getAuthorities().isEmpty()) {
-            claims.put("role", userDetails.getAuthorities().iterator().next().getAuthority());
+            claims.put(CLAIM_ROLE, userDetails.getAuthorities().iterator().next().getAuthority());
+        }
+        if (userDetails instanceof LoginUser) {
+            claims.put(CLAIM_USER_ID, ((LoginUser) userDetails).getId());
         }
         return createToken(claims, userDetails.getUsername());
     }
 
     public String getRole(String token) {
-        return extractClaim(token, claims -> (String) claims.get("role"));
+        return extractClaim(token, claims -> (String) claims.get(CLAIM_ROLE));
     }
 
     private String createToken(Map<String, Object> claims, String subject) {
@@ -71,12 +89,13 @@ public class JwtUtils {
                 .subject(subject)
                 .issuedAt(new Date(System.currentTimeMillis()))
                 .expiration(new Date(System.currentTimeMillis() + expiration))
-                .signWith(getSigningKey(), SignatureAlgorithm.HS256)
+                .signWith(signingKey, SignatureAlgorithm.HS256)
                 .compact();
     }
 
     public Boolean validateToken(String token, UserDetails userDetails) {
-        final String username = extractUsername(token);
-        return (username.equals(userDetails.getUsername()) && !isTokenExpired(token));
+        // 解析时已校验签名与过期时间
+        final Claims claims = parseClaims(token);
+        return userDetails.getUsername().equals(claims.getSubject());
     }
 }
@@ -0,0 +1,59 @@
+package com.library.seat.common.websocket;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 公共主题的消息体
+ * 字段名与前端 websocket.ts 中解析的字段一一对应。
+ */
+public final class BroadcastMessages {
+
+    private BroadcastMessages() {
+    }
+
+    /**
+     * /topic/seats 与 /topic/seats/{area} 的单个座位变更
+     */
+    public record SeatUpdate(Long id, String status) {
+    }
+
+    /**
+     * 一个合并窗口内的座位变更；origin 为发出该帧的节点，seq 只在同一 origin 内连续
+     */
+    public record SeatBatch(String event, String origin, long seq, List<SeatUpdate> updates, Date timestamp) {
+        public SeatBatch(String origin, long seq, List<SeatUpdate> updates) {
+            this("seat_batch", origin, seq, updates, new Date());
+        }
+    }
+
+    /**
+     * /topic/online_status 中单个用户的在线状态 (active / offline)
+     */
+    public record UserStatus(String username, String status) {
+    }
+
+    /**
+     * 一个合并窗口内的在线状态变化
+     */
+    public record UserStatusBatch(String event, List<UserStatus> changes, Date timestamp) {
+        public UserStatusBatch(List<UserStatus> changes) {
+            this("user_status_batch", changes, new Date());
+        }
+    }
+
+    /**
+     * /topic/user_seat_status
+     */
+    public record UserSeatChange(String event, String username, String seatNo) {
+        public UserSeatChange(String username, String seatNo) {
+            this("user_seat_change", username, seatNo);
+        }
+    }
+
+    /**
+     * /topic/stats/{area}
+     */
+    public record AreaStats(String area, long totalSeats, long available, long occupied, long maintenance) {
+    }
+}
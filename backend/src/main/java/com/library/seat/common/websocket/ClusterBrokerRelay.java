@@ -0,0 +1,221 @@
+package com.library.seat.common.websocket;
+
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONObject;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * 多实例部署下的 STOMP 消息中继 (websocket.cluster.enabled=true 时启用)
+ * 应用发往 broker 的消息在本节点照常由 simple broker 投递给本地会话，同时经 Redis pub/sub 转发给其它节点：
+ * /topic/** 发布一次到广播频道，由每个节点各自向本地订阅者扇出；
+ * /user/{name}/** 先查集群会话登记表 (ws:user:{name} -> 节点ID: 会话数)，只发布到该用户有会话的其它节点的专属频道。
+ * 收到的消息带上中继标记重新送入本地 brokerChannel，不会被再次转发。
+ * 节点异常退出时残留的登记只会导致向无人订阅的频道多发布一次，不影响投递。
+ */
+@Component
+@ConditionalOnProperty(name = "websocket.cluster.enabled", havingValue = "true")
+public class ClusterBrokerRelay implements ChannelInterceptor {
+
+    private static final Logger log = LoggerFactory.getLogger(ClusterBrokerRelay.class);
+
+    private static final String RELAYED_HEADER = "clusterRelayed";
+
+    private static final String BROADCAST_CHANNEL = "ws:broadcast";
+
+    private static final Duration REGISTRY_TTL = Duration.ofDays(1);
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    @Autowired
+    private RedisConnectionFactory connectionFactory;
+
+    @Autowired
+    @Lazy
+    private SimpMessagingTemplate messagingTemplate;
+
+    private RedisMessageListenerContainer container;
+
+    /**
+     * 本节点各用户的会话数，下线时用于清理登记表
+     */
+    private final Map<String, AtomicInteger> localSessions = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void start() {
+        container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener((message, pattern) -> onRelayed(message.getBody()),
+                List.of(new ChannelTopic(BROADCAST_CHANNEL), new ChannelTopic(nodeChannel(nodeId))));
+        container.afterPropertiesSet();
+        container.start();
+        log.info("STOMP cluster relay started, node {}", nodeId);
+    }
+
+    @PreDestroy
+    public void stop() throws Exception {
+        for (String username : localSessions.keySet()) {
+            try {
+                redisTemplate.opsForHash().delete(userKey(username), nodeId);
+            } catch (Exception e) {
+                log.warn("Failed to unregister sessions of {}: {}", username, e.getMessage());
+            }
+        }
+        container.stop();
+        container.destroy();
+    }
+
+    /**
+     * 拦截 brokerChannel：本地投递不受影响，额外把应用发出的消息转发给其它节点
+     */
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        MessageHeaders headers = message.getHeaders();
+        String destination = SimpMessageHeaderAccessor.getDestination(headers);
+        // 已解析为会话目的地的用户消息 (带原始目的地头) 与其它节点转发来的消息不再转发
+        if (SimpMessageHeaderAccessor.getMessageType(headers) != SimpMessageType.MESSAGE || destination == null
+                || Boolean.TRUE.equals(headers.get(RELAYED_HEADER))
+                || headers.get(SimpMessageHeaderAccessor.ORIGINAL_DESTINATION) != null) {
+            return message;
+        }
+        Object contentType = headers.get(MessageHeaders.CONTENT_TYPE);
+
+        try {
+            if (destination.startsWith("/topic/")) {
+                publish(BROADCAST_CHANNEL, destination, contentType, message.getPayload());
+            } else if (destination.startsWith("/user/")) {
+                String username = userOf(destination);
+                if (username != null) {
+                    for (Map.Entry<Object, Object> entry : redisTemplate.opsForHash().entries(userKey(username)).entrySet()) {
+                        String node = String.valueOf(entry.getKey());
+                        if (!nodeId.equals(node) && Integer.parseInt(String.valueOf(entry.getValue())) > 0) {
+                            publish(nodeChannel(node), destination, contentType, message.getPayload());
+                        }
+                    }
+                }
+            }
+        } catch (Exception e) {
+            // 转发失败不影响本节点投递
+            log.warn("Failed to relay {} to other nodes: {}", destination, e.getMessage());
+        }
+        return message;
+    }
+
+    @EventListener
+    public void onSessionConnected(SessionConnectedEvent event) {
+        Principal user = event.getUser();
+        if (user == null) return;
+        localSessions.computeIfAbsent(user.getName(), k -> new AtomicInteger()).incrementAndGet();
+        try {
+            redisTemplate.opsForHash().increment(userKey(user.getName()), nodeId, 1);
+            redisTemplate.expire(userKey(user.getName()), REGISTRY_TTL);
+        } catch (Exception e) {
+            log.warn("Failed to register session of {}: {}", user.getName(), e.getMessage());
+        }
+    }
+
+    @EventListener
+    public void onSessionDisconnect(SessionDisconnectEvent event) {
+        Principal user = event.getUser();
+        if (user == null) return;
+        AtomicInteger count = localSessions.get(user.getName());
+        if (count != null && count.decrementAndGet() <= 0) {
+            localSessions.remove(user.getName());
+        }
+        try {
+            Long remaining = redisTemplate.opsForHash().increment(userKey(user.getName()), nodeId, -1);
+            if (remaining == null || remaining <= 0) {
+                redisTemplate.opsForHash().delete(userKey(user.getName()), nodeId);
+            }
+        } catch (Exception e) {
+            log.warn("Failed to unregister session of {}: {}", user.getName(), e.getMessage());
+        }
+    }
+
+    private void publish(String channel, String destination, Object contentType, Object payload) {
+        byte[] body = payload instanceof byte[] ? (byte[]) payload : String.valueOf(payload).getBytes(StandardCharsets.UTF_8);
+        JSONObject envelope = new JSONObject();
+        envelope.put("node", nodeId);
+        envelope.put("destination", destination);
+        envelope.put("contentType", contentType != null ? contentType.toString() : null);
+        envelope.put("payload", Base64.getEncoder().encodeToString(body));
+        redisTemplate.convertAndSend(channel, envelope.toJSONString());
+    }
+
+    /**
+     * 其它节点转发来的消息：标记后送入本地 brokerChannel，由本地 simple broker / 用户目的地解析投递
+     */
+    private void onRelayed(byte[] raw) {
+        try {
+            JSONObject envelope = JSON.parseObject(new String(raw, StandardCharsets.UTF_8));
+            if (nodeId.equals(envelope.getString("node"))) return;
+
+            SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+            String contentType = envelope.getString("contentType");
+            if (contentType != null) {
+                accessor.setContentType(MimeType.valueOf(contentType));
+            }
+            accessor.setHeader(RELAYED_HEADER, Boolean.TRUE);
+            accessor.setLeaveMutable(true);
+            byte[] body = Base64.getDecoder().decode(envelope.getString("payload"));
+            messagingTemplate.send(envelope.getString("destination"), MessageBuilder.createMessage(body, accessor.getMessageHeaders()));
+        } catch (Exception e) {
+            log.error("Failed to deliver relayed STOMP message", e);
+        }
+    }
+
+    /**
+     * /user/{name}/queue/... 中的用户名
+     */
+    private static String userOf(String destination) {
+        int start = "/user/".length();
+        int end = destination.indexOf('/', start);
+        if (end <= start) return null;
+        return destination.substring(start, end).replace("%2F", "/");
+    }
+
+    private static String userKey(String username) {
+        return "ws:user:" + username;
+    }
+
+    private static String nodeChannel(String node) {
+        return "ws:node:" + node;
+    }
+}
@@ -0,0 +1,290 @@
+package com.library.seat.common.websocket;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONObject;
+import com.library.seat.common.websocket.BroadcastMessages.UserStatus;
+import com.library.seat.common.websocket.BroadcastMessages.UserStatusBatch;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * 在线用户登记表
+ * 按用户统计 WebSocket 会话数，同一用户多个标签页各自计数，最后一个会话断开才算下线。
+ * 上下线变化先按用户暂存，定期合并成一帧 user_status_batch 发送到 /topic/online_status，
+ * 同一窗口内先上线又下线的用户不会推送。
+ * websocket.cluster.enabled=true 时，各节点把本节点在线的用户登记到 ws:online:{节点ID} (带心跳续期)，
+ * 并经 Redis pub/sub 互相通知上下线，isOnline 对整个集群生效；状态帧只由发生变化的节点发送，
+ * 由 ClusterBrokerRelay 转发给其它节点的客户端。节点异常退出后其登记在过期后的下一次同步中清除。
+ * isOnline 只做两次哈希查找，不分配对象，可在消息广场逐条渲染时调用。
+ */
+@Component
+public class OnlineUserRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(OnlineUserRegistry.class);
+
+    private static final String PRESENCE_CHANNEL = "ws:presence";
+
+    private static final String NODE_KEY_PREFIX = "ws:online:";
+
+    private static final Duration NODE_TTL = Duration.ofSeconds(90);
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    @Autowired
+    private RedisConnectionFactory connectionFactory;
+
+    @Value("${websocket.cluster.enabled:false}")
+    private boolean clusterEnabled;
+
+    /**
+     * sessionId -> username，断开事件可能重复投递，按会话去重
+     */
+    private final Map<String, String> sessions = new ConcurrentHashMap<>();
+
+    /**
+     * 本节点各用户的会话数 (不含 0)
+     */
+    private final Map<String, Integer> localCounts = new ConcurrentHashMap<>();
+
+    /**
+     * 其它节点上在线的用户 -> 所在节点ID，同步时整体替换
+     */
+    private volatile Map<String, Set<String>> remoteNodes = new ConcurrentHashMap<>();
+
+    private final Object lock = new Object();
+
+    /**
+     * 本窗口内状态发生过变化的用户 -> 窗口开始前的在线状态
+     */
+    private Map<String, Boolean> pending = new LinkedHashMap<>();
+
+    private RedisMessageListenerContainer container;
+
+    @PostConstruct
+    public void start() {
+        if (!clusterEnabled) return;
+        container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener((message, pattern) -> onRemoteChange(message.getBody()), new ChannelTopic(PRESENCE_CHANNEL));
+        container.afterPropertiesSet();
+        container.start();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        sync();
+    }
+
+    @PreDestroy
+    public void stop() throws Exception {
+        if (!clusterEnabled) return;
+        try {
+            redisTemplate.delete(nodeKey(nodeId));
+            for (String username : localCounts.keySet()) {
+                publishChange(username, false);
+            }
+        } catch (Exception e) {
+            log.warn("Failed to unregister online users of node {}: {}", nodeId, e.getMessage());
+        }
+        container.stop();
+        container.destroy();
+    }
+
+    /**
+     * 用户是否在线 (任一节点上有会话)
+     */
+    public boolean isOnline(String username) {
+        if (username == null) return false;
+        return localCounts.containsKey(username) || remoteNodes.containsKey(username);
+    }
+
+    public void sessionConnected(String username, String sessionId) {
+        if (username == null || sessionId == null || sessions.putIfAbsent(sessionId, username) != null) return;
+
+        boolean wasOnline = remoteNodes.containsKey(username);
+        Integer count = localCounts.merge(username, 1, Integer::sum);
+        if (count == 1) {
+            markChanged(username, wasOnline);
+            onLocalChange(username, true);
+        }
+    }
+
+    public void sessionDisconnected(String sessionId) {
+        if (sessionId == null) return;
+        String username = sessions.remove(sessionId);
+        if (username == null) return;
+
+        Integer count = localCounts.computeIfPresent(username, (k, v) -> v > 1 ? v - 1 : null);
+        if (count == null) {
+            markChanged(username, true);
+            onLocalChange(username, false);
+        }
+    }
+
+    /**
+     * 发送本窗口内在线状态确有变化的用户
+     */
+    @Scheduled(fixedDelayString = "${websocket.presence.flush-ms:1000}")
+    public void flush() {
+        Map<String, Boolean> batch;
+        synchronized (lock) {
+            if (pending.isEmpty()) return;
+            batch = pending;
+            pending = new LinkedHashMap<>();
+        }
+
+        List<UserStatus> changes = new ArrayList<>();
+        for (Map.Entry<String, Boolean> entry : batch.entrySet()) {
+            boolean online = isOnline(entry.getKey());
+            if (online != entry.getValue()) {
+                changes.add(new UserStatus(entry.getKey(), online ? "active" : "offline"));
+            }
+        }
+        if (changes.isEmpty()) return;
+
+        try {
+            messagingTemplate.convertAndSend("/topic/online_status", new UserStatusBatch(changes));
+        } catch (Exception e) {
+            log.error("Failed to broadcast {} online status changes", changes.size(), e);
+        }
+    }
+
+    /**
+     * 续期本节点登记并重新载入其它节点的在线用户，清除已过期节点的残留
+     */
+    @Scheduled(fixedDelayString = "${websocket.presence.sync-interval-ms:30000}",
+            initialDelayString = "${websocket.presence.sync-interval-ms:30000}")
+    public void sync() {
+        if (!clusterEnabled) return;
+        try {
+            String ownKey = nodeKey(nodeId);
+            if (!localCounts.isEmpty()) {
+                Map<String, String> entries = new LinkedHashMap<>();
+                for (String username : localCounts.keySet()) {
+                    entries.put(username, "1");
+                }
+                redisTemplate.opsForHash().putAll(ownKey, entries);
+                redisTemplate.expire(ownKey, NODE_TTL);
+            }
+
+            Map<String, Set<String>> fresh = new ConcurrentHashMap<>();
+            ScanOptions options = ScanOptions.scanOptions().match(NODE_KEY_PREFIX + "*").count(100).build();
+            try (Cursor<String> cursor = redisTemplate.scan(options)) {
+                while (cursor.hasNext()) {
+                    String key = cursor.next();
+                    if (key.equals(ownKey)) continue;
+                    String node = key.substring(NODE_KEY_PREFIX.length());
+                    for (Object username : redisTemplate.opsForHash().keys(key)) {
+                        fresh.computeIfAbsent(String.valueOf(username), k -> ConcurrentHashMap.newKeySet()).add(node);
+                    }
+                }
+            }
+            remoteNodes = fresh;
+        } catch (Exception e) {
+            log.warn("Failed to sync online users across nodes: {}", e.getMessage());
+        }
+    }
+
+    public int getOnlineCount() {
+        if (remoteNodes.isEmpty()) return localCounts.size();
+        Set<String> all = new HashSet<>(localCounts.keySet());
+        all.addAll(remoteNodes.keySet());
+        return all.size();
+    }
+
+    private void markChanged(String username, boolean wasOnline) {
+        synchronized (lock) {
+            pending.putIfAbsent(username, wasOnline);
+        }
+    }
+
+    /**
+     * 本节点上某用户的第一个会话建立或最后一个会话断开：更新本节点登记并通知其它节点
+     */
+    private void onLocalChange(String username, boolean online) {
+        if (!clusterEnabled) return;
+        try {
+            String key = nodeKey(nodeId);
+            if (online) {
+                redisTemplate.opsForHash().put(key, username, "1");
+                redisTemplate.expire(key, NODE_TTL);
+            } else {
+                redisTemplate.opsForHash().delete(key, username);
+            }
+            publishChange(username, online);
+        } catch (Exception e) {
+            // 下一次同步会修正
+            log.warn("Failed to publish online status of {}: {}", username, e.getMessage());
+        }
+    }
+
+    private void publishChange(String username, boolean online) {
+        JSONObject message = new JSONObject();
+        message.put("node", nodeId);
+        message.put("username", username);
+        message.put("online", online);
+        redisTemplate.convertAndSend(PRESENCE_CHANNEL, message.toJSONString());
+    }
+
+    /**
+     * 其它节点的上下线通知：只更新本地视图，状态帧由发生变化的节点发送
+     */
+    private void onRemoteChange(byte[] raw) {
+        try {
+            JSONObject message = JSON.parseObject(new String(raw, StandardCharsets.UTF_8));
+            String node = message.getString("node");
+            String username = message.getString("username");
+            if (nodeId.equals(node) || username == null) return;
+
+            Map<String, Set<String>> nodes = remoteNodes;
+            if (message.getBooleanValue("online")) {
+                nodes.computeIfAbsent(username, k -> ConcurrentHashMap.newKeySet()).add(node);
+            } else {
+                nodes.computeIfPresent(username, (k, v) -> {
+                    v.remove(node);
+                    return v.isEmpty() ? null : v;
+                });
+            }
+        } catch (Exception e) {
+            log.error("Failed to apply remote online status change", e);
+        }
+    }
+
+    private static String nodeKey(String node) {
+        return NODE_KEY_PREFIX + node;
+    }
+}
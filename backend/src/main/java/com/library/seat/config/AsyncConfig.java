@@ -0,0 +1,65 @@
+package com.library.seat.config;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * 异步任务配置
+ * 预约事件的副作用 (广播/通知/日志) 使用有界线程池执行，队列满时由提交线程自行执行，
+ * 以限流代替丢弃。登录在密码校验之后的数据库操作另用一个线程池，不占用密码哈希线程。
+ */
+@Configuration
+@EnableAsync
+public class AsyncConfig {
+
+    @Value("${async.reservation-event.core-size:2}")
+    private int coreSize;
+
+    @Value("${async.reservation-event.max-size:4}")
+    private int maxSize;
+
+    @Value("${async.reservation-event.queue-capacity:1000}")
+    private int queueCapacity;
+
+    @Value("${async.login.core-size:2}")
+    private int loginCoreSize;
+
+    @Value("${async.login.max-size:8}")
+    private int loginMaxSize;
+
+    @Value("${async.login.queue-capacity:200}")
+    private int loginQueueCapacity;
+
+    @Bean("reservationEventExecutor")
+    public ThreadPoolTaskExecutor reservationEventExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(coreSize);
+        executor.setMaxPoolSize(maxSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("reservation-event-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(10);
+        executor.initialize();
+        return executor;
+    }
+
+    @Bean("loginExecutor")
+    public ThreadPoolTaskExecutor loginExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(loginCoreSize);
+        executor.setMaxPoolSize(loginMaxSize);
+        executor.setQueueCapacity(loginQueueCapacity);
+        executor.setThreadNamePrefix("login-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(10);
+        executor.initialize();
+        return executor;
+    }
+}
@@ -1,11 +1,13 @@
 package com.library.seat.config;
 
+import com.library.seat.common.security.LoginUser;
+import com.library.seat.common.security.PrincipalCache;
 import com.library.seat.common.utils.JwtUtils;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
@@ -20,7 +22,7 @@ import java.io.IOException;
 public class JwtAuthenticationTokenFilter extends OncePerRequestFilter {
 
     @Autowired
-    private UserDetailsService userDetailsService;
+    private PrincipalCache principalCache;
 
     @Autowired
     private JwtUtils jwtUtils;
@@ -31,37 +33,30 @@ public class JwtAuthenticationTokenFilter extends OncePerRequestFilter {
 
         final String requestTokenHeader = request.getHeader("Authorization");
 
-        String username = null;
         String jwtToken = null;
 
         // JWT Token is in the form "Bearer token". Remove Bearer word and get
         // only the Token
         if (requestTokenHeader != null && requestTokenHeader.startsWith("Bearer ")) {
             jwtToken = requestTokenHeader.substring(7);
-            try {
-                username = jwtUtils.extractUsername(jwtToken);
-            } catch (Exception e) {
-                logger.warn("JWT Token is invalid or expired");
-            }
         } else {
             // 兼容旧的 Token 头 (可选)
-            String token = request.getHeader("Token");
-            if (token != null) {
-                jwtToken = token;
-                try {
-                    username = jwtUtils.extractUsername(jwtToken);
-                } catch (Exception e) {
-                    logger.warn("JWT Token is invalid or expired");
-                }
-            }
+            jwtToken = request.getHeader("Token");
         }
 
-        if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            UserDetails userDetails = this.userDetailsService.loadUserByUsername(username);
+        if (jwtToken != null && SecurityContextHolder.getContext().getAuthentication() == null) {
+            // 验签与过期校验只解析一次，用户信息取自缓存，稳定状态下不查库
+            Claims claims = null;
+            try {
+                claims = jwtUtils.parseClaims(jwtToken);
+            } catch (JwtException | IllegalArgumentException e) {
+                logger.warn("JWT Token is invalid or expired");
+            }
 
-            if (jwtUtils.validateToken(jwtToken, userDetails)) {
+            LoginUser loginUser = claims != null ? principalCache.resolve(claims) : null;
+            if (loginUser != null) {
                 UsernamePasswordAuthenticationToken usernamePasswordAuthenticationToken = new UsernamePasswordAuthenticationToken(
-                        userDetails, null, userDetails.getAuthorities());
+                        loginUser, null, loginUser.getAuthorities());
                 usernamePasswordAuthenticationToken
                         .setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
                 SecurityContextHolder.getContext().setAuthentication(usernamePasswordAuthenticationToken);
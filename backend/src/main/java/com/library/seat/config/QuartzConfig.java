@@ -0,0 +1,94 @@
+package com.library.seat.config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.quartz.CronScheduleBuilder;
+import org.quartz.CronTrigger;
+import org.quartz.JobBuilder;
+import org.quartz.JobDetail;
+import org.quartz.Trigger;
+import org.quartz.TriggerBuilder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.quartz.SchedulerFactoryBeanCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.DependsOn;
+
+import com.library.seat.modules.job.ClusteredJob;
+import com.library.seat.modules.job.JobRunRecorder;
+
+/**
+ * 集群定时任务配置
+ * 预约相关定时任务由 Quartz JDBC 集群调度 (QRTZ_ 表) 触发，多实例部署时每次触发只由一个节点执行。
+ * 错过触发策略: 对账/清理类任务在恢复后立即补偿执行一次；闭馆提醒过时无意义，直接跳过。
+ */
+@Configuration
+public class QuartzConfig {
+
+    private static final String GROUP = "reservation";
+
+    @Value("${reservation.deadline.sweep-cron:0 */5 * * * ?}")
+    private String violationCron;
+
+    @Value("${reservation.job.expiration-cron:0 * * * * ?}")
+    private String expirationCron;
+
+    @Value("${reservation.job.occupancy-cron:0 */5 * * * ?}")
+    private String occupancyCron;
+
+    @Value("${reservation.job.closing-reminder-cron:0 30 21 * * ?}")
+    private String closingReminderCron;
+
+    @Value("${reservation.job.closing-checkout-cron:0 0 22 * * ?}")
+    private String closingCheckoutCron;
+
+    @Value("${reservation.job.log-cleanup-cron:0 40 3 * * ?}")
+    private String logCleanupCron;
+
+    /**
+     * 依赖 databaseInitializer，保证注册任务前 QRTZ_ 表已经创建
+     */
+    @Bean
+    @DependsOn("databaseInitializer")
+    public SchedulerFactoryBeanCustomizer reservationJobsCustomizer(JobRunRecorder jobRunRecorder) {
+        return factory -> {
+            List<JobDetail> jobs = new ArrayList<>();
+            List<Trigger> triggers = new ArrayList<>();
+            define(jobs, triggers, "checkViolation", "违约对账", violationCron, true);
+            define(jobs, triggers, "checkExpiration", "到期签退", expirationCron, true);
+            define(jobs, triggers, "checkOccupancy", "占座检测", occupancyCron, true);
+            define(jobs, triggers, "sendClosingReminder", "闭馆提醒", closingReminderCron, false);
+            define(jobs, triggers, "autoCheckoutAtClosing", "闭馆自动签退", closingCheckoutCron, true);
+            define(jobs, triggers, "cleanJobLog", "运行记录清理", logCleanupCron, true);
+            factory.setJobDetails(jobs.toArray(new JobDetail[0]));
+            factory.setTriggers(triggers.toArray(new Trigger[0]));
+            factory.setGlobalJobListeners(jobRunRecorder);
+            factory.setGlobalTriggerListeners(jobRunRecorder);
+        };
+    }
+
+    private static void define(List<JobDetail> jobs, List<Trigger> triggers,
+                               String task, String description, String cron, boolean catchUp) {
+        JobDetail job = JobBuilder.newJob(ClusteredJob.class)
+                .withIdentity(task, GROUP)
+                .withDescription(description)
+                .usingJobData(ClusteredJob.TASK_KEY, task)
+                .storeDurably()
+                .requestRecovery()
+                .build();
+
+        CronScheduleBuilder schedule = CronScheduleBuilder.cronSchedule(cron);
+        schedule = catchUp
+                ? schedule.withMisfireHandlingInstructionFireAndProceed()
+                : schedule.withMisfireHandlingInstructionDoNothing();
+        CronTrigger trigger = TriggerBuilder.newTrigger()
+                .withIdentity(task + "Trigger", GROUP)
+                .forJob(job)
+                .withSchedule(schedule)
+                .build();
+
+        jobs.add(job);
+        triggers.add(trigger);
+    }
+}
@@ -17,6 +17,7 @@ import org.springframework.security.web.authentication.UsernamePasswordAuthentic
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 import org.springframework.web.filter.CorsFilter;
+import jakarta.servlet.DispatcherType;
 
 @Configuration
 @EnableWebSecurity
@@ -46,7 +47,11 @@ public class SecurityConfig {
             .cors(cors -> {}) // Enable CORS
             .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
             .authorizeHttpRequests(auth -> auth
+                // SSE 等异步请求结束时的二次分派，首次请求已完成鉴权
+                .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                 .requestMatchers("/api/v1/auth/**", "/ws/**").permitAll()
+                // 传感器网关批量上报，使用 X-Sensor-Key 鉴权
+                .requestMatchers("/api/v1/occupancy/readings").permitAll()
                 .requestMatchers("/swagger-ui/**", "/v3/api-docs/**", "/doc.html", "/webjars/**").permitAll()
                 .anyRequest().authenticated()
             )
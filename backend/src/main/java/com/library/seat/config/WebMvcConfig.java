@@ -0,0 +1,22 @@
+package com.library.seat.config;
+
+import java.util.List;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import com.library.seat.common.security.CurrentUserArgumentResolver;
+
+/**
+ * Web MVC 配置
+ * 注册 @CurrentUser 参数解析，控制器直接取得当前登录用户。
+ */
+@Configuration
+public class WebMvcConfig implements WebMvcConfigurer {
+
+    @Override
+    public void addArgumentResolvers(List<HandlerMethodArgumentResolver> resolvers) {
+        resolvers.add(new CurrentUserArgumentResolver());
+    }
+}
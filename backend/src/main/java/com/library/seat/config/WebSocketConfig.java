@@ -1,6 +1,10 @@
 package com.library.seat.config;
 
+import com.library.seat.common.security.LoginUser;
+import com.library.seat.common.security.PrincipalCache;
 import com.library.seat.common.utils.JwtUtils;
+import com.library.seat.common.websocket.ClusterBrokerRelay;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.messaging.Message;
@@ -12,8 +16,6 @@ import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
 import org.springframework.messaging.support.ChannelInterceptor;
 import org.springframework.messaging.support.MessageHeaderAccessor;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
@@ -28,7 +30,10 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
     private JwtUtils jwtUtils;
 
     @Autowired
-    private UserDetailsService userDetailsService;
+    private PrincipalCache principalCache;
+
+    @Autowired
+    private ObjectProvider<ClusterBrokerRelay> clusterBrokerRelay;
 
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
@@ -38,6 +43,11 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
         config.setUserDestinationPrefix("/user");
         // Application prefix for messages bound for @MessageMapping
         config.setApplicationDestinationPrefixes("/app");
+        // 开启 websocket.cluster.enabled 时，应用发往 broker 的消息经 Redis 同步转发到其它节点
+        ClusterBrokerRelay relay = clusterBrokerRelay.getIfAvailable();
+        if (relay != null) {
+            config.configureBrokerChannel().interceptors(relay);
+        }
     }
 
     @Override
@@ -61,14 +71,11 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
                         String bearerToken = authorization.get(0);
                         if (bearerToken.startsWith("Bearer ")) {
                             String token = bearerToken.substring(7);
-                            String username = jwtUtils.extractUsername(token);
-                            if (username != null) {
-                                UserDetails userDetails = userDetailsService.loadUserByUsername(username);
-                                if (jwtUtils.validateToken(token, userDetails)) {
-                                    UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
-                                            userDetails, null, userDetails.getAuthorities());
-                                    accessor.setUser(authentication);
-                                }
+                            LoginUser loginUser = principalCache.resolve(jwtUtils.parseClaims(token));
+                            if (loginUser != null) {
+                                UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
+                                        loginUser, null, loginUser.getAuthorities());
+                                accessor.setUser(authentication);
                             }
                         }
                     }
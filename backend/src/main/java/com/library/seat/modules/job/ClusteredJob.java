@@ -0,0 +1,44 @@
+package com.library.seat.modules.job;
+
+import org.quartz.DisallowConcurrentExecution;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.quartz.QuartzJobBean;
+
+/**
+ * 集群定时任务入口
+ * 由 Quartz JDBC 集群调度触发，同一任务在整个集群内同一时刻只会在一个节点上执行；
+ * 按 JobDataMap 中的 task 分派到 {@link ReservationJob} 的对应方法。
+ */
+@DisallowConcurrentExecution
+public class ClusteredJob extends QuartzJobBean {
+
+    public static final String TASK_KEY = "task";
+
+    @Autowired
+    private ReservationJob reservationJob;
+
+    @Autowired
+    private JobRunRecorder jobRunRecorder;
+
+    @Override
+    protected void executeInternal(JobExecutionContext context) throws JobExecutionException {
+        String task = context.getMergedJobDataMap().getString(TASK_KEY);
+        try {
+            switch (task) {
+                case "checkViolation" -> reservationJob.checkViolation();
+                case "checkExpiration" -> reservationJob.checkExpiration();
+                case "checkOccupancy" -> reservationJob.checkOccupancy();
+                case "sendClosingReminder" -> reservationJob.sendClosingReminder();
+                case "autoCheckoutAtClosing" -> reservationJob.autoCheckoutAtClosing();
+                case "cleanJobLog" -> jobRunRecorder.cleanup();
+                default -> throw new JobExecutionException("Unknown task: " + task);
+            }
+        } catch (JobExecutionException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new JobExecutionException(e);
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.library.seat.modules.job;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.library.seat.modules.reservation.entity.Reservation;
+import com.library.seat.modules.reservation.service.ReservationService;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * 预约截止时间调度器
+ * 使用 DelayQueue 在内存中维护 reserved/away 预约的签到/返回截止时间，
+ * 在截止时刻精确触发违约处理，并在截止前若干分钟触发提醒，取代每分钟的全表轮询。
+ * 截止时间变更后旧任务不会从队列中删除，而是在触发时与最新登记的截止时间比对后丢弃。
+ * 违约处理本身通过条件更新抢占状态，提醒发送前在 Redis 上抢占，多实例同时触发也只会处理一次。
+ */
+@Component
+public class DeadlineScheduler {
+
+    private static final Logger log = LoggerFactory.getLogger(DeadlineScheduler.class);
+
+    @Autowired
+    @Lazy
+    private ReservationService reservationService;
+
+    @Autowired
+    @Lazy
+    private ReservationJob reservationJob;
+
+    @Value("${reservation.deadline.reminder-minutes:5}")
+    private int reminderMinutes;
+
+    private final DelayQueue<DeadlineTask> queue = new DelayQueue<>();
+
+    /**
+     * 预约ID -> 当前有效的截止时间 (毫秒)
+     */
+    private final Map<Long, Long> deadlines = new ConcurrentHashMap<>();
+
+    private Thread worker;
+
+    private volatile boolean running = true;
+
+    private enum TaskType {
+        REMINDER, DEADLINE
+    }
+
+    private static class DeadlineTask implements Delayed {
+        final Long reservationId;
+        final long deadline;
+        final long fireAt;
+        final TaskType type;
+
+        DeadlineTask(Long reservationId, long deadline, long fireAt, TaskType type) {
+            this.reservationId = reservationId;
+            this.deadline = deadline;
+            this.fireAt = fireAt;
+            this.type = type;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(fireAt - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed o) {
+            return Long.compare(fireAt, ((DeadlineTask) o).fireAt);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        List<Reservation> pending = reservationService.list(new LambdaQueryWrapper<Reservation>()
+                .select(Reservation::getId, Reservation::getDeadline)
+                .in(Reservation::getStatus, "reserved", "away")
+                .isNotNull(Reservation::getDeadline));
+        for (Reservation res : pending) {
+            schedule(res.getId(), res.getDeadline());
+        }
+        log.info("Deadline scheduler loaded {} pending deadlines", pending.size());
+
+        worker = new Thread(this::run, "reservation-deadline");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        if (worker != null) {
+            worker.interrupt();
+        }
+    }
+
+    /**
+     * 登记 (或更新) 截止时间；当前处于事务中时延迟到提交之后生效
+     */
+    public void scheduleAfterCommit(Long reservationId, Date deadline) {
+        afterCommit(() -> schedule(reservationId, deadline));
+    }
+
+    /**
+     * 取消截止时间 (已签到/已结束)；当前处于事务中时延迟到提交之后生效
+     */
+    public void cancelAfterCommit(Long reservationId) {
+        afterCommit(() -> deadlines.remove(reservationId));
+    }
+
+    private void schedule(Long reservationId, Date deadline) {
+        if (reservationId == null || deadline == null) return;
+        long at = deadline.getTime();
+        deadlines.put(reservationId, at);
+        long reminderAt = at - (long) reminderMinutes * 60 * 1000;
+        if (reminderAt > System.currentTimeMillis()) {
+            queue.put(new DeadlineTask(reservationId, at, reminderAt, TaskType.REMINDER));
+        }
+        queue.put(new DeadlineTask(reservationId, at, at, TaskType.DEADLINE));
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private void run() {
+        while (running) {
+            DeadlineTask task;
+            try {
+                task = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            // 截止时间已变更或已取消的过期任务直接丢弃
+            Long current = deadlines.get(task.reservationId);
+            if (current == null || current != task.deadline) {
+                continue;
+            }
+
+            try {
+                if (task.type == TaskType.REMINDER) {
+                    reservationJob.remindDeadline(task.reservationId, new Date(task.deadline));
+                } else {
+                    deadlines.remove(task.reservationId, task.deadline);
+                    reservationJob.fireDeadline(task.reservationId);
+                }
+            } catch (Exception e) {
+                // 失败的违约处理由 ReservationJob 的对账任务兜底
+                log.error("Failed to handle {} for reservation {}", task.type, task.reservationId, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.library.seat.modules.job;
+
+import com.library.seat.modules.job.entity.JobLog;
+import com.library.seat.modules.job.mapper.JobLogMapper;
+import org.quartz.CronTrigger;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+import org.quartz.JobListener;
+import org.quartz.SchedulerException;
+import org.quartz.Trigger;
+import org.quartz.TriggerListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+
+/**
+ * 定时任务运行记录
+ * 作为 Quartz 全局监听器，把每次执行 (含执行节点、计划/实际触发时间、耗时、异常) 和被跳过的错过触发写入 sys_job_log
+ */
+@Component
+public class JobRunRecorder implements JobListener, TriggerListener {
+
+    private static final Logger log = LoggerFactory.getLogger(JobRunRecorder.class);
+
+    /**
+     * 实际触发晚于计划时间超过该值时，视为宕机/停机后的补偿执行
+     */
+    private static final long LATE_FIRE_MILLIS = 60 * 1000L;
+
+    @Autowired
+    private JobLogMapper jobLogMapper;
+
+    @Value("${reservation.job.log-retention-days:7}")
+    private int retentionDays;
+
+    @Override
+    public String getName() {
+        return "jobRunRecorder";
+    }
+
+    @Override
+    public void jobToBeExecuted(JobExecutionContext context) {
+    }
+
+    @Override
+    public void jobExecutionVetoed(JobExecutionContext context) {
+    }
+
+    @Override
+    public void jobWasExecuted(JobExecutionContext context, JobExecutionException jobException) {
+        JobLog entry = new JobLog();
+        entry.setJobName(context.getJobDetail().getKey().getName());
+        entry.setInstanceId(instanceId(context));
+        entry.setScheduledTime(context.getScheduledFireTime());
+        entry.setFireTime(context.getFireTime());
+        entry.setDurationMs(context.getJobRunTime());
+        if (jobException != null) {
+            entry.setStatus(JobLog.STATUS_FAILED);
+            Throwable cause = jobException.getCause() != null ? jobException.getCause() : jobException;
+            entry.setMessage(truncate(cause.getClass().getSimpleName() + ": " + cause.getMessage()));
+        } else {
+            entry.setStatus(JobLog.STATUS_SUCCESS);
+            if (context.getScheduledFireTime() != null && context.getFireTime() != null
+                    && context.getFireTime().getTime() - context.getScheduledFireTime().getTime() > LATE_FIRE_MILLIS) {
+                entry.setMessage("错过触发后补偿执行");
+            }
+        }
+        save(entry);
+    }
+
+    @Override
+    public void triggerFired(Trigger trigger, JobExecutionContext context) {
+    }
+
+    @Override
+    public boolean vetoJobExecution(Trigger trigger, JobExecutionContext context) {
+        return false;
+    }
+
+    /**
+     * 错过触发 (集群全部停机或线程池耗尽超过 misfireThreshold)，按触发器的错过策略补偿或跳过
+     */
+    @Override
+    public void triggerMisfired(Trigger trigger) {
+        JobLog entry = new JobLog();
+        entry.setJobName(trigger.getJobKey().getName());
+        entry.setScheduledTime(trigger.getNextFireTime());
+        entry.setStatus(JobLog.STATUS_MISFIRED);
+        entry.setMessage(trigger.getMisfireInstruction() == CronTrigger.MISFIRE_INSTRUCTION_DO_NOTHING
+                ? "错过触发，跳过本次执行" : "错过触发，立即补偿执行一次");
+        save(entry);
+    }
+
+    @Override
+    public void triggerComplete(Trigger trigger, JobExecutionContext context, Trigger.CompletedExecutionInstruction instruction) {
+    }
+
+    /**
+     * 清理过期的运行记录
+     */
+    public void cleanup() {
+        Date before = new Date(System.currentTimeMillis() - (long) retentionDays * 24 * 60 * 60 * 1000);
+        int total = 0;
+        int deleted;
+        do {
+            deleted = jobLogMapper.deleteBefore(before, 5000);
+            total += deleted;
+        } while (deleted > 0);
+        log.info("Job log cleanup removed {} records", total);
+    }
+
+    private void save(JobLog entry) {
+        try {
+            jobLogMapper.insert(entry);
+        } catch (Exception e) {
+            log.warn("Failed to record run of job {}: {}", entry.getJobName(), e.getMessage());
+        }
+    }
+
+    private static String instanceId(JobExecutionContext context) {
+        try {
+            return context.getScheduler().getSchedulerInstanceId();
+        } catch (SchedulerException e) {
+            return null;
+        }
+    }
+
+    private static String truncate(String message) {
+        return message.length() > 500 ? message.substring(0, 500) : message;
+    }
+}
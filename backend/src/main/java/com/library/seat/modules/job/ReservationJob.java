@@ -1,176 +1,307 @@
 package com.library.seat.modules.job;
 
-import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.library.seat.modules.occupancy.service.OccupancyMonitorService;
+import com.library.seat.modules.outbox.entity.Outbox;
+import com.library.seat.modules.outbox.service.OutboxService;
 import com.library.seat.modules.reservation.entity.Reservation;
+import com.library.seat.modules.reservation.event.ReservationChangedEvent;
+import com.library.seat.modules.reservation.event.ReservationEventListener;
+import com.library.seat.modules.reservation.event.ReservationsBulkClosedEvent;
+import com.library.seat.modules.reservation.mapper.ReservationMapper;
 import com.library.seat.modules.reservation.service.ReservationService;
 import com.library.seat.modules.seat.entity.Seat;
 import com.library.seat.modules.seat.service.SeatService;
+import com.library.seat.modules.sys.entity.SysLog;
+import com.library.seat.modules.sys.entity.SysUser;
+import com.library.seat.modules.sys.service.SysLogService;
 import com.library.seat.modules.sys.service.UserDetailsServiceImpl;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
-import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * 预约相关定时任务
+ * 由 Quartz 集群调度经 {@link ClusteredJob} 触发 (见 QuartzConfig)，集群内每次触发只在一个节点执行。
+ */
 @Component
 public class ReservationJob {
 
     private static final Logger log = LoggerFactory.getLogger(ReservationJob.class);
 
+    private static final String REMINDER_PREFIX = "reservation:reminded:";
+
     @Autowired
     private ReservationService reservationService;
 
     @Autowired
-    private SeatService seatService;
+    private UserDetailsServiceImpl userDetailsService;
 
     @Autowired
-    private UserDetailsServiceImpl userDetailsService;
+    private OutboxService outboxService;
 
     @Autowired
-    private SimpMessagingTemplate messagingTemplate;
+    private OccupancyMonitorService occupancyMonitorService;
 
     @Autowired
-    private com.library.seat.modules.sys.service.SysLogService sysLogService;
+    private ApplicationEventPublisher eventPublisher;
 
     @Autowired
-    private OccupancyMonitorService occupancyMonitorService;
+    private ReservationMapper reservationMapper;
+
+    @Autowired
+    private SeatService seatService;
+
+    @Autowired
+    private SysLogService sysLogService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    @Value("${reservation.job.batch-size:200}")
+    private int batchSize;
 
     private void sendUserAlert(Long userId, String message) {
-        // Send to specific user: /user/{userId}/queue/alerts
+        // Send to specific user: /user/{username}/queue/alerts (relayed via outbox after commit, username resolved by the relay)
         // Note: Client needs to subscribe to /user/queue/alerts
-        messagingTemplate.convertAndSendToUser(
-                String.valueOf(userId),
-                "/queue/alerts",
-                message
-        );
+        outboxService.enqueueUserPush(userId, "/queue/alerts", message);
     }
 
     /**
-     * 每分钟检查违约记录及临近到期提醒
+     * 违约对账任务 (兜底)
+     * 截止时间由 DeadlineScheduler 精确触发，这里低频扫描遗漏的超时记录 (如调度器处理失败)。
+     * 按批处理，每批独立事务，避免长事务长时间持锁。
      */
-    @Scheduled(cron = "0 * * * * ?")
-    @Transactional(rollbackFor = Exception.class)
     public void checkViolation() {
-        log.info("Executing Violation Check Job...");
-
+        log.info("Executing Violation Reconciliation Job...");
         Date now = new Date();
-        Date soon = new Date(System.currentTimeMillis() + 5 * 60 * 1000); // 5 mins later
+        int total = 0;
+        Integer count;
+        do {
+            count = transactionTemplate.execute(status -> processOverdueBatch(now));
+            total += count != null ? count : 0;
+        } while (count != null && count == batchSize);
+        if (total > 0) {
+            log.info("Violation reconciliation processed {} reservations", total);
+        }
+    }
+
+    /**
+     * 批量违约：锁定一批超时预约后以集合操作完成状态、座位、信用分、推送/通知与日志的写入，
+     * 公共广播在提交后统一执行
+     */
+    private int processOverdueBatch(Date now) {
+        List<Reservation> batch = reservationMapper.lockOverdue(now, batchSize);
+        if (batch.isEmpty()) return 0;
+
+        List<Long> ids = new ArrayList<>(batch.size());
+        Set<Long> seatIds = new LinkedHashSet<>();
+        Set<Long> userIds = new LinkedHashSet<>();
+        Map<Long, Integer> deductions = new HashMap<>();
+        for (Reservation res : batch) {
+            ids.add(res.getId());
+            seatIds.add(res.getSeatId());
+            userIds.add(res.getUserId());
+            deductions.merge(res.getUserId(), 10, Integer::sum);
+        }
 
-        // 1. Check 15-min no-show (reserved -> violation)
-        List<Reservation> noShows = reservationService.list(new LambdaQueryWrapper<Reservation>()
-                .eq(Reservation::getStatus, "reserved")
-                .lt(Reservation::getDeadline, now));
+        reservationMapper.updateStatusByIds(ids, "violation");
+        releaseSeats(seatIds);
+        userDetailsService.deductCreditScores(deductions);
 
-        for (Reservation res : noShows) {
-            handleViolation(res, "No-show violation");
+        Map<Long, SysUser> users = new HashMap<>();
+        for (SysUser user : userDetailsService.listByIds(userIds)) {
+            users.put(user.getId(), user);
+        }
+        Map<Long, Seat> seats = new HashMap<>();
+        for (Seat seat : seatService.listByIds(seatIds)) {
+            seats.put(seat.getId(), seat);
         }
 
-        // 2. Check 30-min away (away -> violation)
-        List<Reservation> timeOuts = reservationService.list(new LambdaQueryWrapper<Reservation>()
-                .eq(Reservation::getStatus, "away")
-                .lt(Reservation::getDeadline, now));
+        List<Outbox> messages = new ArrayList<>(batch.size() * 3);
+        List<SysLog> logs = new ArrayList<>(batch.size());
+        for (Reservation res : batch) {
+            String reason = violationReason(res);
+            Long recipient = res.getUserId();
+            messages.add(outboxService.userPush(recipient, "/queue/alerts", "您的预约因违规已取消: " + reason));
+            messages.add(outboxService.userPush(recipient, "/queue/reservation_update",
+                    ReservationEventListener.reservationUpdatePayload("reservation_ended", "violation")));
+            messages.add(outboxService.notification(res.getUserId(), "违规取消通知", "您预约的座位因超时未签到或未返回已被自动释放，信用分已扣除。", "error"));
+
+            SysUser user = users.get(res.getUserId());
+            Seat seat = seats.get(res.getSeatId());
+            if (user != null && seat != null) {
+                SysLog entry = new SysLog();
+                entry.setUsername("system");
+                entry.setOperation("预约违规");
+                entry.setContent("用户: " + user.getUsername() + ", 座位: " + seat.getSeatNo() + ", 原因: " + reason);
+                entry.setCreateTime(now);
+                logs.add(entry);
+            }
 
-        for (Reservation res : timeOuts) {
-            handleViolation(res, "Away timeout violation");
+            reservationService.onReservationClosed(res, res.getStatus());
+            res.setStatus("violation");
         }
+        outboxService.enqueueAll(messages);
+        if (!logs.isEmpty()) {
+            sysLogService.saveBatch(logs);
+        }
+
+        eventPublisher.publishEvent(new ReservationsBulkClosedEvent(ids, seatIds, userIds));
+        return batch.size();
+    }
+
+    private void releaseSeats(Set<Long> seatIds) {
+        seatService.lambdaUpdate()
+                .set(Seat::getStatus, "available")
+                .in(Seat::getId, seatIds)
+                .update();
+    }
 
-        // 3. Proactive Reminders (5 mins before deadline)
-        List<Reservation> soonToExpire = reservationService.list(new LambdaQueryWrapper<Reservation>()
-                .in(Reservation::getStatus, "reserved", "away")
-                .gt(Reservation::getDeadline, now)
-                .lt(Reservation::getDeadline, soon));
-
-        for (Reservation res : soonToExpire) {
-            String msg = res.getStatus().equals("reserved") ?
-                "您的预约即将在5分钟内过期，请尽快签到！" :
-                "您的暂离时间即将在5分钟内过期，请尽快返回签到！";
-            sendUserAlert(res.getUserId(), msg);
+    /**
+     * 截止时间到达 (由 DeadlineScheduler 调用)
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public void fireDeadline(Long reservationId) {
+        Reservation res = reservationService.getById(reservationId);
+        if (res == null || res.getDeadline() == null || res.getDeadline().after(new Date())) return;
+        if (!"reserved".equals(res.getStatus()) && !"away".equals(res.getStatus())) return;
+        handleViolation(res, violationReason(res));
+    }
+
+    /**
+     * 截止前提醒 (由 DeadlineScheduler 调用)，截止时间已变化时不再提醒。
+     * 每个节点都会为同一预约登记提醒，发送前先在 Redis 上按 预约ID+截止时间 抢占，集群内只发一次
+     */
+    public void remindDeadline(Long reservationId, Date deadline) {
+        Reservation res = reservationService.getById(reservationId);
+        if (res == null || res.getDeadline() == null || res.getDeadline().getTime() != deadline.getTime()) return;
+        if (!claimReminder(reservationId, deadline)) return;
+        long minutes = Math.max(1, (deadline.getTime() - System.currentTimeMillis() + 59_999) / 60_000);
+        if ("reserved".equals(res.getStatus())) {
+            sendUserAlert(res.getUserId(), "您的预约即将在" + minutes + "分钟内过期，请尽快签到！");
+        } else if ("away".equals(res.getStatus())) {
+            sendUserAlert(res.getUserId(), "您的暂离时间即将在" + minutes + "分钟内过期，请尽快返回签到！");
         }
     }
 
+    private boolean claimReminder(Long reservationId, Date deadline) {
+        long ttlMillis = Math.max(60_000, deadline.getTime() - System.currentTimeMillis() + 60_000);
+        try {
+            Boolean claimed = redisTemplate.opsForValue().setIfAbsent(
+                    REMINDER_PREFIX + reservationId + ":" + deadline.getTime(), "1", ttlMillis, TimeUnit.MILLISECONDS);
+            return Boolean.TRUE.equals(claimed);
+        } catch (Exception e) {
+            // Redis 不可用时宁可重复提醒也不漏发
+            log.warn("Reminder claim unavailable, sending without dedup: {}", e.getMessage());
+            return true;
+        }
+    }
+
+    private String violationReason(Reservation res) {
+        return "reserved".equals(res.getStatus()) ? "No-show violation" : "Away timeout violation";
+    }
+
     private void handleViolation(Reservation res, String reason) {
+        // Mark as violation: 以原状态为条件抢占，避免与同时发生的签到或其它实例的处理重复
+        String originalStatus = res.getStatus();
+        boolean claimed = reservationService.lambdaUpdate()
+                .set(Reservation::getStatus, "violation")
+                .eq(Reservation::getId, res.getId())
+                .eq(Reservation::getStatus, originalStatus)
+                .update();
+        if (!claimed) {
+            return;
+        }
         log.info("Violation found: id={}, reason={}", res.getId(), reason);
-
-        // Mark as violation
         res.setStatus("violation");
-        reservationService.updateById(res);
+        reservationService.onReservationClosed(res, originalStatus);
 
         // Free seat
-        Seat seat = seatService.getById(res.getSeatId());
-        if (seat != null) {
-            seat.setStatus("available");
-            seatService.updateById(seat);
-            seatService.broadcastSeatUpdate(seat.getId(), "available");
-        }
+        Seat seat = reservationService.releaseSeat(res.getSeatId());
 
         // Deduct credit score (-10)
         userDetailsService.deductCreditScore(res.getUserId(), 10);
 
-        // Notify user via alert
-        sendUserAlert(res.getUserId(), "您的预约因违规已取消: " + reason);
-
-        // 发送系统通知
-        reservationService.getNotificationService().send(res.getUserId(), "违规取消通知", "您预约的座位因超时未签到或未返回已被自动释放，信用分已扣除。", "error");
-
-        // 通知前端清理状态 (解决卡顿)
-        reservationService.broadcastReservationUpdate(res.getUserId(), "reservation_ended", "violation");
-
-        // 记录日志
-        com.library.seat.modules.sys.entity.SysUser user = userDetailsService.getById(res.getUserId());
-        if (user != null && seat != null) {
-            sysLogService.log("system", "预约违规", "用户: " + user.getUsername() + ", 座位: " + seat.getSeatNo() + ", 原因: " + reason);
+        // 提醒、系统通知、前端状态清理 (解决卡顿) 及日志在提交后异步执行
+        ReservationChangedEvent event = new ReservationChangedEvent("violation", res.getId(), res.getUserId(), res.getSeatId())
+                .alert("您的预约因违规已取消: " + reason)
+                .notification("违规取消通知", "您预约的座位因超时未签到或未返回已被自动释放，信用分已扣除。", "error")
+                .userEvent("reservation_ended", "violation")
+                .broadcastStats();
+        if (seat != null) {
+            event.seatStatus("available")
+                    .log("system", "预约违规", "用户: " + ReservationChangedEvent.USERNAME_PLACEHOLDER + ", 座位: " + seat.getSeatNo() + ", 原因: " + reason);
         }
+        eventPublisher.publishEvent(event);
     }
 
     /**
-     * 每分钟检查已完成的预约 (endTime < now)
+     * 每分钟检查已完成的预约 (endTime < now)，按批集合处理
      */
-    @Scheduled(cron = "0 * * * * ?")
-    @Transactional(rollbackFor = Exception.class)
     public void checkExpiration() {
         log.info("Executing Expiration Check Job...");
-
         Date now = new Date();
+        Integer count;
+        do {
+            count = transactionTemplate.execute(status -> processExpiredBatch(now));
+        } while (count != null && count == batchSize);
+    }
 
+    private int processExpiredBatch(Date now) {
         // Find checked_in reservations that have ended
-        List<Reservation> expired = reservationService.list(new LambdaQueryWrapper<Reservation>()
-                .eq(Reservation::getStatus, "checked_in")
-                .lt(Reservation::getEndTime, now));
-
-        for (Reservation res : expired) {
-            log.info("Expiration found: reservationId={}", res.getId());
+        List<Reservation> batch = reservationMapper.lockExpired(now, batchSize);
+        if (batch.isEmpty()) return 0;
+
+        List<Long> ids = new ArrayList<>(batch.size());
+        Set<Long> seatIds = new LinkedHashSet<>();
+        Set<Long> userIds = new LinkedHashSet<>();
+        List<Outbox> messages = new ArrayList<>(batch.size());
+        for (Reservation res : batch) {
+            ids.add(res.getId());
+            seatIds.add(res.getSeatId());
+            userIds.add(res.getUserId());
+            // 通知前端清理状态
+            messages.add(outboxService.userPush(res.getUserId(), "/queue/reservation_update",
+                    ReservationEventListener.reservationUpdatePayload("reservation_ended", "expired")));
+        }
+        log.info("Expiration found: reservationIds={}", ids);
 
-            // Mark completed
+        // Mark completed, free seats
+        reservationMapper.updateStatusByIds(ids, "completed");
+        for (Reservation res : batch) {
+            reservationService.onReservationClosed(res, "checked_in");
             res.setStatus("completed");
-            reservationService.updateById(res);
-
-            // Free seat
-            Seat seat = seatService.getById(res.getSeatId());
-            if (seat != null) {
-                seat.setStatus("available");
-                seatService.updateById(seat);
-                seatService.broadcastSeatUpdate(seat.getId(), "available");
-            }
-
-            // 通知前端清理状态
-            reservationService.broadcastReservationUpdate(res.getUserId(), "reservation_ended", "expired");
         }
+        releaseSeats(seatIds);
+        outboxService.enqueueAll(messages);
+
+        eventPublisher.publishEvent(new ReservationsBulkClosedEvent(ids, seatIds, userIds));
+        return batch.size();
     }
 
     /**
      * 每5分钟执行占座检测
      */
-    @Scheduled(cron = "0 */5 * * * ?")
     @Transactional(rollbackFor = Exception.class)
     public void checkOccupancy() {
         log.info("Executing Occupancy Check Job...");
@@ -180,7 +311,6 @@ public class ReservationJob {
     /**
      * 每日21:30发送闭馆提醒
      */
-    @Scheduled(cron = "0 30 21 * * ?")
     public void sendClosingReminder() {
         log.info("Executing Closing Reminder Job...");
         occupancyMonitorService.sendClosingReminder();
@@ -189,7 +319,6 @@ public class ReservationJob {
     /**
      * 每日22:00执行闭馆自动签退
      */
-    @Scheduled(cron = "0 0 22 * * ?")
     @Transactional(rollbackFor = Exception.class)
     public void autoCheckoutAtClosing() {
         log.info("Executing Auto Checkout at Closing Job...");
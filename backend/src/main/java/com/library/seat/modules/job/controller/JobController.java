@@ -0,0 +1,81 @@
+package com.library.seat.modules.job.controller;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.library.seat.common.Result;
+import com.library.seat.modules.job.entity.JobLog;
+import com.library.seat.modules.job.mapper.JobLogMapper;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.quartz.JobKey;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
+import org.quartz.Trigger;
+import org.quartz.impl.matchers.GroupMatcher;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Tag(name = "定时任务模块", description = "集群调度状态与运行记录")
+@RestController
+@RequestMapping("/api/v1/jobs")
+@PreAuthorize("hasAnyAuthority('admin', 'librarian')")
+public class JobController {
+
+    @Autowired
+    private Scheduler scheduler;
+
+    @Autowired
+    private JobLogMapper jobLogMapper;
+
+    @Operation(summary = "任务列表及下次触发时间（管理员）")
+    @GetMapping
+    public Result<Map<String, Object>> list() {
+        try {
+            List<Map<String, Object>> jobs = new ArrayList<>();
+            for (JobKey key : scheduler.getJobKeys(GroupMatcher.anyJobGroup())) {
+                for (Trigger trigger : scheduler.getTriggersOfJob(key)) {
+                    Map<String, Object> item = new LinkedHashMap<>();
+                    item.put("jobName", key.getName());
+                    item.put("description", scheduler.getJobDetail(key).getDescription());
+                    item.put("state", scheduler.getTriggerState(trigger.getKey()).name());
+                    item.put("previousFireTime", trigger.getPreviousFireTime());
+                    item.put("nextFireTime", trigger.getNextFireTime());
+                    item.put("misfireInstruction", trigger.getMisfireInstruction());
+                    jobs.add(item);
+                }
+            }
+            Map<String, Object> data = new LinkedHashMap<>();
+            data.put("schedulerName", scheduler.getSchedulerName());
+            data.put("instanceId", scheduler.getSchedulerInstanceId());
+            data.put("clustered", scheduler.getMetaData().isJobStoreClustered());
+            data.put("jobs", jobs);
+            return Result.success(data);
+        } catch (SchedulerException e) {
+            return Result.error("获取调度状态失败: " + e.getMessage());
+        }
+    }
+
+    @Operation(summary = "任务运行记录（管理员）")
+    @GetMapping("/logs")
+    public Result<Page<JobLog>> logs(
+            @RequestParam(defaultValue = "1") Integer page,
+            @RequestParam(defaultValue = "20") Integer size,
+            @RequestParam(required = false) String jobName,
+            @RequestParam(required = false) String status) {
+        LambdaQueryWrapper<JobLog> queryWrapper = new LambdaQueryWrapper<>();
+        queryWrapper.eq(StringUtils.hasText(jobName), JobLog::getJobName, jobName)
+                    .eq(StringUtils.hasText(status), JobLog::getStatus, status)
+                    .orderByDesc(JobLog::getId);
+        return Result.success(jobLogMapper.selectPage(new Page<>(page, size), queryWrapper));
+    }
+}
@@ -0,0 +1,116 @@
+package com.library.seat.modules.job.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import io.swagger.v3.oas.annotations.media.Schema;
+import java.io.Serializable;
+import java.util.Date;
+
+@TableName("sys_job_log")
+@Schema(description = "定时任务运行记录")
+public class JobLog implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public static final String STATUS_SUCCESS = "success";
+    public static final String STATUS_FAILED = "failed";
+    public static final String STATUS_MISFIRED = "misfired";
+
+    @TableId(value = "id", type = IdType.AUTO)
+    private Long id;
+
+    @Schema(description = "任务名称")
+    private String jobName;
+
+    @Schema(description = "执行节点")
+    private String instanceId;
+
+    @Schema(description = "计划触发时间")
+    private Date scheduledTime;
+
+    @Schema(description = "实际触发时间")
+    private Date fireTime;
+
+    @Schema(description = "耗时(毫秒)")
+    private Long durationMs;
+
+    @Schema(description = "状态: success, failed, misfired")
+    private String status;
+
+    @Schema(description = "错误信息或补偿说明")
+    private String message;
+
+    private Date createTime;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getJobName() {
+        return jobName;
+    }
+
+    public void setJobName(String jobName) {
+        this.jobName = jobName;
+    }
+
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    public void setInstanceId(String instanceId) {
+        this.instanceId = instanceId;
+    }
+
+    public Date getScheduledTime() {
+        return scheduledTime;
+    }
+
+    public void setScheduledTime(Date scheduledTime) {
+        this.scheduledTime = scheduledTime;
+    }
+
+    public Date getFireTime() {
+        return fireTime;
+    }
+
+    public void setFireTime(Date fireTime) {
+        this.fireTime = fireTime;
+    }
+
+    public Long getDurationMs() {
+        return durationMs;
+    }
+
+    public void setDurationMs(Long durationMs) {
+        this.durationMs = durationMs;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    public Date getCreateTime() {
+        return createTime;
+    }
+
+    public void setCreateTime(Date createTime) {
+        this.createTime = createTime;
+    }
+}
@@ -0,0 +1,16 @@
+package com.library.seat.modules.job.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.library.seat.modules.job.entity.JobLog;
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.Date;
+
+@Mapper
+public interface JobLogMapper extends BaseMapper<JobLog> {
+
+    @Delete("DELETE FROM sys_job_log WHERE create_time < #{before} LIMIT #{limit}")
+    int deleteBefore(@Param("before") Date before, @Param("limit") int limit);
+}
@@ -1,12 +1,24 @@
 package com.library.seat.modules.occupancy.controller;
 
 import com.library.seat.common.Result;
+import com.library.seat.modules.occupancy.service.MonitoringSnapshot;
 import com.library.seat.modules.occupancy.service.OccupancyMonitorService;
+import com.library.seat.modules.reservation.service.PresenceStore;
+import com.library.seat.modules.sensor.service.PresenceIngestPipeline;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.util.List;
 import java.util.Map;
 
@@ -18,12 +30,34 @@ public class OccupancyController {
     @Autowired
     private OccupancyMonitorService occupancyMonitorService;
 
+    @Autowired
+    private MonitoringSnapshot monitoringSnapshot;
+
+    @Autowired
+    private PresenceStore presenceStore;
+
+    @Autowired
+    private PresenceIngestPipeline ingestPipeline;
+
+    @Value("${sensor.gateway-key:}")
+    private String gatewayKey;
+
     @Operation(summary = "获取实时监控数据")
     @GetMapping("/monitoring")
     public Result<List<Map<String, Object>>> getMonitoringData() {
         return Result.success(occupancyMonitorService.getMonitoringData());
     }
 
+    /**
+     * 监控数据流 (SSE)：连接时推送 snapshot 事件，之后仅推送 changes 事件 (变化的行与已移除的预约 ID)
+     */
+    @Operation(summary = "实时监控数据流（SSE 增量推送）")
+    @PreAuthorize("hasAnyAuthority('admin', 'librarian')")
+    @GetMapping(value = "/monitoring/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamMonitoringData() {
+        return monitoringSnapshot.subscribe();
+    }
+
     @Operation(summary = "手动触发签退")
     @PostMapping("/{reservationId}/checkout")
     public Result<Boolean> manualCheckout(
@@ -34,6 +68,34 @@ public class OccupancyController {
         return Result.success(true);
     }
 
+    /**
+     * 传感器网关批量上报 (无 MQTT 的部署)，使用 X-Sensor-Key 鉴权而非用户 JWT
+     */
+    @Operation(summary = "传感器读数批量上报（JSON 数组或 NDJSON）")
+    @PostMapping(value = "/readings", consumes = {MediaType.APPLICATION_JSON_VALUE, "application/x-ndjson"})
+    public Result<Map<String, Object>> ingestReadings(
+            @RequestHeader(value = "X-Sensor-Key", required = false) String sensorKey,
+            HttpServletRequest request) throws IOException {
+        if (!StringUtils.hasText(gatewayKey)) {
+            return Result.error(403, "传感器网关上报未启用");
+        }
+        if (sensorKey == null || !MessageDigest.isEqual(gatewayKey.getBytes(StandardCharsets.UTF_8), sensorKey.getBytes(StandardCharsets.UTF_8))) {
+            return Result.error(401, "传感器密钥无效");
+        }
+        try {
+            return Result.success(ingestPipeline.ingestJson(request.getReader(), "http"));
+        } catch (com.alibaba.fastjson2.JSONException e) {
+            return Result.error(400, "读数格式错误: " + e.getMessage());
+        }
+    }
+
+    @Operation(summary = "在场信息内存表统计（条目数、待回写数、刷盘次数）")
+    @GetMapping("/presence/stats")
+    @PreAuthorize("hasAnyAuthority('admin', 'librarian')")
+    public Result<Map<String, Object>> presenceStats() {
+        return Result.success(presenceStore.getStats());
+    }
+
     @Operation(summary = "立即执行占座检测（调试用）")
     @PostMapping("/check-now")
     public Result<Boolean> performCheckNow() {
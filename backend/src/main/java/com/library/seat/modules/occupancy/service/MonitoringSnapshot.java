@@ -0,0 +1,300 @@
+package com.library.seat.modules.occupancy.service;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.library.seat.modules.reservation.event.ReservationChangedEvent;
+import com.library.seat.modules.reservation.event.ReservationsBulkClosedEvent;
+import com.library.seat.modules.reservation.mapper.ReservationMapper;
+import com.library.seat.modules.reservation.service.PresenceStore;
+import com.library.seat.modules.sys.service.ISysConfigService;
+
+/**
+ * 占座监控快照
+ * 签到/暂离中的预约连同用户、座位信息由一条关联查询载入内存，之后随预约事件逐条刷新，
+ * 读取时再叠加 PresenceStore 中的最新在场信息，监控接口不再逐行查询用户和座位。
+ * 定期全量重建，兜底其它节点上发生、本节点收不到事件的变更。
+ * SSE 订阅方连接时收到一次全量快照，之后只推送发生变化的行和已结束的预约 ID。
+ * 推送的行不含随时间变化的派生字段 (当前离开时长、占座状态)，由看板按 lastDetectedTime 与阈值自行计算，
+ * 否则每分钟所有行都会变化、被整表重发。
+ */
+@Component
+public class MonitoringSnapshot {
+
+    private static final Logger log = LoggerFactory.getLogger(MonitoringSnapshot.class);
+
+    @Autowired
+    private ReservationMapper reservationMapper;
+
+    @Autowired
+    private PresenceStore presenceStore;
+
+    @Autowired
+    private ISysConfigService configService;
+
+    @Value("${occupancy.monitoring.stream-timeout-ms:1800000}")
+    private long streamTimeoutMs;
+
+    @Value("${occupancy.monitoring.heartbeat-ms:20000}")
+    private long heartbeatMs;
+
+    /**
+     * reservationId -> 关联查询得到的原始行 (不含在场信息叠加)
+     */
+    private final Map<Long, Map<String, Object>> rows = new ConcurrentHashMap<>();
+
+    private final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+
+    /**
+     * 最近一次推送给订阅方的视图，由 publishChanges/subscribe 在同一把锁下维护
+     */
+    private Map<Long, Map<String, Object>> published;
+
+    private long version;
+
+    private long lastSentAt;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        rebuild();
+    }
+
+    /**
+     * 全量重建 (一条关联查询)
+     */
+    @Scheduled(fixedDelayString = "${occupancy.monitoring.rebuild-interval-ms:60000}",
+            initialDelayString = "${occupancy.monitoring.rebuild-interval-ms:60000}")
+    public synchronized void rebuild() {
+        Map<Long, Map<String, Object>> fresh = new HashMap<>();
+        for (Map<String, Object> row : reservationMapper.selectMonitoringRows(null)) {
+            fresh.put(toLong(row.get("reservationId")), row);
+        }
+        rows.keySet().retainAll(fresh.keySet());
+        rows.putAll(fresh);
+        log.debug("Monitoring snapshot rebuilt with {} active reservations", fresh.size());
+    }
+
+    /**
+     * 单条预约变更后重新载入该行；已不处于签到/暂离时移除
+     */
+    public synchronized void refresh(Long reservationId) {
+        List<Map<String, Object>> result = reservationMapper.selectMonitoringRows(reservationId);
+        if (result.isEmpty()) {
+            rows.remove(reservationId);
+        } else {
+            rows.put(reservationId, result.get(0));
+        }
+    }
+
+    @Async("reservationEventExecutor")
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onReservationChanged(ReservationChangedEvent event) {
+        if (event.getReservationId() == null) return;
+        try {
+            refresh(event.getReservationId());
+        } catch (Exception e) {
+            log.error("Failed to refresh monitoring row for {}", event, e);
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onReservationsBulkClosed(ReservationsBulkClosedEvent event) {
+        rows.keySet().removeAll(event.getReservationIds());
+    }
+
+    /**
+     * 当前监控视图
+     */
+    public List<Map<String, Object>> view() {
+        return new ArrayList<>(render(true).values());
+    }
+
+    /**
+     * 订阅监控流：先发送当前已推送的视图作为基线，之后的增量都相对于该基线
+     */
+    public synchronized SseEmitter subscribe() {
+        SseEmitter emitter = new SseEmitter(streamTimeoutMs);
+        emitter.onCompletion(() -> emitters.remove(emitter));
+        emitter.onTimeout(() -> emitters.remove(emitter));
+        emitter.onError(e -> emitters.remove(emitter));
+
+        if (published == null) {
+            published = render(false);
+            version++;
+        }
+        Map<String, Object> data = streamPayload();
+        data.put("rows", new ArrayList<>(published.values()));
+        try {
+            emitter.send(SseEmitter.event().name("snapshot").id(String.valueOf(version)).data(data, MediaType.APPLICATION_JSON));
+            emitters.add(emitter);
+        } catch (IOException e) {
+            emitter.completeWithError(e);
+        }
+        return emitter;
+    }
+
+    /**
+     * 与上次推送的视图比较，只向订阅方推送变化的行 (changed) 和已移除的预约 ID (removed)
+     */
+    @Scheduled(fixedDelayString = "${occupancy.monitoring.stream-interval-ms:2000}")
+    public synchronized void publishChanges() {
+        if (emitters.isEmpty()) {
+            published = null;
+            return;
+        }
+
+        Map<Long, Map<String, Object>> current = render(false);
+        Map<Long, Map<String, Object>> previous = published != null ? published : Map.of();
+        List<Map<String, Object>> changed = new ArrayList<>();
+        List<Long> removed = new ArrayList<>();
+        for (Map.Entry<Long, Map<String, Object>> entry : current.entrySet()) {
+            if (!entry.getValue().equals(previous.get(entry.getKey()))) {
+                changed.add(entry.getValue());
+            }
+        }
+        for (Long id : previous.keySet()) {
+            if (!current.containsKey(id)) {
+                removed.add(id);
+            }
+        }
+        published = current;
+
+        long now = System.currentTimeMillis();
+        if (changed.isEmpty() && removed.isEmpty()) {
+            // 保持连接，避免代理因空闲断开
+            if (now - lastSentAt >= heartbeatMs) {
+                broadcast(SseEmitter.event().comment("ping"));
+                lastSentAt = now;
+            }
+            return;
+        }
+
+        version++;
+        Map<String, Object> data = streamPayload();
+        data.put("changed", changed);
+        data.put("removed", removed);
+        broadcast(SseEmitter.event().name("changes").id(String.valueOf(version)).data(data, MediaType.APPLICATION_JSON));
+        lastSentAt = now;
+    }
+
+    public int getSubscriberCount() {
+        return emitters.size();
+    }
+
+    private void broadcast(SseEmitter.SseEventBuilder event) {
+        for (SseEmitter emitter : emitters) {
+            try {
+                emitter.send(event);
+            } catch (IOException | IllegalStateException e) {
+                emitters.remove(emitter);
+                emitter.completeWithError(e);
+            }
+        }
+    }
+
+    /**
+     * 推送公共字段：看板据此计算离开时长与占座状态 (serverTime 用于校正客户端时钟)
+     */
+    private Map<String, Object> streamPayload() {
+        Map<String, Object> data = new HashMap<>();
+        data.put("version", version);
+        data.put("serverTime", System.currentTimeMillis());
+        data.put("occupancyThreshold", configService.getIntValue("occupancy_threshold", 60));
+        data.put("warningTime", configService.getIntValue("occupancy_warning_time", 45));
+        return data;
+    }
+
+    /**
+     * 基础行叠加内存在场信息；withDerived 时再按占座阈值计算当前离开时长与状态
+     */
+    private Map<Long, Map<String, Object>> render(boolean withDerived) {
+        int occupancyThreshold = configService.getIntValue("occupancy_threshold", 60);
+        int warningTime = configService.getIntValue("occupancy_warning_time", 45);
+        long now = System.currentTimeMillis();
+
+        Map<Long, Map<String, Object>> result = new LinkedHashMap<>();
+        for (Map<String, Object> row : rows.values()) {
+            Long reservationId = toLong(row.get("reservationId"));
+            Date lastPresentTime = toDate(row.get("lastPresentTime"));
+            int totalAwayMinutes = toInt(row.get("totalAwayMinutes"));
+            boolean alertSent = toInt(row.get("alertSent")) > 0;
+
+            // 以内存中的在场信息为准 (数据库为批量回写的延迟副本)
+            PresenceStore.Presence presence = presenceStore.get(reservationId);
+            if (presence != null) {
+                lastPresentTime = presence.getLastPresentTime();
+                totalAwayMinutes = presence.getTotalAwayMinutes();
+                alertSent = presence.isAlertSent();
+            }
+
+            Map<String, Object> item = new HashMap<>();
+            item.put("id", reservationId);
+            item.put("reservationId", reservationId);
+            item.put("userId", row.get("userId"));
+            item.put("seatId", row.get("seatId"));
+            item.put("status", row.get("status"));
+            item.put("username", row.get("username"));
+            item.put("realName", row.get("realName"));
+            item.put("seatNo", row.get("seatNo"));
+            item.put("area", row.get("area"));
+            item.put("checkInTime", lastPresentTime);
+            item.put("lastDetectedTime", lastPresentTime);
+            item.put("totalAwayMinutes", totalAwayMinutes);
+            item.put("warningCount", alertSent ? 1 : 0);
+            if (withDerived) {
+                int currentAwayMinutes = lastPresentTime != null ? (int) ((now - lastPresentTime.getTime()) / (1000 * 60)) : 0;
+                String occupancyStatus = "normal";
+                if (currentAwayMinutes >= occupancyThreshold) {
+                    occupancyStatus = "occupied";
+                } else if (currentAwayMinutes >= warningTime) {
+                    occupancyStatus = "warning";
+                }
+                item.put("currentAwayMinutes", currentAwayMinutes);
+                item.put("occupancyStatus", occupancyStatus);
+            }
+            result.put(reservationId, item);
+        }
+        return result;
+    }
+
+    private static Long toLong(Object value) {
+        return value instanceof Number ? ((Number) value).longValue() : null;
+    }
+
+    private static int toInt(Object value) {
+        if (value instanceof Number) return ((Number) value).intValue();
+        if (value instanceof Boolean) return (Boolean) value ? 1 : 0;
+        return 0;
+    }
+
+    private static Date toDate(Object value) {
+        if (value instanceof Date) return (Date) value;
+        if (value instanceof LocalDateTime) {
+            return Date.from(((LocalDateTime) value).atZone(ZoneId.systemDefault()).toInstant());
+        }
+        return null;
+    }
+}
@@ -4,19 +4,26 @@ import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.library.seat.modules.occupancy.entity.SeatOccupancy;
 import com.library.seat.modules.occupancy.mapper.SeatOccupancyMapper;
+import com.library.seat.modules.outbox.entity.Outbox;
+import com.library.seat.modules.outbox.service.OutboxService;
 import com.library.seat.modules.reservation.entity.Reservation;
+import com.library.seat.modules.reservation.event.ReservationChangedEvent;
+import com.library.seat.modules.reservation.event.ReservationEventListener;
+import com.library.seat.modules.reservation.event.ReservationsBulkClosedEvent;
+import com.library.seat.modules.reservation.mapper.ReservationMapper;
+import com.library.seat.modules.reservation.service.PresenceStore;
 import com.library.seat.modules.reservation.service.ReservationService;
 import com.library.seat.modules.seat.entity.Seat;
 import com.library.seat.modules.seat.service.SeatService;
+import com.library.seat.modules.sys.entity.SysLog;
 import com.library.seat.modules.sys.entity.SysUser;
 import com.library.seat.modules.sys.service.ISysConfigService;
-import com.library.seat.modules.sys.service.ISysNotificationService;
 import com.library.seat.modules.sys.service.SysLogService;
 import com.library.seat.modules.sys.service.UserDetailsServiceImpl;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -45,18 +52,27 @@ public class OccupancyMonitorService extends ServiceImpl<SeatOccupancyMapper, Se
     private ISysConfigService configService;
 
     @Autowired
-    private ISysNotificationService notificationService;
+    private OutboxService outboxService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private PresenceStore presenceStore;
+
+    @Autowired
+    private ReservationMapper reservationMapper;
 
     @Autowired
     private SysLogService sysLogService;
 
     @Autowired
-    private SimpMessagingTemplate messagingTemplate;
+    private MonitoringSnapshot monitoringSnapshot;
 
     /**
-     * 执行占座检测（优化版 - 滑动窗口计算）
-     * 直接使用 sys_reservation 表的 last_present_time 字段
-     * 使用滑动窗口计算当前离开时长，而非累加
+     * 执行占座检测（SQL 分桶版）
+     * 先把本节点 PresenceStore 中未回写的在场信息刷盘，再由一条查询在 SQL 中计算离开时长，
+     * 只取出需要预警 (warn) 和需要自动签退 (violate) 的预约，分别交给批量处理。
      */
     @Transactional(rollbackFor = Exception.class)
     public void performOccupancyCheck() {
@@ -65,186 +81,161 @@ public class OccupancyMonitorService extends ServiceImpl<SeatOccupancyMapper, Se
         int occupancyThreshold = configService.getIntValue("occupancy_threshold", 60);
         int warningTime = configService.getIntValue("occupancy_warning_time", 45);
         Date now = new Date();
+        Date warnBefore = new Date(now.getTime() - warningTime * 60 * 1000L);
+        Date violateBefore = new Date(now.getTime() - occupancyThreshold * 60 * 1000L);
 
-        // 获取所有 checked_in 和 away 状态的预约
-        List<Reservation> activeReservations = reservationService.list(
-                new LambdaQueryWrapper<Reservation>()
-                        .in(Reservation::getStatus, "checked_in", "away")
-                        .isNotNull(Reservation::getLastPresentTime)
-        );
+        presenceStore.flush();
+        List<Map<String, Object>> candidates = reservationMapper.selectOccupancyCandidates(now, warnBefore, violateBefore);
 
-        for (Reservation reservation : activeReservations) {
-            try {
-                checkSingleReservation(reservation, now, occupancyThreshold, warningTime);
-            } catch (Exception e) {
-                log.error("Error checking reservation {}: {}", reservation.getId(), e.getMessage());
+        List<Map<String, Object>> warnings = new ArrayList<>();
+        List<Map<String, Object>> violations = new ArrayList<>();
+        for (Map<String, Object> row : candidates) {
+            if ("violate".equals(row.get("bucket"))) {
+                violations.add(row);
+            } else {
+                warnings.add(row);
             }
         }
 
-        log.info("Occupancy check completed. Checked {} reservations.", activeReservations.size());
-    }
-
-    /**
-     * 检查单个预约的占座状态（优化版 - 滑动窗口）
-     */
-    private void checkSingleReservation(Reservation reservation, Date now,
-                                       int occupancyThreshold, int warningTime) {
-        // 滑动窗口计算：当前时间 - 最后在场时间
-        long awayMillis = now.getTime() - reservation.getLastPresentTime().getTime();
-        int awayMinutes = (int) (awayMillis / (1000 * 60));
-
-        Integer alertSent = reservation.getOccupancyAlertSent();
-        if (alertSent == null) alertSent = 0;
-
-        if (awayMinutes >= occupancyThreshold) {
-            // 占座判定 - 执行自动签退
-            handleOccupancyViolation(reservation, awayMinutes);
-        } else if (awayMinutes >= warningTime && alertSent == 0) {
-            // 发送预警
-            handleOccupancyWarning(reservation, awayMinutes, occupancyThreshold);
-            reservation.setOccupancyAlertSent(1);
-            reservationService.updateById(reservation);
+        if (!warnings.isEmpty()) {
+            handleOccupancyWarnings(warnings, occupancyThreshold);
         }
+        if (!violations.isEmpty()) {
+            handleOccupancyViolations(violations, violateBefore, now);
+        }
+
+        log.info("Occupancy check completed. Warned {}, auto checked out {} reservations.", warnings.size(), violations.size());
     }
 
     /**
-     * 处理占座预警
+     * 批量处理占座预警：一次性标记 occupancy_alert_sent，预警推送与通知一次写入发件箱
      */
-    private void handleOccupancyWarning(Reservation reservation, int awayMinutes, int threshold) {
-        Long userId = reservation.getUserId();
-        Seat seat = seatService.getById(reservation.getSeatId());
-        String seatNo = seat != null ? seat.getSeatNo() : "未知座位";
-
-        // 发送WebSocket预警
-        Map<String, Object> warningMsg = new HashMap<>();
-        warningMsg.put("type", "occupancy_warning");
-        warningMsg.put("reservationId", reservation.getId());
-        warningMsg.put("seatNo", seatNo);
-        warningMsg.put("awayMinutes", awayMinutes);
-        warningMsg.put("threshold", threshold);
-        warningMsg.put("message", String.format("您已离开座位%d分钟，超过%d分钟将被视为占座并自动签退，请尽快返回！",
-                awayMinutes, threshold));
-
-        messagingTemplate.convertAndSendToUser(
-                String.valueOf(userId),
-                "/queue/alerts",
-                warningMsg
-        );
-
-        // 发送系统通知
-        notificationService.send(userId, "占座预警",
-                String.format("您预约的座位%s已离开%d分钟，请尽快返回，否则将被自动签退并扣分。",
-                        seatNo, awayMinutes), "warning");
+    private void handleOccupancyWarnings(List<Map<String, Object>> rows, int threshold) {
+        List<Long> ids = new ArrayList<>(rows.size());
+        List<Outbox> messages = new ArrayList<>(rows.size() * 2);
+        for (Map<String, Object> row : rows) {
+            Long reservationId = longValue(row.get("id"));
+            Long userId = longValue(row.get("userId"));
+            String seatNo = row.get("seatNo") != null ? (String) row.get("seatNo") : "未知座位";
+            int awayMinutes = ((Number) row.get("awayMinutes")).intValue();
+            ids.add(reservationId);
+
+            Map<String, Object> warningMsg = new HashMap<>();
+            warningMsg.put("type", "occupancy_warning");
+            warningMsg.put("reservationId", reservationId);
+            warningMsg.put("seatNo", seatNo);
+            warningMsg.put("awayMinutes", awayMinutes);
+            warningMsg.put("threshold", threshold);
+            warningMsg.put("message", String.format("您已离开座位%d分钟，超过%d分钟将被视为占座并自动签退，请尽快返回！",
+                    awayMinutes, threshold));
+            messages.add(outboxService.userPush(userId, "/queue/alerts", warningMsg));
+            messages.add(outboxService.notification(userId, "占座预警",
+                    String.format("您预约的座位%s已离开%d分钟，请尽快返回，否则将被自动签退并扣分。", seatNo, awayMinutes), "warning"));
+
+            presenceStore.markAlertedAfterCommit(reservationId, toDate(row.get("lastPresentTime")));
+        }
 
-        log.info("Occupancy warning sent to user {} for reservation {}", userId, reservation.getId());
+        reservationMapper.markOccupancyAlerted(ids);
+        outboxService.enqueueAll(messages);
+        log.info("Occupancy warning sent for reservations {}", ids);
     }
 
     /**
-     * 处理占座违规 - 自动签退
+     * 批量处理占座违规 - 自动签退
+     * 锁定后集合更新状态、释放座位、扣除信用分，推送/通知/日志批量写入，公共广播在提交后统一执行
      */
-    @Transactional(rollbackFor = Exception.class)
-    public void handleOccupancyViolation(Reservation reservation, int awayMinutes) {
-        Long userId = reservation.getUserId();
-        Long seatId = reservation.getSeatId();
-        Seat seat = seatService.getById(seatId);
-        String seatNo = seat != null ? seat.getSeatNo() : "未知座位";
+    private void handleOccupancyViolations(List<Map<String, Object>> rows, Date violateBefore, Date now) {
+        Map<Long, Map<String, Object>> byId = new HashMap<>();
+        for (Map<String, Object> row : rows) {
+            byId.put(longValue(row.get("id")), row);
+        }
+        List<Reservation> locked = reservationMapper.lockOccupied(new ArrayList<>(byId.keySet()), violateBefore);
+        if (locked.isEmpty()) return;
 
-        // 1. 更新预约状态为 violation
-        reservation.setStatus("violation");
-        reservation.setEndTime(new Date());
-        reservationService.updateById(reservation);
+        int creditDeduct = configService.getIntValue("occupancy_credit_deduct", 15);
+        List<Long> ids = new ArrayList<>(locked.size());
+        Set<Long> seatIds = new LinkedHashSet<>();
+        Set<Long> userIds = new LinkedHashSet<>();
+        Map<Long, Integer> deductions = new HashMap<>();
+        for (Reservation reservation : locked) {
+            ids.add(reservation.getId());
+            seatIds.add(reservation.getSeatId());
+            userIds.add(reservation.getUserId());
+            deductions.merge(reservation.getUserId(), creditDeduct, Integer::sum);
+        }
 
+        // 1. 更新预约状态为 violation
+        reservationMapper.closeByIds(ids, "violation", now);
         // 2. 释放座位
-        if (seat != null) {
-            seat.setStatus("available");
-            seatService.updateById(seat);
-            seatService.broadcastSeatUpdate(seatId, "available");
+        seatService.lambdaUpdate()
+                .set(Seat::getStatus, "available")
+                .in(Seat::getId, seatIds)
+                .update();
+        // 3. 扣除信用分
+        userDetailsService.deductCreditScores(deductions);
+
+        Map<Long, String> usernames = new HashMap<>();
+        for (SysUser user : userDetailsService.listByIds(userIds)) {
+            usernames.put(user.getId(), user.getUsername());
         }
 
-        // 3. 扣除信用分
-        int creditDeduct = configService.getIntValue("occupancy_credit_deduct", 15);
-        userDetailsService.deductCreditScore(userId, creditDeduct);
-
-        // 4. 发送WebSocket通知
-        Map<String, Object> checkoutMsg = new HashMap<>();
-        checkoutMsg.put("type", "auto_checkout");
-        checkoutMsg.put("reservationId", reservation.getId());
-        checkoutMsg.put("seatNo", seatNo);
-        checkoutMsg.put("reason", "occupancy");
-        checkoutMsg.put("creditDeducted", creditDeduct);
-
-        messagingTemplate.convertAndSendToUser(
-                String.valueOf(userId),
-                "/queue/alerts",
-                checkoutMsg
-        );
+        // 4. 发送WebSocket通知、5. 广播预约更新、6. 发送系统通知、7. 记录日志
+        List<Outbox> messages = new ArrayList<>(locked.size() * 3);
+        List<SysLog> logs = new ArrayList<>(locked.size());
+        for (Reservation reservation : locked) {
+            Map<String, Object> row = byId.get(reservation.getId());
+            String seatNo = row.get("seatNo") != null ? (String) row.get("seatNo") : "未知座位";
+            int awayMinutes = ((Number) row.get("awayMinutes")).intValue();
+            Long recipient = reservation.getUserId();
+
+            Map<String, Object> checkoutMsg = new HashMap<>();
+            checkoutMsg.put("type", "auto_checkout");
+            checkoutMsg.put("reservationId", reservation.getId());
+            checkoutMsg.put("seatNo", seatNo);
+            checkoutMsg.put("reason", "occupancy");
+            checkoutMsg.put("creditDeducted", creditDeduct);
+            messages.add(outboxService.userPush(recipient, "/queue/alerts", checkoutMsg));
+            messages.add(outboxService.userPush(recipient, "/queue/reservation_update",
+                    ReservationEventListener.reservationUpdatePayload("reservation_ended", "occupancy_violation")));
+            messages.add(outboxService.notification(reservation.getUserId(), "占座违规自动签退",
+                    String.format("由于您长时间离开座位%s（超过占座阈值），系统已自动签退并扣除%d信用分。",
+                            seatNo, creditDeduct), "error"));
+
+            SysLog entry = new SysLog();
+            entry.setUsername("system");
+            entry.setOperation("占座违规自动签退");
+            entry.setContent(String.format("用户: %s, 座位: %s, 离开时长: %d分钟, 扣分: %d",
+                    usernames.get(reservation.getUserId()), seatNo, awayMinutes, creditDeduct));
+            entry.setCreateTime(now);
+            logs.add(entry);
+
+            reservationService.onReservationClosed(reservation, reservation.getStatus());
+            reservation.setStatus("violation");
+        }
+        outboxService.enqueueAll(messages);
+        sysLogService.saveBatch(logs);
 
-        // 5. 广播预约更新
-        reservationService.broadcastReservationUpdate(userId, "reservation_ended", "occupancy_violation");
+        eventPublisher.publishEvent(new ReservationsBulkClosedEvent(ids, seatIds, userIds));
+        log.info("Auto checkout executed for reservations {} due to occupancy violation", ids);
+    }
 
-        // 6. 发送系统通知
-        notificationService.send(userId, "占座违规自动签退",
-                String.format("由于您长时间离开座位%s（超过占座阈值），系统已自动签退并扣除%d信用分。",
-                        seatNo, creditDeduct), "error");
+    private static Long longValue(Object value) {
+        return value != null ? ((Number) value).longValue() : null;
+    }
 
-        // 7. 记录日志
-        SysUser user = userDetailsService.getById(userId);
-        if (user != null) {
-            sysLogService.log("system", "占座违规自动签退",
-                    String.format("用户: %s, 座位: %s, 离开时长: %d分钟, 扣分: %d",
-                            user.getUsername(), seatNo, awayMinutes, creditDeduct));
+    private static Date toDate(Object value) {
+        if (value instanceof Date) return (Date) value;
+        if (value instanceof java.time.LocalDateTime) {
+            return Date.from(((java.time.LocalDateTime) value).atZone(java.time.ZoneId.systemDefault()).toInstant());
         }
-
-        log.info("Auto checkout executed for reservation {} due to occupancy violation", reservation.getId());
+        return null;
     }
 
     /**
-     * 获取实时监控数据（简化版）
-     * 直接从 sys_reservation 表查询
+     * 获取实时监控数据 (内存快照，见 {@link MonitoringSnapshot})
      */
     public List<Map<String, Object>> getMonitoringData() {
-        List<Reservation> reservations = reservationService.list(
-                new LambdaQueryWrapper<Reservation>()
-                        .in(Reservation::getStatus, "checked_in", "away")
-        );
-
-        List<Map<String, Object>> result = new ArrayList<>();
-        Date now = new Date();
-
-        for (Reservation reservation : reservations) {
-            Map<String, Object> item = new HashMap<>();
-            item.put("reservationId", reservation.getId());
-            item.put("userId", reservation.getUserId());
-            item.put("seatId", reservation.getSeatId());
-            item.put("checkInTime", reservation.getLastPresentTime());
-            item.put("totalAwayMinutes", reservation.getTotalAwayMinutes());
-
-            // 计算当前离开时长
-            if (reservation.getLastPresentTime() != null) {
-                long awayMillis = now.getTime() - reservation.getLastPresentTime().getTime();
-                item.put("currentAwayMinutes", (int) (awayMillis / (1000 * 60)));
-            } else {
-                item.put("currentAwayMinutes", 0);
-            }
-
-            // 补充用户信息
-            SysUser user = userDetailsService.getById(reservation.getUserId());
-            if (user != null) {
-                item.put("username", user.getUsername());
-                item.put("realName", user.getRealName());
-            }
-
-            // 补充座位信息
-            Seat seat = seatService.getById(reservation.getSeatId());
-            if (seat != null) {
-                item.put("seatNo", seat.getSeatNo());
-                item.put("area", seat.getArea());
-            }
-
-            result.add(item);
-        }
-
-        return result;
+        return monitoringSnapshot.view();
     }
 
     /**
@@ -258,22 +249,21 @@ public class OccupancyMonitorService extends ServiceImpl<SeatOccupancyMapper, Se
         }
 
         // 更新预约状态
+        String originalStatus = reservation.getStatus();
         reservation.setStatus("completed");
         reservation.setEndTime(new Date());
         reservationService.updateById(reservation);
+        reservationService.onReservationClosed(reservation, originalStatus);
 
         // 释放座位
-        Seat seat = seatService.getById(reservation.getSeatId());
-        if (seat != null) {
-            seat.setStatus("available");
-            seatService.updateById(seat);
-            seatService.broadcastSeatUpdate(seat.getId(), "available");
-        }
+        Seat seat = reservationService.releaseSeat(reservation.getSeatId());
 
         // 发送通知
-        reservationService.broadcastReservationUpdate(reservation.getUserId(), "reservation_ended", "manual_checkout");
-        notificationService.send(reservation.getUserId(), "座位已释放",
-                "您的座位已被管理员释放，原因：" + reason, "warning");
+        eventPublisher.publishEvent(new ReservationChangedEvent("manual_checkout", reservation.getId(), reservation.getUserId(), reservation.getSeatId())
+                .seatStatus(seat != null ? "available" : null)
+                .userEvent("reservation_ended", "manual_checkout")
+                .broadcastStats()
+                .notification("座位已释放", "您的座位已被管理员释放，原因：" + reason, "warning"));
 
         log.info("Manual checkout executed for reservation {} by admin, reason: {}", reservationId, reason);
     }
@@ -294,22 +284,21 @@ public class OccupancyMonitorService extends ServiceImpl<SeatOccupancyMapper, Se
         for (Reservation reservation : activeReservations) {
             try {
                 // 更新预约状态为 completed
+                String originalStatus = reservation.getStatus();
                 reservation.setStatus("completed");
                 reservation.setEndTime(new Date());
                 reservationService.updateById(reservation);
+                reservationService.onReservationClosed(reservation, originalStatus);
 
                 // 释放座位
-                Seat seat = seatService.getById(reservation.getSeatId());
-                if (seat != null) {
-                    seat.setStatus("available");
-                    seatService.updateById(seat);
-                    seatService.broadcastSeatUpdate(seat.getId(), "available");
-                }
+                Seat seat = reservationService.releaseSeat(reservation.getSeatId());
 
                 // 发送通知
-                reservationService.broadcastReservationUpdate(reservation.getUserId(), "reservation_ended", "closing_time");
-                notificationService.send(reservation.getUserId(), "闭馆自动签退",
-                        "图书馆即将闭馆，您的座位已自动释放，欢迎下次光临！", "info");
+                eventPublisher.publishEvent(new ReservationChangedEvent("closing_checkout", reservation.getId(), reservation.getUserId(), reservation.getSeatId())
+                        .seatStatus(seat != null ? "available" : null)
+                        .userEvent("reservation_ended", "closing_time")
+                        .broadcastStats()
+                        .notification("闭馆自动签退", "图书馆即将闭馆，您的座位已自动释放，欢迎下次光临！", "info"));
 
                 log.info("Auto checkout at closing for reservation {}", reservation.getId());
             } catch (Exception e) {
@@ -333,7 +322,7 @@ public class OccupancyMonitorService extends ServiceImpl<SeatOccupancyMapper, Se
         );
 
         for (Reservation reservation : activeReservations) {
-            notificationService.send(reservation.getUserId(), "闭馆提醒",
+            outboxService.enqueueNotification(reservation.getUserId(), "闭馆提醒",
                     "图书馆将在30分钟后闭馆，请合理安排学习时间，及时带走个人物品。", "warning");
         }
 
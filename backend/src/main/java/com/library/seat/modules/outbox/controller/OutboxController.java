@@ -0,0 +1,29 @@
+package com.library.seat.modules.outbox.controller;
+
+import com.library.seat.common.Result;
+import com.library.seat.modules.outbox.service.OutboxRelay;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@Tag(name = "发件箱模块", description = "事务消息中继状态")
+@RestController
+@RequestMapping("/api/v1/outbox")
+public class OutboxController {
+
+    @Autowired
+    private OutboxRelay outboxRelay;
+
+    @Operation(summary = "中继积压与延迟统计（管理员）")
+    @GetMapping("/stats")
+    @PreAuthorize("hasAnyAuthority('admin', 'librarian')")
+    public Result<Map<String, Object>> stats() {
+        return Result.success(outboxRelay.getStats());
+    }
+}
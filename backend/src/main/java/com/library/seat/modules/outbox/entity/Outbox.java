@@ -0,0 +1,125 @@
+package com.library.seat.modules.outbox.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import io.swagger.v3.oas.annotations.media.Schema;
+import java.io.Serializable;
+import java.util.Date;
+
+@TableName("sys_outbox")
+@Schema(description = "事务消息发件箱")
+public class Outbox implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public static final String TYPE_USER_PUSH = "user_push";
+    public static final String TYPE_NOTIFICATION = "notification";
+
+    @TableId(value = "id", type = IdType.AUTO)
+    private Long id;
+
+    @Schema(description = "类型: user_push, notification")
+    private String eventType;
+
+    @Schema(description = "接收人 (用户ID或用户名)")
+    private String recipient;
+
+    @Schema(description = "推送目的地")
+    private String destination;
+
+    @Schema(description = "消息内容 (JSON)")
+    private String payload;
+
+    @Schema(description = "状态: pending, sent, failed")
+    private String status;
+
+    @Schema(description = "投递失败次数")
+    private Integer attempts;
+
+    @Schema(description = "最近一次失败原因")
+    private String lastError;
+
+    private Date createTime;
+
+    private Date sentTime;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getEventType() {
+        return eventType;
+    }
+
+    public void setEventType(String eventType) {
+        this.eventType = eventType;
+    }
+
+    public String getRecipient() {
+        return recipient;
+    }
+
+    public void setRecipient(String recipient) {
+        this.recipient = recipient;
+    }
+
+    public String getDestination() {
+        return destination;
+    }
+
+    public void setDestination(String destination) {
+        this.destination = destination;
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+
+    public void setPayload(String payload) {
+        this.payload = payload;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public Integer getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(Integer attempts) {
+        this.attempts = attempts;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+
+    public Date getCreateTime() {
+        return createTime;
+    }
+
+    public void setCreateTime(Date createTime) {
+        this.createTime = createTime;
+    }
+
+    public Date getSentTime() {
+        return sentTime;
+    }
+
+    public void setSentTime(Date sentTime) {
+        this.sentTime = sentTime;
+    }
+}
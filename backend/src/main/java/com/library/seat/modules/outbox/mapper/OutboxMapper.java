@@ -0,0 +1,48 @@
+package com.library.seat.modules.outbox.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.library.seat.modules.outbox.entity.Outbox;
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+@Mapper
+public interface OutboxMapper extends BaseMapper<Outbox> {
+
+    @Insert("<script>INSERT INTO sys_outbox (event_type, recipient, destination, payload, status, attempts) VALUES " +
+            "<foreach collection='list' item='o' separator=','>" +
+            "(#{o.eventType}, #{o.recipient}, #{o.destination}, #{o.payload}, 'pending', 0)" +
+            "</foreach></script>")
+    int insertBatch(@Param("list") List<Outbox> list);
+
+    /**
+     * 锁定一批待投递消息；SKIP LOCKED 保证多实例中继互不阻塞、不重复领取
+     */
+    @Select("SELECT * FROM sys_outbox WHERE status = 'pending' ORDER BY id LIMIT #{limit} FOR UPDATE SKIP LOCKED")
+    List<Outbox> lockPendingBatch(@Param("limit") int limit);
+
+    @Update("<script>UPDATE sys_outbox SET status = 'sent', sent_time = NOW(3) WHERE id IN " +
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach></script>")
+    int markSent(@Param("ids") List<Long> ids);
+
+    /**
+     * 记录失败次数，达到上限后标记为 failed 不再重试
+     */
+    @Update("<script>UPDATE sys_outbox SET attempts = attempts + 1, last_error = #{error}, " +
+            "status = IF(attempts >= #{maxAttempts}, 'failed', status) WHERE id IN " +
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach></script>")
+    int markFailed(@Param("ids") List<Long> ids, @Param("error") String error, @Param("maxAttempts") int maxAttempts);
+
+    @Select("SELECT COUNT(*) AS pending, MIN(create_time) AS oldest FROM sys_outbox WHERE status = 'pending'")
+    Map<String, Object> selectPendingStats();
+
+    @Delete("DELETE FROM sys_outbox WHERE status = 'sent' AND create_time < #{before} LIMIT #{limit}")
+    int deleteSentBefore(@Param("before") Date before, @Param("limit") int limit);
+}
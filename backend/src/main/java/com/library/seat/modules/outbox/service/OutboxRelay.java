@@ -0,0 +1,291 @@
+package com.library.seat.modules.outbox.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONObject;
+import com.library.seat.modules.outbox.entity.Outbox;
+import com.library.seat.modules.outbox.mapper.OutboxMapper;
+import com.library.seat.modules.sys.entity.SysNotification;
+import com.library.seat.modules.sys.entity.SysUser;
+import com.library.seat.modules.sys.mapper.SysUserMapper;
+import com.library.seat.modules.sys.service.ISysNotificationService;
+
+/**
+ * 发件箱中继
+ * 按固定间隔批量领取待投递消息 (FOR UPDATE SKIP LOCKED)，通知批量写入 sys_notification，
+ * 再推送到 STOMP，最后在同一事务内标记为已投递。投递语义为至少一次。
+ * 单条消息格式错误或投递失败时只累计该条的失败次数，不影响同批其它消息。
+ */
+@Service
+public class OutboxRelay {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboxRelay.class);
+
+    /**
+     * 单次调度最多连续处理的批次数，避免长时间占用调度线程
+     */
+    private static final int MAX_BATCHES_PER_RUN = 10;
+
+    @Autowired
+    private OutboxMapper outboxMapper;
+
+    @Autowired
+    private ISysNotificationService notificationService;
+
+    @Autowired
+    private SysUserMapper userMapper;
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${outbox.enabled:true}")
+    private boolean enabled;
+
+    @Value("${outbox.batch-size:200}")
+    private int batchSize;
+
+    @Value("${outbox.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${outbox.retention-days:3}")
+    private int retentionDays;
+
+    private final AtomicLong relayed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong lastLagMillis = new AtomicLong();
+    private final AtomicLong maxLagMillis = new AtomicLong();
+    private volatile Date lastRelayTime;
+
+    @Scheduled(fixedDelayString = "${outbox.poll-interval-ms:500}")
+    public void relay() {
+        if (!enabled) return;
+        for (int i = 0; i < MAX_BATCHES_PER_RUN; i++) {
+            Integer count;
+            try {
+                count = transactionTemplate.execute(this::relayBatch);
+            } catch (Exception e) {
+                // 领取或标记本身失败 (通常是数据库不可用)，整批回滚仍为 pending，等待下次重试
+                log.error("Outbox relay batch failed", e);
+                break;
+            }
+            if (count == null || count < batchSize) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * 每天凌晨清理已投递的历史消息
+     */
+    @Scheduled(cron = "0 30 3 * * ?")
+    public void cleanup() {
+        Date before = new Date(System.currentTimeMillis() - (long) retentionDays * 24 * 60 * 60 * 1000);
+        int total = 0;
+        int deleted;
+        do {
+            deleted = outboxMapper.deleteSentBefore(before, 5000);
+            total += deleted;
+        } while (deleted > 0);
+        log.info("Outbox cleanup removed {} delivered messages", total);
+    }
+
+    private int relayBatch(TransactionStatus status) {
+        List<Outbox> batch = outboxMapper.lockPendingBatch(batchSize);
+        if (batch.isEmpty()) return 0;
+
+        // 单条消息失败只记录该条的失败次数，其余照常标记为已投递
+        Map<Long, String> errors = dispatch(batch, status);
+        List<Long> sent = new ArrayList<>();
+        for (Outbox outbox : batch) {
+            if (!errors.containsKey(outbox.getId())) {
+                sent.add(outbox.getId());
+            }
+        }
+        if (!sent.isEmpty()) {
+            outboxMapper.markSent(sent);
+        }
+        for (Map.Entry<Long, String> error : errors.entrySet()) {
+            String message = String.valueOf(error.getValue());
+            outboxMapper.markFailed(Collections.singletonList(error.getKey()),
+                    message.length() > 500 ? message.substring(0, 500) : message, maxAttempts);
+        }
+
+        long now = System.currentTimeMillis();
+        long lag = now - batch.get(0).getCreateTime().getTime();
+        lastLagMillis.set(lag);
+        maxLagMillis.accumulateAndGet(lag, Math::max);
+        relayed.addAndGet(sent.size());
+        failed.addAndGet(errors.size());
+        batches.incrementAndGet();
+        lastRelayTime = new Date(now);
+        return batch.size();
+    }
+
+    /**
+     * 投递一批消息，返回投递失败的消息ID及错误信息
+     */
+    private Map<Long, String> dispatch(List<Outbox> batch, TransactionStatus status) {
+        Map<Long, String> errors = new LinkedHashMap<>();
+
+        // 1. 通知先批量落库，并一次性查出所有接收人的用户名 (发件箱中记录的是用户ID，STOMP 会话按用户名寻址)
+        List<Outbox> notificationRows = new ArrayList<>();
+        List<SysNotification> notifications = new ArrayList<>();
+        Map<Long, Long> pushRecipients = new HashMap<>();
+        for (Outbox outbox : batch) {
+            if (Outbox.TYPE_USER_PUSH.equals(outbox.getEventType())) {
+                try {
+                    pushRecipients.put(outbox.getId(), Long.valueOf(outbox.getRecipient()));
+                } catch (NumberFormatException e) {
+                    log.warn("Malformed outbox push recipient (id={}): {}", outbox.getId(), outbox.getRecipient());
+                    errors.put(outbox.getId(), "invalid recipient: " + outbox.getRecipient());
+                }
+                continue;
+            }
+            if (!Outbox.TYPE_NOTIFICATION.equals(outbox.getEventType())) continue;
+            try {
+                JSONObject payload = JSON.parseObject(outbox.getPayload());
+                SysNotification notification = new SysNotification();
+                notification.setUserId(Long.valueOf(outbox.getRecipient()));
+                notification.setTitle(payload.getString("title"));
+                notification.setContent(payload.getString("content"));
+                notification.setType(payload.getString("type"));
+                notification.setIsRead(0);
+                notification.setCreateTime(outbox.getCreateTime());
+                notificationRows.add(outbox);
+                notifications.add(notification);
+            } catch (RuntimeException e) {
+                log.warn("Malformed outbox notification (id={}): {}", outbox.getId(), e.getMessage());
+                errors.put(outbox.getId(), e.getMessage());
+            }
+        }
+        Map<Long, SysNotification> saved = saveNotifications(notificationRows, notifications, errors, status);
+        Set<Long> userIds = new HashSet<>(pushRecipients.values());
+        for (SysNotification notification : saved.values()) {
+            userIds.add(notification.getUserId());
+        }
+        Map<Long, String> usernames = new HashMap<>();
+        if (!userIds.isEmpty()) {
+            for (SysUser user : userMapper.selectBatchIds(userIds)) {
+                usernames.put(user.getId(), user.getUsername());
+            }
+        }
+
+        // 2. 按写入顺序推送
+        for (Outbox outbox : batch) {
+            if (errors.containsKey(outbox.getId())) continue;
+            try {
+                if (Outbox.TYPE_NOTIFICATION.equals(outbox.getEventType())) {
+                    SysNotification notification = saved.get(outbox.getId());
+                    String username = usernames.get(notification.getUserId());
+                    if (username != null) {
+                        messagingTemplate.convertAndSendToUser(username, outbox.getDestination(), notification);
+                    }
+                } else if (Outbox.TYPE_USER_PUSH.equals(outbox.getEventType())) {
+                    // 用户已删除时没有可投递的会话，直接视为已投递
+                    String username = usernames.get(pushRecipients.get(outbox.getId()));
+                    if (username != null) {
+                        messagingTemplate.convertAndSendToUser(username, outbox.getDestination(), JSON.parse(outbox.getPayload()));
+                    }
+                } else {
+                    log.warn("Unknown outbox event type {} (id={})", outbox.getEventType(), outbox.getId());
+                }
+            } catch (RuntimeException e) {
+                if (Outbox.TYPE_NOTIFICATION.equals(outbox.getEventType())) {
+                    // 通知已落库，用户刷新通知列表即可看到，不再重试以免重复写入
+                    log.warn("Outbox notification push failed (id={}): {}", outbox.getId(), e.getMessage());
+                } else {
+                    log.warn("Outbox push failed (id={}): {}", outbox.getId(), e.getMessage());
+                    errors.put(outbox.getId(), e.getMessage());
+                }
+            }
+        }
+        return errors;
+    }
+
+    /**
+     * 批量写入通知；整批失败时回滚到保存点，再逐条写入以找出失败的那几条
+     */
+    private Map<Long, SysNotification> saveNotifications(List<Outbox> rows, List<SysNotification> notifications,
+                                                         Map<Long, String> errors, TransactionStatus status) {
+        Map<Long, SysNotification> saved = new LinkedHashMap<>();
+        if (notifications.isEmpty()) return saved;
+
+        Object savepoint = status.createSavepoint();
+        try {
+            notificationService.saveBatch(notifications);
+            status.releaseSavepoint(savepoint);
+            for (int i = 0; i < rows.size(); i++) {
+                saved.put(rows.get(i).getId(), notifications.get(i));
+            }
+            return saved;
+        } catch (RuntimeException e) {
+            status.rollbackToSavepoint(savepoint);
+            log.warn("Outbox notification batch insert failed, retrying row by row: {}", e.getMessage());
+        }
+
+        for (int i = 0; i < rows.size(); i++) {
+            Outbox outbox = rows.get(i);
+            SysNotification notification = notifications.get(i);
+            notification.setId(null);
+            savepoint = status.createSavepoint();
+            try {
+                notificationService.save(notification);
+                status.releaseSavepoint(savepoint);
+                saved.put(outbox.getId(), notification);
+            } catch (RuntimeException e) {
+                status.rollbackToSavepoint(savepoint);
+                log.warn("Outbox notification insert failed (id={}): {}", outbox.getId(), e.getMessage());
+                errors.put(outbox.getId(), e.getMessage());
+            }
+        }
+        return saved;
+    }
+
+    /**
+     * 中继积压与延迟统计
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", enabled);
+        result.put("batchSize", batchSize);
+
+        Map<String, Object> pending = outboxMapper.selectPendingStats();
+        Object oldest = pending != null ? pending.get("oldest") : null;
+        result.put("pending", pending != null ? pending.get("pending") : 0);
+        result.put("oldestPendingAgeMillis", oldest instanceof Date date ? System.currentTimeMillis() - date.getTime()
+                : oldest instanceof java.time.LocalDateTime time
+                        ? java.time.Duration.between(time, java.time.LocalDateTime.now()).toMillis() : 0);
+
+        result.put("relayed", relayed.get());
+        result.put("failed", failed.get());
+        result.put("batches", batches.get());
+        result.put("lastLagMillis", lastLagMillis.get());
+        result.put("maxLagMillis", maxLagMillis.get());
+        result.put("lastRelayTime", lastRelayTime);
+        return result;
+    }
+}
@@ -0,0 +1,68 @@
+package com.library.seat.modules.outbox.service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.library.seat.common.utils.JsonUtils;
+import com.library.seat.modules.outbox.entity.Outbox;
+import com.library.seat.modules.outbox.mapper.OutboxMapper;
+
+/**
+ * 事务发件箱
+ * 在业务事务内写入待投递的推送与通知，事务回滚则消息一起回滚，提交后由 {@link OutboxRelay} 批量投递。
+ */
+@Service
+public class OutboxService {
+
+    @Autowired
+    private OutboxMapper outboxMapper;
+
+    /**
+     * 点对点 STOMP 推送 (/user/{用户名}{destination})；发件箱中记录用户ID，投递时再解析为 STOMP 会话的用户名
+     */
+    public void enqueueUserPush(Long userId, String destination, Object payload) {
+        outboxMapper.insert(userPush(userId, destination, payload));
+    }
+
+    /**
+     * 站内通知：投递时写入 sys_notification 并推送到 /user/queue/notifications
+     */
+    public void enqueueNotification(Long userId, String title, String content, String type) {
+        outboxMapper.insert(notification(userId, title, content, type));
+    }
+
+    /**
+     * 一条 INSERT 写入多条消息 (批量任务使用)
+     */
+    public void enqueueAll(List<Outbox> messages) {
+        if (messages.isEmpty()) return;
+        outboxMapper.insertBatch(messages);
+    }
+
+    public Outbox userPush(Long userId, String destination, Object payload) {
+        return build(Outbox.TYPE_USER_PUSH, String.valueOf(userId), destination, JsonUtils.toJsonString(payload));
+    }
+
+    public Outbox notification(Long userId, String title, String content, String type) {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("title", title);
+        payload.put("content", content);
+        payload.put("type", type);
+        return build(Outbox.TYPE_NOTIFICATION, String.valueOf(userId), "/queue/notifications", JsonUtils.toJsonString(payload));
+    }
+
+    private Outbox build(String eventType, String recipient, String destination, String payload) {
+        Outbox outbox = new Outbox();
+        outbox.setEventType(eventType);
+        outbox.setRecipient(recipient);
+        outbox.setDestination(destination);
+        outbox.setPayload(payload);
+        outbox.setStatus("pending");
+        outbox.setAttempts(0);
+        return outbox;
+    }
+}
@@ -2,15 +2,17 @@ package com.library.seat.modules.reservation.controller;
 
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.library.seat.common.Result;
+import com.library.seat.common.idempotency.IdempotencyStore;
+import com.library.seat.common.security.CurrentUser;
+import com.library.seat.common.security.LoginUser;
 import com.library.seat.modules.reservation.entity.Appeal;
 import com.library.seat.modules.reservation.entity.Reservation;
+import com.library.seat.modules.reservation.service.FlashBookingService;
 import com.library.seat.modules.reservation.service.ReservationService;
-import com.library.seat.modules.sys.entity.SysUser;
-import com.library.seat.modules.sys.service.UserDetailsServiceImpl;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
@@ -18,7 +20,6 @@ import java.util.Map;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.security.core.Authentication;
 
 @Tag(name = "预约业务模块", description = "预约、签到、暂离、退座、申诉")
 @RestController
@@ -31,77 +32,97 @@ public class ReservationController {
     private ReservationService reservationService;
 
     @Autowired
-    private UserDetailsServiceImpl userDetailsService;
+    private FlashBookingService flashBookingService;
 
-    private Long getCurrentUserId() {
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        if (auth == null || !auth.isAuthenticated() || "anonymousUser".equals(auth.getPrincipal())) {
-            log.warn("Current user is not authenticated");
-            return null;
-        }
-        String username = auth.getName();
-        SysUser user = userDetailsService.lambdaQuery().eq(SysUser::getUsername, username).one();
-        return user != null ? user.getId() : null;
-    }
+    @Autowired
+    private IdempotencyStore idempotencyStore;
 
     @Operation(summary = "创建预约")
     @PostMapping
-    public Result<Map<String, Object>> reserve(@RequestBody Reservation reservation) {
+    public Result<Map<String, Object>> reserve(@RequestBody Reservation reservation,
+                                               @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+                                               @CurrentUser Long userId) {
         log.info("Received reservation request: {}", reservation);
         try {
-            Long userId = getCurrentUserId();
             if (userId == null) {
                 return Result.error("用户未登录或Token失效");
             }
             reservation.setUserId(userId);
-            return (Result<Map<String, Object>>) (Result<?>) reservationService.reserve(reservation);
+            return idempotencyStore.execute(idempotencyKey, userId + ":reserve", () -> reservationService.reserve(reservation));
         } catch (Exception e) {
             log.error("Failed to create reservation", e);
             throw e; // Let global exception handler process it, or return Result.error
         }
     }
 
+    @Operation(summary = "抢座模式预约", description = "请求进入区域准入队列后立即返回票据号，结果通过 /user/queue/reservation_update 推送")
+    @PostMapping("/flash")
+    public Result<Map<String, Object>> flashReserve(@RequestBody Reservation reservation, @CurrentUser LoginUser user) {
+        if (user == null) {
+            return Result.error("用户未登录或Token失效");
+        }
+        return flashBookingService.submit(reservation, user);
+    }
+
+    @Operation(summary = "抢座队列统计（管理员）")
+    @GetMapping("/flash/stats")
+    @PreAuthorize("hasAnyAuthority('admin', 'librarian')")
+    public Result<Map<String, Object>> flashStats() {
+        return Result.success(flashBookingService.getStats());
+    }
+
+    @Operation(summary = "预约冲突检测统计（管理员）")
+    @GetMapping("/metrics")
+    @PreAuthorize("hasAnyAuthority('admin', 'librarian')")
+    public Result<Map<String, Object>> reservationMetrics() {
+        return Result.success(reservationService.getReservationMetrics());
+    }
+
     @Operation(summary = "签到")
     @PostMapping("/{id}/check-in")
-    public Result<Boolean> checkIn(@PathVariable Long id, @RequestBody(required = false) java.util.Map<String, Object> params) {
-        return reservationService.checkIn(id, getCurrentUserId(), params);
+    public Result<Boolean> checkIn(@PathVariable Long id, @RequestBody(required = false) java.util.Map<String, Object> params,
+                                   @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+                                   @CurrentUser Long userId) {
+        return idempotencyStore.execute(idempotencyKey, userId + ":check-in:" + id, () -> reservationService.checkIn(id, userId, params));
     }
 
     @Operation(summary = "暂离")
     @PostMapping("/{id}/leave")
-    public Result<Boolean> leave(@PathVariable Long id) {
-        return reservationService.leave(id, getCurrentUserId());
+    public Result<Boolean> leave(@PathVariable Long id, @CurrentUser Long userId) {
+        return reservationService.leave(id, userId);
     }
 
     @Operation(summary = "主动退座")
     @PostMapping("/{id}/release")
-    public Result<Boolean> release(@PathVariable Long id) {
-        return reservationService.release(id, getCurrentUserId());
+    public Result<Boolean> release(@PathVariable Long id,
+                                   @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+                                   @CurrentUser Long userId) {
+        return idempotencyStore.execute(idempotencyKey, userId + ":release:" + id, () -> reservationService.release(id, userId));
     }
 
     @Operation(summary = "获取当前用户的历史记录")
     @GetMapping("/my-history")
-    public Result<List<Reservation>> getMyHistory() {
-        return reservationService.getMyHistory(getCurrentUserId());
+    public Result<List<Reservation>> getMyHistory(@CurrentUser Long userId) {
+        return reservationService.getMyHistory(userId);
     }
 
     @Operation(summary = "获取当前用户的活跃预约")
     @GetMapping("/active")
-    public Result<Reservation> getActive() {
-        return reservationService.getActiveReservation(getCurrentUserId());
+    public Result<Reservation> getActive(@CurrentUser Long userId) {
+        return reservationService.getActiveReservation(userId);
     }
 
     @Operation(summary = "提交违规申诉")
     @PostMapping("/{id}/appeal")
-    public Result<Boolean> appeal(@PathVariable Long id, @RequestBody Appeal appeal) {
+    public Result<Boolean> appeal(@PathVariable Long id, @RequestBody Appeal appeal, @CurrentUser Long userId) {
         appeal.setReservationId(id);
-        return reservationService.appeal(appeal, getCurrentUserId());
+        return reservationService.appeal(appeal, userId);
     }
 
     @Operation(summary = "获取我的申诉列表")
     @GetMapping("/my-appeals")
-    public Result<List<Appeal>> getMyAppeals() {
-        return reservationService.getMyAppeals(getCurrentUserId());
+    public Result<List<Appeal>> getMyAppeals(@CurrentUser Long userId) {
+        return reservationService.getMyAppeals(userId);
     }
 
     @Operation(summary = "获取所有申诉列表（管理员）")
@@ -112,15 +133,13 @@ public class ReservationController {
 
     @Operation(summary = "管理员强制释放座位")
     @PostMapping("/{id}/force-release")
-    public Result<Boolean> forceRelease(@PathVariable Long id) {
+    public Result<Boolean> forceRelease(@PathVariable Long id, @CurrentUser LoginUser user) {
         // 检查当前用户是否为管理员
-        Long userId = getCurrentUserId();
-        if (userId == null) {
+        if (user == null) {
             return Result.error("用户未登录或Token失效");
         }
         
-        SysUser user = userDetailsService.getById(userId);
-        if (user == null || (!"admin".equals(user.getRole()) && !"librarian".equals(user.getRole()))) {
+        if (!user.isStaff()) {
             return Result.error("无权操作，仅管理员或图书馆员可强制释放座位");
         }
         
@@ -131,15 +150,14 @@ public class ReservationController {
     @PostMapping("/appeals/{id}/review")
     public Result<Boolean> reviewAppeal(
             @PathVariable Long id,
-            @RequestBody Map<String, String> params) {
+            @RequestBody Map<String, String> params,
+            @CurrentUser LoginUser user) {
         // 检查当前用户是否为管理员
-        Long userId = getCurrentUserId();
-        if (userId == null) {
+        if (user == null) {
             return Result.error("用户未登录或Token失效");
         }
         
-        SysUser user = userDetailsService.getById(userId);
-        if (user == null || (!"admin".equals(user.getRole()) && !"librarian".equals(user.getRole()))) {
+        if (!user.isStaff()) {
             return Result.error("无权操作，仅管理员或图书馆员可处理申诉");
         }
         
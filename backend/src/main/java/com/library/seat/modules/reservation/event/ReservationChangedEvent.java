@@ -0,0 +1,155 @@
+package com.library.seat.modules.reservation.event;
+
+/**
+ * 预约状态变更领域事件
+ * 业务方法只负责在事务内完成状态变更并发布事件，由 {@link ReservationEventListener} 处理副作用：
+ * 点对点推送与站内通知在提交前写入发件箱 (与状态变更同一事务)，
+ * 公共广播与审计日志在事务提交后异步执行。
+ * 审计日志内容中的 {username} 会在执行时替换为预约用户的用户名。
+ */
+public class ReservationChangedEvent {
+
+    public static final String USERNAME_PLACEHOLDER = "{username}";
+
+    private final String action;
+    private final Long reservationId;
+    private final Long userId;
+    private final Long seatId;
+
+    private String seatStatus;
+    private String userEvent;
+    private String userEventReason;
+    private boolean broadcastStats;
+    private Object alert;
+    private String notifyTitle;
+    private String notifyContent;
+    private String notifyType;
+    private String logOperator;
+    private String logOperation;
+    private String logDetail;
+
+    public ReservationChangedEvent(String action, Long reservationId, Long userId, Long seatId) {
+        this.action = action;
+        this.reservationId = reservationId;
+        this.userId = userId;
+        this.seatId = seatId;
+    }
+
+    /**
+     * 广播座位状态 (/topic/seats)
+     */
+    public ReservationChangedEvent seatStatus(String seatStatus) {
+        this.seatStatus = seatStatus;
+        return this;
+    }
+
+    /**
+     * 推送 /user/queue/reservation_update，并刷新用户座位状态
+     */
+    public ReservationChangedEvent userEvent(String event, String reason) {
+        this.userEvent = event;
+        this.userEventReason = reason;
+        return this;
+    }
+
+    /**
+     * 广播首页统计数据 (/topic/stats)
+     */
+    public ReservationChangedEvent broadcastStats() {
+        this.broadcastStats = true;
+        return this;
+    }
+
+    /**
+     * 推送 /user/queue/alerts 提醒
+     */
+    public ReservationChangedEvent alert(Object alert) {
+        this.alert = alert;
+        return this;
+    }
+
+    /**
+     * 发送站内通知
+     */
+    public ReservationChangedEvent notification(String title, String content, String type) {
+        this.notifyTitle = title;
+        this.notifyContent = content;
+        this.notifyType = type;
+        return this;
+    }
+
+    /**
+     * 记录审计日志，operator 为空时使用预约用户的用户名
+     */
+    public ReservationChangedEvent log(String operator, String operation, String detail) {
+        this.logOperator = operator;
+        this.logOperation = operation;
+        this.logDetail = detail;
+        return this;
+    }
+
+    public String getAction() {
+        return action;
+    }
+
+    public Long getReservationId() {
+        return reservationId;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public Long getSeatId() {
+        return seatId;
+    }
+
+    public String getSeatStatus() {
+        return seatStatus;
+    }
+
+    public String getUserEvent() {
+        return userEvent;
+    }
+
+    public String getUserEventReason() {
+        return userEventReason;
+    }
+
+    public boolean isBroadcastStats() {
+        return broadcastStats;
+    }
+
+    public Object getAlert() {
+        return alert;
+    }
+
+    public String getNotifyTitle() {
+        return notifyTitle;
+    }
+
+    public String getNotifyContent() {
+        return notifyContent;
+    }
+
+    public String getNotifyType() {
+        return notifyType;
+    }
+
+    public String getLogOperator() {
+        return logOperator;
+    }
+
+    public String getLogOperation() {
+        return logOperation;
+    }
+
+    public String getLogDetail() {
+        return logDetail;
+    }
+
+    @Override
+    public String toString() {
+        return "ReservationChangedEvent{action=" + action + ", reservationId=" + reservationId + ", userId=" + userId + "}";
+    }
+}
@@ -0,0 +1,147 @@
+package com.library.seat.modules.reservation.event;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.library.seat.modules.outbox.service.OutboxService;
+import com.library.seat.modules.reservation.service.ReservationService;
+import com.library.seat.modules.reservation.service.StatsService;
+import com.library.seat.modules.seat.service.SeatService;
+import com.library.seat.modules.sys.entity.SysUser;
+import com.library.seat.modules.sys.service.SysLogService;
+import com.library.seat.modules.sys.service.UserDetailsServiceImpl;
+
+/**
+ * 预约事件的副作用处理
+ * 点对点推送与通知在事务提交前写入发件箱，写入失败会使业务事务一同回滚；
+ * 座位/统计广播与审计日志仅在事务提交后执行 (无事务时立即执行)，运行在有界的 reservationEventExecutor 线程池中，
+ * 各步骤相互独立，单步失败只记录日志，不影响其它步骤。
+ */
+@Component
+public class ReservationEventListener {
+
+    private static final Logger log = LoggerFactory.getLogger(ReservationEventListener.class);
+
+    @Autowired
+    @Lazy
+    private ReservationService reservationService;
+
+    @Autowired
+    private SeatService seatService;
+
+    @Autowired
+    private StatsService statsService;
+
+    @Autowired
+    private OutboxService outboxService;
+
+    @Autowired
+    private SysLogService sysLogService;
+
+    @Autowired
+    private UserDetailsServiceImpl userDetailsService;
+
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT, fallbackExecution = true)
+    public void writeOutbox(ReservationChangedEvent event) {
+        Long recipient = event.getUserId();
+        if (event.getAlert() != null) {
+            outboxService.enqueueUserPush(recipient, "/queue/alerts", event.getAlert());
+        }
+        if (event.getUserEvent() != null) {
+            outboxService.enqueueUserPush(recipient, "/queue/reservation_update",
+                    reservationUpdatePayload(event.getUserEvent(), event.getUserEventReason()));
+        }
+        if (event.getNotifyTitle() != null) {
+            outboxService.enqueueNotification(event.getUserId(), event.getNotifyTitle(), event.getNotifyContent(), event.getNotifyType());
+        }
+    }
+
+    @Async("reservationEventExecutor")
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onReservationChanged(ReservationChangedEvent event) {
+        if (event.getSeatStatus() != null) {
+            run(event, "seat broadcast", () -> seatService.broadcastSeatUpdate(event.getSeatId(), event.getSeatStatus()));
+        }
+
+        // 用户自身的推送已写入发件箱，这里只刷新公共的用户座位状态 (消息广场)
+        if (event.getUserEvent() != null) {
+            run(event, "user seat status", () -> reservationService.broadcastUserSeatStatus(event.getUserId()));
+        }
+        if (event.isBroadcastStats()) {
+            run(event, "stats broadcast", () -> statsService.broadcastStats());
+        }
+
+        if (event.getLogOperation() != null) {
+            run(event, "audit log", () -> writeLog(event));
+        }
+    }
+
+    @Async("reservationEventExecutor")
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onReservationsBulkClosed(ReservationsBulkClosedEvent event) {
+        for (Long seatId : event.getSeatIds()) {
+            try {
+                seatService.broadcastSeatUpdate(seatId, "available");
+            } catch (Exception e) {
+                log.error("Failed to broadcast seat {}", seatId, e);
+            }
+        }
+        for (Long userId : event.getUserIds()) {
+            try {
+                reservationService.broadcastUserSeatStatus(userId);
+            } catch (Exception e) {
+                log.error("Failed to broadcast user seat status {}", userId, e);
+            }
+        }
+        try {
+            statsService.broadcastStats();
+        } catch (Exception e) {
+            log.error("Failed to broadcast stats after bulk close", e);
+        }
+    }
+
+    /**
+     * /user/queue/reservation_update 的消息体
+     */
+    public static Map<String, Object> reservationUpdatePayload(String event, String reason) {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("event", event);
+        payload.put("reason", reason);
+        payload.put("timestamp", new Date());
+        return payload;
+    }
+
+    private void writeLog(ReservationChangedEvent event) {
+        String operator = event.getLogOperator();
+        String detail = event.getLogDetail();
+        if (operator == null || (detail != null && detail.contains(ReservationChangedEvent.USERNAME_PLACEHOLDER))) {
+            SysUser user = userDetailsService.getById(event.getUserId());
+            if (user == null) return;
+            if (operator == null) {
+                operator = user.getUsername();
+            }
+            if (detail != null) {
+                detail = detail.replace(ReservationChangedEvent.USERNAME_PLACEHOLDER, user.getUsername());
+            }
+        }
+        sysLogService.log(operator, event.getLogOperation(), detail);
+    }
+
+    private void run(ReservationChangedEvent event, String step, Runnable action) {
+        try {
+            action.run();
+        } catch (Exception e) {
+            log.error("Failed to handle {} for {}", step, event, e);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.library.seat.modules.reservation.event;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 批量结束预约事件 (定时任务批量违约/到期)
+ * 点对点推送与通知已由任务在同一事务内批量写入发件箱，这里只携带提交后需要刷新的公共广播范围。
+ */
+public class ReservationsBulkClosedEvent {
+
+    private final List<Long> reservationIds;
+    private final Set<Long> seatIds;
+    private final Set<Long> userIds;
+
+    public ReservationsBulkClosedEvent(List<Long> reservationIds, Set<Long> seatIds, Set<Long> userIds) {
+        this.reservationIds = reservationIds;
+        this.seatIds = seatIds;
+        this.userIds = userIds;
+    }
+
+    public List<Long> getReservationIds() {
+        return reservationIds;
+    }
+
+    public Set<Long> getSeatIds() {
+        return seatIds;
+    }
+
+    public Set<Long> getUserIds() {
+        return userIds;
+    }
+}
@@ -3,7 +3,84 @@ package com.library.seat.modules.reservation.mapper;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.library.seat.modules.reservation.entity.Reservation;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
 
 @Mapper
 public interface ReservationMapper extends BaseMapper<Reservation> {
+
+    /**
+     * 锁定一批签到/暂离已超时的预约 (批量违约处理)
+     */
+    @Select("SELECT * FROM sys_reservation WHERE status IN ('reserved', 'away') AND deadline < #{now} AND deleted = 0 " +
+            "ORDER BY id LIMIT #{limit} FOR UPDATE SKIP LOCKED")
+    List<Reservation> lockOverdue(@Param("now") Date now, @Param("limit") int limit);
+
+    /**
+     * 锁定一批已到结束时间仍处于签到状态的预约 (批量到期处理)
+     */
+    @Select("SELECT * FROM sys_reservation WHERE status = 'checked_in' AND end_time < #{now} AND deleted = 0 " +
+            "ORDER BY id LIMIT #{limit} FOR UPDATE SKIP LOCKED")
+    List<Reservation> lockExpired(@Param("now") Date now, @Param("limit") int limit);
+
+    /**
+     * 占座检测：在 SQL 中计算离开时长并分桶，只返回需要处理的预约。
+     * violate: 离开时长达到占座阈值；warn: 达到预警时间且尚未预警
+     */
+    @Select("SELECT r.id, r.user_id AS userId, r.seat_id AS seatId, s.seat_no AS seatNo, " +
+            "r.last_present_time AS lastPresentTime, TIMESTAMPDIFF(MINUTE, r.last_present_time, #{now}) AS awayMinutes, " +
+            "IF(r.last_present_time <= #{violateBefore}, 'violate', 'warn') AS bucket " +
+            "FROM sys_reservation r LEFT JOIN sys_seat s ON s.id = r.seat_id " +
+            "WHERE r.status IN ('checked_in', 'away') AND r.deleted = 0 AND (r.last_present_time <= #{violateBefore} " +
+            "OR (r.last_present_time <= #{warnBefore} AND (r.occupancy_alert_sent IS NULL OR r.occupancy_alert_sent = 0)))")
+    List<Map<String, Object>> selectOccupancyCandidates(@Param("now") Date now,
+                                                        @Param("warnBefore") Date warnBefore,
+                                                        @Param("violateBefore") Date violateBefore);
+
+    /**
+     * 监控快照：签到/暂离中的预约连同用户、座位信息一次查出；传入 id 时只查单条
+     */
+    @Select("<script>SELECT r.id AS reservationId, r.user_id AS userId, r.seat_id AS seatId, r.status, " +
+            "r.start_time AS startTime, r.end_time AS endTime, r.last_present_time AS lastPresentTime, " +
+            "r.total_away_minutes AS totalAwayMinutes, r.occupancy_alert_sent AS alertSent, " +
+            "u.username, u.real_name AS realName, s.seat_no AS seatNo, s.area " +
+            "FROM sys_reservation r LEFT JOIN sys_user u ON u.id = r.user_id LEFT JOIN sys_seat s ON s.id = r.seat_id " +
+            "WHERE r.status IN ('checked_in', 'away') AND r.deleted = 0" +
+            "<if test='id != null'> AND r.id = #{id}</if></script>")
+    List<Map<String, Object>> selectMonitoringRows(@Param("id") Long id);
+
+    /**
+     * 锁定仍处于签到/暂离且离开时长仍超过阈值的预约 (排除分桶之后刚确认在场的)
+     */
+    @Select("<script>SELECT * FROM sys_reservation WHERE id IN " +
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach> " +
+            "AND status IN ('checked_in', 'away') AND last_present_time &lt;= #{violateBefore} FOR UPDATE SKIP LOCKED</script>")
+    List<Reservation> lockOccupied(@Param("ids") List<Long> ids, @Param("violateBefore") Date violateBefore);
+
+    @Update("<script>UPDATE sys_reservation SET occupancy_alert_sent = 1 WHERE id IN " +
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach></script>")
+    int markOccupancyAlerted(@Param("ids") List<Long> ids);
+
+    @Update("<script>UPDATE sys_reservation SET status = #{status}, end_time = #{endTime} WHERE id IN " +
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach></script>")
+    int closeByIds(@Param("ids") List<Long> ids, @Param("status") String status, @Param("endTime") Date endTime);
+
+    /**
+     * 批量回写在场信息 (PresenceStore 刷盘)，只更新在场相关的三个字段
+     */
+    @Update("<script>UPDATE sys_reservation SET " +
+            "last_present_time = CASE id <foreach collection='list' item='r'>WHEN #{r.id} THEN #{r.lastPresentTime} </foreach>END, " +
+            "total_away_minutes = CASE id <foreach collection='list' item='r'>WHEN #{r.id} THEN #{r.totalAwayMinutes} </foreach>END, " +
+            "occupancy_alert_sent = CASE id <foreach collection='list' item='r'>WHEN #{r.id} THEN #{r.occupancyAlertSent} </foreach>END " +
+            "WHERE id IN <foreach collection='list' item='r' open='(' separator=',' close=')'>#{r.id}</foreach></script>")
+    int updatePresenceBatch(@Param("list") List<Reservation> list);
+
+    @Update("<script>UPDATE sys_reservation SET status = #{status} WHERE id IN " +
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach></script>")
+    int updateStatusByIds(@Param("ids") List<Long> ids, @Param("status") String status);
 }
@@ -0,0 +1,248 @@
+package com.library.seat.modules.reservation.service;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+
+import com.library.seat.common.Result;
+import com.library.seat.common.security.LoginUser;
+import com.library.seat.modules.reservation.entity.Reservation;
+import com.library.seat.modules.seat.entity.Seat;
+import com.library.seat.modules.seat.service.SeatService;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * 抢座模式 (Flash Booking)
+ * 开放预约时的瞬时高峰不再在同一座位上直接并发争抢，而是进入按区域划分的有界准入队列，
+ * 每个区域由唯一的写线程按 FIFO 顺序分批取出请求，处理结果通过 /user/queue/reservation_update 推送给用户。
+ * 串行化的只是准入这一步：批内每张票据仍逐个走 ReservationService.reserve，各自一个事务，
+ * 同一区域内不再有并发冲突，但不会合并成一次批量写入。
+ */
+@Service
+public class FlashBookingService {
+
+    private static final Logger log = LoggerFactory.getLogger(FlashBookingService.class);
+
+    @Autowired
+    @Lazy
+    private ReservationService reservationService;
+
+    @Autowired
+    private SeatService seatService;
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Value("${reservation.flash.enabled:true}")
+    private boolean enabled;
+
+    @Value("${reservation.flash.queue-capacity:500}")
+    private int queueCapacity;
+
+    @Value("${reservation.flash.batch-size:20}")
+    private int batchSize;
+
+    private final Map<String, AreaLane> lanes = new ConcurrentHashMap<>();
+
+    private final AtomicLong ticketSequence = new AtomicLong();
+
+    private volatile boolean running = true;
+
+    /**
+     * 提交抢座请求，返回票据号；区域队列已满时快速失败。
+     * 处理结果按用户名推送 (STOMP 会话的 Principal 名称为用户名)
+     */
+    public Result<Map<String, Object>> submit(Reservation reservation, LoginUser user) {
+        if (!enabled) {
+            return Result.error("抢座模式未开启");
+        }
+
+        Seat seat = seatService.getById(reservation.getSeatId());
+        if (seat == null || "maintenance".equals(seat.getStatus())) {
+            return Result.error("座位不存在或正在维护中");
+        }
+
+        String area = seat.getArea() != null ? seat.getArea() : "default";
+        AreaLane lane = lanes.computeIfAbsent(area, AreaLane::new);
+
+        reservation.setUserId(user.getId());
+        Ticket ticket = new Ticket(ticketSequence.incrementAndGet(), reservation, user.getUsername());
+        if (!lane.queue.offer(ticket)) {
+            lane.rejected.incrementAndGet();
+            return Result.error(429, "当前抢座人数过多，请稍后重试");
+        }
+        lane.accepted.incrementAndGet();
+
+        Map<String, Object> data = new HashMap<>();
+        data.put("ticketId", ticket.id);
+        data.put("area", area);
+        data.put("queuePosition", lane.queue.size());
+        return Result.success(data);
+    }
+
+    /**
+     * 各区域队列的吞吐与公平性指标
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", enabled);
+        result.put("queueCapacity", queueCapacity);
+        result.put("batchSize", batchSize);
+
+        List<Map<String, Object>> areas = new ArrayList<>();
+        for (AreaLane lane : lanes.values()) {
+            areas.add(lane.snapshot());
+        }
+        result.put("areas", areas);
+        return result;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        for (AreaLane lane : lanes.values()) {
+            lane.worker.interrupt();
+        }
+    }
+
+    private void process(AreaLane lane, Ticket ticket) {
+        long startedAt = System.currentTimeMillis();
+        lane.recordWait(startedAt - ticket.enqueuedAt);
+
+        Result<Map<String, Object>> result;
+        try {
+            result = reservationService.reserve(ticket.reservation);
+        } catch (Exception e) {
+            log.error("Flash booking ticket {} failed", ticket.id, e);
+            result = Result.error("系统繁忙，请稍后重试");
+        }
+
+        lane.recordService(System.currentTimeMillis() - startedAt, result.isSuccess());
+
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("event", "flash_booking_result");
+        payload.put("ticketId", ticket.id);
+        payload.put("success", result.isSuccess());
+        payload.put("reason", result.getMsg());
+        payload.put("data", result.getData());
+        payload.put("timestamp", new Date());
+        messagingTemplate.convertAndSendToUser(
+                ticket.username,
+                "/queue/reservation_update",
+                payload
+        );
+    }
+
+    private static class Ticket {
+        final long id;
+        final Reservation reservation;
+        final String username;
+        final long enqueuedAt = System.currentTimeMillis();
+
+        Ticket(long id, Reservation reservation, String username) {
+            this.id = id;
+            this.reservation = reservation;
+            this.username = username;
+        }
+    }
+
+    /**
+     * 单个区域的准入队列及其唯一写线程
+     */
+    private class AreaLane {
+        final String area;
+        final BlockingQueue<Ticket> queue = new ArrayBlockingQueue<>(queueCapacity);
+        final Thread worker;
+
+        final AtomicLong accepted = new AtomicLong();
+        final AtomicLong rejected = new AtomicLong();
+        final AtomicLong succeeded = new AtomicLong();
+        final AtomicLong failed = new AtomicLong();
+        final AtomicLong batches = new AtomicLong();
+        final AtomicLong totalWaitMillis = new AtomicLong();
+        final AtomicLong maxWaitMillis = new AtomicLong();
+        final AtomicLong totalServiceMillis = new AtomicLong();
+        final long createdAt = System.currentTimeMillis();
+
+        AreaLane(String area) {
+            this.area = area;
+            this.worker = new Thread(this::run, "flash-booking-" + area);
+            this.worker.setDaemon(true);
+            this.worker.start();
+        }
+
+        void run() {
+            List<Ticket> batch = new ArrayList<>(batchSize);
+            while (running) {
+                try {
+                    Ticket first = queue.poll(1, TimeUnit.SECONDS);
+                    if (first == null) continue;
+                    batch.add(first);
+                    queue.drainTo(batch, batchSize - 1);
+                    batches.incrementAndGet();
+                    for (Ticket ticket : batch) {
+                        process(this, ticket);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (Exception e) {
+                    log.error("Flash booking worker for area {} failed", area, e);
+                } finally {
+                    batch.clear();
+                }
+            }
+        }
+
+        void recordWait(long waitMillis) {
+            totalWaitMillis.addAndGet(waitMillis);
+            maxWaitMillis.accumulateAndGet(waitMillis, Math::max);
+        }
+
+        void recordService(long serviceMillis, boolean success) {
+            totalServiceMillis.addAndGet(serviceMillis);
+            if (success) {
+                succeeded.incrementAndGet();
+            } else {
+                failed.incrementAndGet();
+            }
+        }
+
+        Map<String, Object> snapshot() {
+            long processed = succeeded.get() + failed.get();
+            long elapsedSeconds = Math.max(1, (System.currentTimeMillis() - createdAt) / 1000);
+
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("area", area);
+            item.put("queueDepth", queue.size());
+            item.put("accepted", accepted.get());
+            item.put("rejected", rejected.get());
+            item.put("processed", processed);
+            item.put("succeeded", succeeded.get());
+            item.put("failed", failed.get());
+            item.put("batches", batches.get());
+            item.put("throughputPerSecond", (double) processed / elapsedSeconds);
+            item.put("avgWaitMillis", processed > 0 ? totalWaitMillis.get() / processed : 0);
+            item.put("maxWaitMillis", maxWaitMillis.get());
+            item.put("avgServiceMillis", processed > 0 ? totalServiceMillis.get() / processed : 0);
+            return item;
+        }
+    }
+}
@@ -0,0 +1,382 @@
+package com.library.seat.modules.reservation.service;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.library.seat.modules.reservation.entity.Reservation;
+import com.library.seat.modules.reservation.event.ReservationsBulkClosedEvent;
+import com.library.seat.modules.reservation.mapper.ReservationMapper;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * 在场信息内存表 (write-behind)
+ * 以预约ID为键保存 last_present_time / total_away_minutes / occupancy_alert_sent，
+ * 签到、扫码、心跳等在场确认只修改内存并标记脏数据，由定时任务批量回写 sys_reservation。
+ * 占座检测前先刷盘再由 SQL 分桶；传感器接入按本表定位座位上的预约，
+ * 多实例部署时定期通过 update_time 增量合并其它节点已回写的数据，并移除已在其它节点结束的预约。
+ */
+@Component
+public class PresenceStore {
+
+    private static final Logger log = LoggerFactory.getLogger(PresenceStore.class);
+
+    private final Map<Long, Presence> entries = new ConcurrentHashMap<>();
+
+    @Autowired
+    @Lazy
+    private ReservationService reservationService;
+
+    @Autowired
+    private ReservationMapper reservationMapper;
+
+    private final TransactionTemplate flushTransaction;
+
+    @Value("${presence.flush-batch-size:500}")
+    private int flushBatchSize;
+
+    private volatile Date lastSyncTime;
+
+    private final AtomicLong confirms = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong flushedRows = new AtomicLong();
+    private final AtomicLong flushFailures = new AtomicLong();
+    private volatile Date lastFlushTime;
+
+    /**
+     * 刷盘使用独立事务：在占座检测等外层事务中调用时，外层回滚不会撤销已标记为干净的回写
+     */
+    public PresenceStore(PlatformTransactionManager transactionManager) {
+        this.flushTransaction = new TransactionTemplate(transactionManager);
+        this.flushTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * 单个预约的在场信息
+     */
+    public static class Presence {
+        private final Long reservationId;
+        private final Long userId;
+        private final Long seatId;
+        private long lastPresentTime;
+        private int totalAwayMinutes;
+        private int alertSent;
+        private boolean dirty;
+        private boolean closed;
+
+        Presence(Reservation res) {
+            this.reservationId = res.getId();
+            this.userId = res.getUserId();
+            this.seatId = res.getSeatId();
+            this.lastPresentTime = res.getLastPresentTime() != null ? res.getLastPresentTime().getTime() : 0;
+            this.totalAwayMinutes = res.getTotalAwayMinutes() != null ? res.getTotalAwayMinutes() : 0;
+            this.alertSent = res.getOccupancyAlertSent() != null ? res.getOccupancyAlertSent() : 0;
+        }
+
+        public Long getReservationId() {
+            return reservationId;
+        }
+
+        public Long getUserId() {
+            return userId;
+        }
+
+        public Long getSeatId() {
+            return seatId;
+        }
+
+        public synchronized Date getLastPresentTime() {
+            return lastPresentTime > 0 ? new Date(lastPresentTime) : null;
+        }
+
+        public synchronized int getTotalAwayMinutes() {
+            return totalAwayMinutes;
+        }
+
+        public synchronized boolean isAlertSent() {
+            return alertSent != 0;
+        }
+
+        /**
+         * 合并数据库中的值 (其它节点回写)，只接受更新的在场时间
+         */
+        synchronized void merge(Reservation res) {
+            if (res.getLastPresentTime() != null && res.getLastPresentTime().getTime() > lastPresentTime) {
+                lastPresentTime = res.getLastPresentTime().getTime();
+                if (res.getTotalAwayMinutes() != null) totalAwayMinutes = res.getTotalAwayMinutes();
+                if (res.getOccupancyAlertSent() != null) alertSent = res.getOccupancyAlertSent();
+            }
+        }
+
+        synchronized Reservation takeDirty() {
+            if (!dirty) return null;
+            dirty = false;
+            Reservation row = new Reservation();
+            row.setId(reservationId);
+            row.setLastPresentTime(lastPresentTime > 0 ? new Date(lastPresentTime) : null);
+            row.setTotalAwayMinutes(totalAwayMinutes);
+            row.setOccupancyAlertSent(alertSent);
+            return row;
+        }
+
+        synchronized void markDirty() {
+            dirty = true;
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        Date now = new Date();
+        List<Reservation> active = reservationService.list(activeQuery());
+        for (Reservation res : active) {
+            entries.put(res.getId(), new Presence(res));
+        }
+        lastSyncTime = now;
+        log.info("Presence store loaded {} active reservations", active.size());
+    }
+
+    /**
+     * 记录一次在场确认：累加本次离开时长、刷新在场时间并清除预警标记，只修改内存
+     *
+     * @return 在场信息；预约不存在、不处于签到/暂离状态或已结束 (等待最后一次回写后移除) 时返回 null
+     */
+    public Presence confirm(Long reservationId, Date now) {
+        Presence p = entries.get(reservationId);
+        if (p == null) {
+            Reservation res = reservationService.getById(reservationId);
+            if (res == null || !("checked_in".equals(res.getStatus()) || "away".equals(res.getStatus()))) {
+                return null;
+            }
+            p = entries.computeIfAbsent(reservationId, k -> new Presence(res));
+        }
+
+        synchronized (p) {
+            // 已结束的预约不因迟到的心跳重新激活
+            if (p.closed) {
+                return null;
+            }
+            if (p.lastPresentTime > 0) {
+                int awayMinutes = (int) ((now.getTime() - p.lastPresentTime) / (1000 * 60));
+                if (awayMinutes > 0) {
+                    p.totalAwayMinutes += awayMinutes;
+                }
+            }
+            p.lastPresentTime = now.getTime();
+            p.alertSent = 0;
+            p.dirty = true;
+        }
+        confirms.incrementAndGet();
+        return p;
+    }
+
+    /**
+     * 标记已发送占座预警；事务中调用时在提交后生效，避免回滚后预警丢失却不再重发。
+     * 判定预警之后又确认过在场 (在场时间比判定依据新) 时不再标记，以免覆盖心跳清除的预警标记
+     *
+     * @param flaggedPresentTime 判定预警时依据的在场时间 (数据库值，秒级精度)
+     */
+    public void markAlertedAfterCommit(Long reservationId, Date flaggedPresentTime) {
+        afterCommit(() -> {
+            Presence p = entries.get(reservationId);
+            if (p == null) return;
+            synchronized (p) {
+                if (flaggedPresentTime != null && p.lastPresentTime - flaggedPresentTime.getTime() >= 1000) {
+                    return;
+                }
+                p.alertSent = 1;
+                p.dirty = true;
+            }
+        });
+    }
+
+    /**
+     * 预约离开签到/暂离状态后移除；尚未回写的数据在下一次刷盘后再丢弃
+     */
+    public void removeAfterCommit(Long reservationId) {
+        afterCommit(() -> remove(reservationId));
+    }
+
+    public void remove(Long reservationId) {
+        Presence p = entries.get(reservationId);
+        if (p == null) return;
+        synchronized (p) {
+            if (p.dirty) {
+                p.closed = true;
+                return;
+            }
+        }
+        entries.remove(reservationId, p);
+    }
+
+    /**
+     * 当前所有在场信息的快照
+     */
+    public List<Presence> snapshot() {
+        List<Presence> result = new ArrayList<>(entries.size());
+        for (Presence p : entries.values()) {
+            synchronized (p) {
+                if (p.closed) continue;
+            }
+            result.add(p);
+        }
+        return result;
+    }
+
+    public Presence get(Long reservationId) {
+        return entries.get(reservationId);
+    }
+
+    /**
+     * 批量结束的预约 (闭馆签退、批量违约、占座签退) 不经过单条关闭回调，在提交后一并移除
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onReservationsBulkClosed(ReservationsBulkClosedEvent event) {
+        for (Long reservationId : event.getReservationIds()) {
+            remove(reservationId);
+        }
+    }
+
+    /**
+     * 增量同步自上次同步以来数据库中有变化的预约：合并其它节点签到或回写的在场信息，
+     * 移除已在其它节点结束的预约
+     */
+    @Scheduled(fixedDelayString = "${presence.sync-interval-ms:60000}", initialDelayString = "${presence.sync-interval-ms:60000}")
+    public void sync() {
+        Date now = new Date();
+        Date since = lastSyncTime != null ? new Date(lastSyncTime.getTime() - 60 * 1000L) : null;
+        LambdaQueryWrapper<Reservation> query;
+        if (since != null) {
+            query = new LambdaQueryWrapper<Reservation>()
+                    .select(Reservation::getId, Reservation::getUserId, Reservation::getSeatId, Reservation::getStatus,
+                            Reservation::getLastPresentTime, Reservation::getTotalAwayMinutes, Reservation::getOccupancyAlertSent)
+                    .ge(Reservation::getUpdateTime, since);
+        } else {
+            query = activeQuery();
+        }
+        for (Reservation res : reservationService.list(query)) {
+            boolean active = ("checked_in".equals(res.getStatus()) || "away".equals(res.getStatus()))
+                    && res.getLastPresentTime() != null;
+            if (since != null && !active) {
+                remove(res.getId());
+                continue;
+            }
+            Presence p = entries.putIfAbsent(res.getId(), new Presence(res));
+            if (p != null) {
+                p.merge(res);
+            }
+        }
+        lastSyncTime = now;
+    }
+
+    @Scheduled(fixedDelayString = "${presence.flush-interval-ms:5000}")
+    public void flush() {
+        List<Presence> pending = new ArrayList<>();
+        List<Reservation> rows = new ArrayList<>();
+        for (Presence p : entries.values()) {
+            Reservation row = p.takeDirty();
+            if (row == null) continue;
+            pending.add(p);
+            rows.add(row);
+            if (rows.size() >= flushBatchSize) {
+                write(pending, rows);
+                pending = new ArrayList<>();
+                rows = new ArrayList<>();
+            }
+        }
+        if (!rows.isEmpty()) {
+            write(pending, rows);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    public Map<String, Object> getStats() {
+        int dirty = 0;
+        for (Presence p : entries.values()) {
+            synchronized (p) {
+                if (p.dirty) dirty++;
+            }
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("entries", entries.size());
+        stats.put("dirty", dirty);
+        stats.put("confirms", confirms.get());
+        stats.put("flushes", flushes.get());
+        stats.put("flushedRows", flushedRows.get());
+        stats.put("flushFailures", flushFailures.get());
+        stats.put("lastFlushTime", lastFlushTime);
+        stats.put("lastSyncTime", lastSyncTime);
+        return stats;
+    }
+
+    private void write(List<Presence> pending, List<Reservation> rows) {
+        try {
+            flushTransaction.executeWithoutResult(status -> reservationMapper.updatePresenceBatch(rows));
+            flushes.incrementAndGet();
+            flushedRows.addAndGet(rows.size());
+            lastFlushTime = new Date();
+            for (Presence p : pending) {
+                boolean drop;
+                synchronized (p) {
+                    drop = p.closed && !p.dirty;
+                }
+                if (drop) {
+                    entries.remove(p.reservationId, p);
+                }
+            }
+        } catch (Exception e) {
+            flushFailures.incrementAndGet();
+            log.warn("Failed to flush {} presence entries: {}", rows.size(), e.getMessage());
+            for (Presence p : pending) {
+                p.markDirty();
+            }
+        }
+    }
+
+    private static LambdaQueryWrapper<Reservation> activeQuery() {
+        return new LambdaQueryWrapper<Reservation>()
+                .select(Reservation::getId, Reservation::getUserId, Reservation::getSeatId,
+                        Reservation::getLastPresentTime, Reservation::getTotalAwayMinutes, Reservation::getOccupancyAlertSent)
+                .in(Reservation::getStatus, "checked_in", "away")
+                .isNotNull(Reservation::getLastPresentTime);
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.library.seat.modules.reservation.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * 预约冲突检测模式 (redis / optimistic) 的运行时统计
+ * 按模式记录请求数、成功/冲突次数与耗时，用于在压测或线上对比两种模式的表现。
+ */
+@Component
+public class ReservationMetrics {
+
+    private final Map<String, ModeStats> modes = new ConcurrentHashMap<>();
+
+    private final AtomicLong redisFallbacks = new AtomicLong();
+
+    public void record(String mode, long elapsedNanos, boolean success) {
+        modes.computeIfAbsent(mode, k -> new ModeStats()).record(elapsedNanos, success);
+    }
+
+    /**
+     * Redis 不可用时降级为乐观模式的次数
+     */
+    public void recordRedisFallback() {
+        redisFallbacks.incrementAndGet();
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("redisFallbacks", redisFallbacks.get());
+        Map<String, Object> items = new LinkedHashMap<>();
+        modes.forEach((mode, stats) -> items.put(mode, stats.snapshot()));
+        result.put("modes", items);
+        return result;
+    }
+
+    private static class ModeStats {
+        final AtomicLong total = new AtomicLong();
+        final AtomicLong succeeded = new AtomicLong();
+        final AtomicLong totalNanos = new AtomicLong();
+        final AtomicLong maxNanos = new AtomicLong();
+
+        void record(long elapsedNanos, boolean success) {
+            total.incrementAndGet();
+            if (success) {
+                succeeded.incrementAndGet();
+            }
+            totalNanos.addAndGet(elapsedNanos);
+            maxNanos.accumulateAndGet(elapsedNanos, Math::max);
+        }
+
+        Map<String, Object> snapshot() {
+            long count = total.get();
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("total", count);
+            item.put("succeeded", succeeded.get());
+            item.put("rejected", count - succeeded.get());
+            item.put("avgMillis", count > 0 ? totalNanos.get() / count / 1_000_000.0 : 0);
+            item.put("maxMillis", maxNanos.get() / 1_000_000.0);
+            return item;
+        }
+    }
+}
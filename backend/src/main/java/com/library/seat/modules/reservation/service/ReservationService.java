@@ -5,12 +5,10 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -18,8 +16,10 @@ import org.springframework.transaction.annotation.Transactional;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.library.seat.common.Result;
+import com.library.seat.common.websocket.BroadcastMessages;
 import com.library.seat.modules.reservation.entity.Appeal;
 import com.library.seat.modules.reservation.entity.Reservation;
+import com.library.seat.modules.reservation.event.ReservationChangedEvent;
 import com.library.seat.modules.reservation.mapper.AppealMapper;
 import com.library.seat.modules.reservation.mapper.ReservationMapper;
 import com.library.seat.modules.seat.entity.Seat;
@@ -38,21 +38,14 @@ public class ReservationService extends ServiceImpl<ReservationMapper, Reservati
     @Autowired
     private AppealMapper appealMapper;
 
-    @Autowired
-    private StringRedisTemplate redisTemplate;
-    
     @Autowired
     private SimpMessagingTemplate messagingTemplate;
 
-    @Autowired
-    @org.springframework.context.annotation.Lazy
-    private StatsService statsService;
-
     @Autowired
     private UserDetailsServiceImpl userDetailsService;
 
     @Autowired
-    private com.library.seat.modules.sys.service.ISysNotificationService notificationService;
+    private com.library.seat.modules.outbox.service.OutboxService outboxService;
 
     @Autowired
     private com.library.seat.modules.sys.service.SysLogService sysLogService;
@@ -63,32 +56,42 @@ public class ReservationService extends ServiceImpl<ReservationMapper, Reservati
     @Autowired
     private com.library.seat.modules.occupancy.service.OccupancyMonitorService occupancyMonitorService;
 
-    public com.library.seat.modules.sys.service.ISysNotificationService getNotificationService() {
-        return notificationService;
-    }
+    @Autowired
+    private SeatAvailabilityIndex availabilityIndex;
 
-    public void broadcastReservationUpdate(Long userId, String event, String reason) {
-        broadcastReservationUpdate(userId, event, reason, true);
-    }
+    @Autowired
+    private PresenceStore presenceStore;
 
-    public void broadcastReservationUpdate(Long userId, String event, String reason, boolean includeStats) {
-        Map<String, Object> payload = new HashMap<>();
-        payload.put("event", event);
-        payload.put("reason", reason);
-        payload.put("timestamp", new Date());
-
-        messagingTemplate.convertAndSendToUser(
-                String.valueOf(userId),
-                "/queue/reservation_update",
-                payload
-        );
-        
-        // 同时广播公共状态更新（用于消息广场实时刷新座位信息）
-        broadcastUserSeatStatus(userId);
-        
-        // 广播统计信息更新（用于首页实时刷新数据）
-        if (includeStats) {
-            statsService.broadcastStats();
+    @Autowired
+    private SlotClaimService slotClaimService;
+
+    @Autowired
+    private ReservationMetrics reservationMetrics;
+
+    @Autowired
+    private com.library.seat.modules.job.DeadlineScheduler deadlineScheduler;
+
+    @Autowired
+    private org.springframework.context.ApplicationEventPublisher eventPublisher;
+
+    /**
+     * 冲突检测模式: redis (Lua 原子占用) / optimistic (直接写库，由唯一索引兜底)
+     */
+    @org.springframework.beans.factory.annotation.Value("${reservation.conflict-mode:redis}")
+    private String conflictMode;
+
+    /**
+     * 预约离开活跃状态 (reserved/checked_in/away -> completed/violation) 后的统一收尾，
+     * 释放可用性索引中占用的时段并取消截止时间调度
+     */
+    public void onReservationClosed(Reservation reservation, String previousStatus) {
+        if ("reserved".equals(previousStatus) || "checked_in".equals(previousStatus) || "away".equals(previousStatus)) {
+            availabilityIndex.releaseAfterCommit(reservation);
+            slotClaimService.releaseAfterCommit(reservation);
+            deadlineScheduler.cancelAfterCommit(reservation.getId());
+        }
+        if ("checked_in".equals(previousStatus) || "away".equals(previousStatus)) {
+            presenceStore.removeAfterCommit(reservation.getId());
         }
     }
 
@@ -110,170 +113,244 @@ public class ReservationService extends ServiceImpl<ReservationMapper, Reservati
             }
         }
 
-        Map<String, Object> payload = new HashMap<>();
-        payload.put("username", user.getUsername());
-        payload.put("seatNo", seatNo);
-        payload.put("event", "user_seat_change");
-        messagingTemplate.convertAndSend("/topic/user_seat_status", payload);
+        messagingTemplate.convertAndSend("/topic/user_seat_status", new BroadcastMessages.UserSeatChange(user.getUsername(), seatNo));
     }
 
     @Transactional(rollbackFor = Exception.class)
     public Result<Map<String, Object>> reserve(Reservation reservation) {
-        String lockKey = "lock:seat:" + reservation.getSeatId();
-        // 简单分布式锁 (SetNX) - 延长锁时间到30秒，防止批量预约时锁过期
-        Boolean lock = redisTemplate.opsForValue().setIfAbsent(lockKey, String.valueOf(reservation.getUserId()), 30, TimeUnit.SECONDS);
+        long startedAt = System.nanoTime();
+        String[] mode = {"optimistic".equalsIgnoreCase(conflictMode) ? "optimistic" : "redis"};
+        Result<Map<String, Object>> result = null;
+        try {
+            result = doReserve(reservation, mode);
+            return result;
+        } finally {
+            reservationMetrics.record(mode[0], System.nanoTime() - startedAt, result != null && result.isSuccess());
+        }
+    }
 
-        if (Boolean.FALSE.equals(lock)) {
-            return Result.error("该座位正在被抢占，请稍后重试");
+    private Result<Map<String, Object>> doReserve(Reservation reservation, String[] mode) {
+        // 0. 检查用户信用分
+        int minScore = configService.getIntValue("min_credit_score", 60);
+        SysUser user = userDetailsService.getById(reservation.getUserId());
+        if (user != null && user.getCreditScore() < minScore) {
+            return Result.error("您的信用分低于 " + minScore + " 分，暂时无法预约。请通过申诉或联系管理员处理。");
         }
 
-        try {
-            // 0. 检查用户信用分
-            int minScore = configService.getIntValue("min_credit_score", 60);
-            SysUser user = userDetailsService.getById(reservation.getUserId());
-            if (user != null && user.getCreditScore() < minScore) {
-                return Result.error("您的信用分低于 " + minScore + " 分，暂时无法预约。请通过申诉或联系管理员处理。");
-            }
+        // 1. 检查座位是否存在
+        Seat seat = seatService.getById(reservation.getSeatId());
+        if (seat == null || "maintenance".equals(seat.getStatus())) {
+            return Result.error("座位不存在或正在维护中");
+        }
 
-            // 1. 检查座位是否存在
-            Seat seat = seatService.getById(reservation.getSeatId());
-            if (seat == null || "maintenance".equals(seat.getStatus())) {
-                return Result.error("座位不存在或正在维护中");
+        // 获取需要预约的时段列表
+        List<String> slots = reservation.getSlots();
+        if (slots == null || slots.isEmpty()) {
+            if (reservation.getSlot() != null) {
+                slots = java.util.Collections.singletonList(reservation.getSlot());
+            } else {
+                return Result.error("请选择预约时段");
             }
+        }
 
-            // 获取需要预约的时段列表
-            List<String> slots = reservation.getSlots();
-            if (slots == null || slots.isEmpty()) {
-                if (reservation.getSlot() != null) {
-                    slots = java.util.Collections.singletonList(reservation.getSlot());
-                } else {
-                    return Result.error("请选择预约时段");
-                }
+        for (String slot : slots) {
+            if (!SeatAvailabilityIndex.isValidSlot(slot)) {
+                return Result.error("无效的预约时段: " + slot);
             }
+        }
 
-            // 2. 预检查：验证所有时段是否都可用（避免部分预约成功）
-            for (String slot : slots) {
-                // 检查座位在该时段是否已被占用
-                Long seatOccupied = this.baseMapper.selectCount(new LambdaQueryWrapper<Reservation>()
-                        .eq(Reservation::getSeatId, reservation.getSeatId())
-                        .eq(Reservation::getSlot, slot)
-                        .in(Reservation::getStatus, "reserved", "checked_in", "away"));
-                if (seatOccupied > 0) {
-                    return Result.error("座位在时段 " + slot + " 已被预约");
-                }
-
-                // 检查用户在该时段是否已有预约
-                Long userReserved = this.baseMapper.selectCount(new LambdaQueryWrapper<Reservation>()
-                        .eq(Reservation::getUserId, reservation.getUserId())
-                        .eq(Reservation::getSlot, slot)
-                        .in(Reservation::getStatus, "reserved", "checked_in", "away"));
-                if (userReserved > 0) {
-                    return Result.error("您在时段 " + slot + " 已有预约，请勿重复预约");
+        // 2. 预检查：先在本机内存索引中快速筛查冲突 (命中时按数据库确认)，再通过 Redis Lua 脚本原子地占用 座位-时段 与 用户-时段 键
+        //    (避免部分预约成功)；事务回滚时两处占用都会自动补偿撤销。
+        //    optimistic 模式或 Redis 不可用时跳过 Redis，直接写库，由活跃预约唯一索引保证最终不重复
+        java.time.LocalDate today = java.time.LocalDate.now();
+        SeatAvailabilityIndex.Conflict conflict = availabilityIndex.tryClaim(
+                reservation.getSeatId(), reservation.getUserId(), today, slots);
+        if (conflict != null) {
+            // 本机索引可能未收到其它节点上的释放，拒绝前按数据库确认一次
+            availabilityIndex.reload(reservation.getSeatId(), reservation.getUserId(), today);
+            conflict = availabilityIndex.tryClaim(reservation.getSeatId(), reservation.getUserId(), today, slots);
+        }
+        if (conflict == null && "redis".equals(mode[0])) {
+            try {
+                conflict = slotClaimService.tryClaim(reservation.getSeatId(), reservation.getUserId(), today, slots);
+                if (conflict != null) {
+                    availabilityIndex.releaseClaim(reservation.getSeatId(), reservation.getUserId(), today, slots);
                 }
+            } catch (org.springframework.dao.DataAccessException e) {
+                log.warn("Redis slot claim unavailable, falling back to optimistic mode: {}", e.getMessage());
+                reservationMetrics.recordRedisFallback();
+                mode[0] = "optimistic";
             }
+        }
+        if (conflict != null) {
+            return conflictError(conflict);
+        }
 
-            // 3. 创建预约 - 使用批量插入确保原子性
-            Date now = new Date();
-            List<Reservation> createdReservations = new java.util.ArrayList<>();
+        // 3. 创建预约 - 使用批量插入确保原子性
+        Date now = new Date();
+        List<Reservation> createdReservations = new java.util.ArrayList<>();
+        
+        // 先构建所有预约对象
+        for (String slot : slots) {
+            Reservation res = new Reservation();
+            org.springframework.beans.BeanUtils.copyProperties(reservation, res);
+            res.setSlot(slot);
+            res.setStatus("reserved");
+            if (res.getType() == null) {
+                res.setType("appointment");
+            }
             
-            // 先构建所有预约对象
-            for (String slot : slots) {
-                Reservation res = new Reservation();
-                org.springframework.beans.BeanUtils.copyProperties(reservation, res);
-                res.setSlot(slot);
-                res.setStatus("reserved");
-                if (res.getType() == null) {
-                    res.setType("appointment");
-                }
-                
-                // 计算该时段的起止时间
-                java.util.Calendar cal = java.util.Calendar.getInstance();
-                cal.setTime(now);
-                int year = cal.get(java.util.Calendar.YEAR);
-                int month = cal.get(java.util.Calendar.MONTH);
-                int day = cal.get(java.util.Calendar.DAY_OF_MONTH);
-                
-                java.util.Calendar startCal = java.util.Calendar.getInstance();
-                startCal.set(year, month, day, 0, 0, 0);
-                java.util.Calendar endCal = java.util.Calendar.getInstance();
-                endCal.set(year, month, day, 0, 0, 0);
-                
-                switch (slot) {
-                    case "morning":
-                        startCal.set(java.util.Calendar.HOUR_OF_DAY, 8);
-                        endCal.set(java.util.Calendar.HOUR_OF_DAY, 12);
-                        break;
-                    case "afternoon":
-                        startCal.set(java.util.Calendar.HOUR_OF_DAY, 13);
-                        endCal.set(java.util.Calendar.HOUR_OF_DAY, 17);
-                        break;
-                    case "evening":
-                        startCal.set(java.util.Calendar.HOUR_OF_DAY, 18);
-                        endCal.set(java.util.Calendar.HOUR_OF_DAY, 22);
-                        break;
-                }
-                
-                res.setStartTime(startCal.getTime());
-                res.setEndTime(endCal.getTime());
-                
-                // 设置签到截止时间: 
-                // 1. 标准截止时间: start_time + checkin_after_window
-                // 2. 宽限截止时间: 如果当前预约时已过初始时段，确保有足够的签到时间 (late_reservation_grace_period)
-                int checkInAfter = configService.getIntValue("checkin_after_window", 15);
-                int gracePeriod = configService.getIntValue("late_reservation_grace_period", 5);
-                
-                long standardDeadline = res.getStartTime().getTime() + (long) checkInAfter * 60 * 1000;
-                long graceDeadline = now.getTime() + (long) gracePeriod * 60 * 1000;
-                
-                res.setDeadline(new Date(Math.max(standardDeadline, graceDeadline)));
-                res.setCreateTime(now);
-                createdReservations.add(res);
+            // 计算该时段的起止时间
+            java.util.Calendar cal = java.util.Calendar.getInstance();
+            cal.setTime(now);
+            int year = cal.get(java.util.Calendar.YEAR);
+            int month = cal.get(java.util.Calendar.MONTH);
+            int day = cal.get(java.util.Calendar.DAY_OF_MONTH);
+            
+            java.util.Calendar startCal = java.util.Calendar.getInstance();
+            startCal.set(year, month, day, 0, 0, 0);
+            java.util.Calendar endCal = java.util.Calendar.getInstance();
+            endCal.set(year, month, day, 0, 0, 0);
+            
+            switch (slot) {
+                case "morning":
+                    startCal.set(java.util.Calendar.HOUR_OF_DAY, 8);
+                    endCal.set(java.util.Calendar.HOUR_OF_DAY, 12);
+                    break;
+                case "afternoon":
+                    startCal.set(java.util.Calendar.HOUR_OF_DAY, 13);
+                    endCal.set(java.util.Calendar.HOUR_OF_DAY, 17);
+                    break;
+                case "evening":
+                    startCal.set(java.util.Calendar.HOUR_OF_DAY, 18);
+                    endCal.set(java.util.Calendar.HOUR_OF_DAY, 22);
+                    break;
             }
             
-            // 批量保存所有预约 - 使用saveBatch确保原子性
+            res.setStartTime(startCal.getTime());
+            res.setEndTime(endCal.getTime());
+            
+            // 设置签到截止时间: 
+            // 1. 标准截止时间: start_time + checkin_after_window
+            // 2. 宽限截止时间: 如果当前预约时已过初始时段，确保有足够的签到时间 (late_reservation_grace_period)
+            int checkInAfter = configService.getIntValue("checkin_after_window", 15);
+            int gracePeriod = configService.getIntValue("late_reservation_grace_period", 5);
+            
+            long standardDeadline = res.getStartTime().getTime() + (long) checkInAfter * 60 * 1000;
+            long graceDeadline = now.getTime() + (long) gracePeriod * 60 * 1000;
+            
+            res.setDeadline(new Date(Math.max(standardDeadline, graceDeadline)));
+            res.setCreateTime(now);
+            createdReservations.add(res);
+        }
+        
+        // 批量保存所有预约 - 使用saveBatch确保原子性；唯一索引冲突时整体回滚并返回对应提示
+        try {
             this.saveBatch(createdReservations);
+        } catch (RuntimeException e) {
+            SeatAvailabilityIndex.Conflict duplicate = translateDuplicateKey(e);
+            if (duplicate == null) {
+                throw e;
+            }
+            org.springframework.transaction.interceptor.TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+            return conflictError(duplicate);
+        }
+        for (Reservation res : createdReservations) {
+            deadlineScheduler.scheduleAfterCommit(res.getId(), res.getDeadline());
+        }
 
-            // 4. 更新座位实时状态 (如果当前有时段被占用，则设为 occupied)
-            updateSeatRealtimeStatus(reservation.getSeatId());
+        // 4. 更新座位实时状态 (如果当前有时段被占用，则设为 occupied)
+        String seatStatus = updateSeatRealtimeStatus(reservation.getSeatId(), slots);
 
-            // 5. 广播更新
-            broadcastReservationUpdate(reservation.getUserId(), "reservation_success", "预约成功");
-            statsService.broadcastStats();
+        // 5. 广播、通知、日志在事务提交后异步执行
+        Reservation first = createdReservations.get(0);
+        eventPublisher.publishEvent(new ReservationChangedEvent("reserved", first.getId(), reservation.getUserId(), reservation.getSeatId())
+                .seatStatus(seatStatus)
+                .userEvent("reservation_success", "预约成功")
+                .broadcastStats()
+                .notification("预约成功", "您已成功预约座位 " + seat.getSeatNo() + " (" + String.join(",", slots) + ")，请在规定时间内签到。", "success")
+                .log(user != null ? user.getUsername() : null, "批量预约座位", "座位号: " + seat.getSeatNo() + ", 时段: " + String.join(",", slots)));
 
-            // 6. 发送通知
-            notificationService.send(reservation.getUserId(), "预约成功", "您已成功预约座位 " + seat.getSeatNo() + " (" + String.join(",", slots) + ")，请在规定时间内签到。", "success");
+        // 返回第一个时段的信息用于前端倒计时
+        Map<String, Object> result = new HashMap<>();
+        result.put("id", first.getId());
+        result.put("startTime", first.getStartTime());
+        result.put("deadline", first.getDeadline());
 
-            // 7. 记录日志
-            sysLogService.log(user.getUsername(), "批量预约座位", "座位号: " + seat.getSeatNo() + ", 时段: " + String.join(",", slots));
+        return Result.success(result);
+    }
 
-            // 返回第一个时段的信息用于前端倒计时
-            Reservation first = createdReservations.get(0);
-            Map<String, Object> result = new HashMap<>();
-            result.put("id", first.getId());
-            result.put("startTime", first.getStartTime());
-            result.put("deadline", first.getDeadline());
+    public Map<String, Object> getReservationMetrics() {
+        Map<String, Object> result = reservationMetrics.snapshot();
+        result.put("conflictMode", conflictMode);
+        return result;
+    }
 
-            return Result.success(result);
-        } finally {
-            redisTemplate.delete(lockKey);
+    private Result<Map<String, Object>> conflictError(SeatAvailabilityIndex.Conflict conflict) {
+        if (conflict.getType() == SeatAvailabilityIndex.ConflictType.SEAT) {
+            return Result.error("座位在时段 " + conflict.getSlot() + " 已被预约");
         }
+        return Result.error("您在时段 " + conflict.getSlot() + " 已有预约，请勿重复预约");
+    }
+
+    /**
+     * 将活跃预约唯一索引的冲突 (MySQL 1062) 转换为冲突信息，其它异常返回 null。
+     * 错误信息形如: Duplicate entry '12:2026-03-07:morning' for key 'sys_reservation.uk_active_seat'
+     */
+    private SeatAvailabilityIndex.Conflict translateDuplicateKey(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (!(t instanceof java.sql.SQLException sqlEx) || sqlEx.getErrorCode() != 1062) {
+                continue;
+            }
+            String message = String.valueOf(sqlEx.getMessage());
+            SeatAvailabilityIndex.ConflictType type;
+            if (message.contains("uk_active_seat")) {
+                type = SeatAvailabilityIndex.ConflictType.SEAT;
+            } else if (message.contains("uk_active_user")) {
+                type = SeatAvailabilityIndex.ConflictType.USER;
+            } else {
+                return null;
+            }
+            String slot = "";
+            int start = message.indexOf('\'');
+            int end = start >= 0 ? message.indexOf('\'', start + 1) : -1;
+            if (end > start) {
+                String entry = message.substring(start + 1, end);
+                slot = entry.substring(entry.lastIndexOf(':') + 1);
+            }
+            return new SeatAvailabilityIndex.Conflict(type, slot);
+        }
+        return null;
     }
 
-    private void updateSeatRealtimeStatus(Long seatId) {
+    /**
+     * 更新座位实时状态，返回需要广播的新状态 (不在开放时段内时返回 null)
+     */
+    private String updateSeatRealtimeStatus(Long seatId, List<String> claimedSlots) {
         String currentSlot = getCurrentSlot();
         if (currentSlot == null) {
             seatService.updateStatus(seatId, "available");
-            return;
+            return null;
         }
 
-        Long count = this.baseMapper.selectCount(new LambdaQueryWrapper<Reservation>()
-                .eq(Reservation::getSeatId, seatId)
-                .eq(Reservation::getSlot, currentSlot)
-                .in(Reservation::getStatus, "reserved", "checked_in", "away"));
-        
-        String newStatus = count > 0 ? "occupied" : "available";
+        // 本事务刚占用的时段加上索引中的其它占用，不再为此查库
+        boolean taken = claimedSlots.contains(currentSlot)
+                || availabilityIndex.isSeatTaken(seatId, java.time.LocalDate.now(), currentSlot);
+        String newStatus = taken ? "occupied" : "available";
         seatService.updateStatus(seatId, newStatus);
-        seatService.broadcastSeatUpdate(seatId, newStatus);
+        return newStatus;
+    }
+
+    /**
+     * 将座位置为空闲 (广播由调用方通过事件在提交后完成)
+     */
+    public Seat releaseSeat(Long seatId) {
+        Seat seat = seatService.getById(seatId);
+        if (seat != null) {
+            seat.setStatus("available");
+            seatService.updateById(seat);
+        }
+        return seat;
     }
 
     private String getCurrentSlot() {
@@ -298,6 +375,7 @@ public class ReservationService extends ServiceImpl<ReservationMapper, Reservati
             nextRes.setStatus("checked_in");
             nextRes.setDeadline(null);
             this.updateById(nextRes);
+            deadlineScheduler.cancelAfterCommit(nextRes.getId());
             // 递归处理下一个
             autoCheckInNextSlots(nextRes);
         }
@@ -344,6 +422,7 @@ public class ReservationService extends ServiceImpl<ReservationMapper, Reservati
         }
 
         // 校验位置和扫码 (必须同时满足)
+        String seatNo = null;
         if (params != null) {
             boolean hasLocation = params.containsKey("lat") && params.containsKey("lng");
             boolean hasQrCode = params.containsKey("qrCode");
@@ -373,6 +452,7 @@ public class ReservationService extends ServiceImpl<ReservationMapper, Reservati
                 if (!expected.equals(qrCode)) {
                     return Result.error("二维码信息不匹配，请扫描正确的座位二维码");
                 }
+                seatNo = seat.getSeatNo();
             }
         } else {
             return Result.error("请开启定位并扫码进行签到");
@@ -381,10 +461,19 @@ public class ReservationService extends ServiceImpl<ReservationMapper, Reservati
         // 保存原始状态用于判断签到类型
         String originalStatus = reservation.getStatus();
         
-        // 更新预约状态
+        // 更新预约状态 (以原状态为条件，避免覆盖截止时刻同时发生的违约处理)
+        boolean updated = this.lambdaUpdate()
+                .set(Reservation::getStatus, "checked_in")
+                .set(Reservation::getDeadline, null) // 清除截止时间
+                .eq(Reservation::getId, reservation.getId())
+                .eq(Reservation::getStatus, originalStatus)
+                .update();
+        if (!updated) {
+            return Result.error("当前状态不可签到");
+        }
         reservation.setStatus("checked_in");
-        reservation.setDeadline(null); // 清除截止时间
-        this.updateById(reservation);
+        reservation.setDeadline(null);
+        deadlineScheduler.cancelAfterCommit(reservation.getId());
 
         // 更新在场时间（用于占座检测）
         // 区分首次签到和暂离返回
@@ -396,18 +485,14 @@ public class ReservationService extends ServiceImpl<ReservationMapper, Reservati
 
         // 处理连续时段自动签到
         autoCheckInNextSlots(reservation);
-        
-        seatService.broadcastSeatUpdate(reservation.getSeatId(), "occupied");
 
-        // 发送通知
-        notificationService.send(userId, "签到成功", "您已成功签到，祝您学习愉快！", "success");
-
-        // 记录日志
-        SysUser user = userDetailsService.getById(userId);
-        Seat seat = seatService.getById(reservation.getSeatId());
-        if (user != null && seat != null) {
-            sysLogService.log(user.getUsername(), "座位签到", "座位号: " + seat.getSeatNo());
+        ReservationChangedEvent event = new ReservationChangedEvent("checked_in", reservation.getId(), userId, reservation.getSeatId())
+                .seatStatus("occupied")
+                .notification("签到成功", "您已成功签到，祝您学习愉快！", "success");
+        if (seatNo != null) {
+            event.log(null, "座位签到", "座位号: " + seatNo);
         }
+        eventPublisher.publishEvent(event);
 
         return Result.success(true);
     }
@@ -443,6 +528,9 @@ public class ReservationService extends ServiceImpl<ReservationMapper, Reservati
         int violationTime = configService.getIntValue("violation_time", 30);
         reservation.setDeadline(new Date(System.currentTimeMillis() + (long) violationTime * 60 * 1000));
         this.updateById(reservation);
+        deadlineScheduler.scheduleAfterCommit(reservation.getId(), reservation.getDeadline());
+        // 无推送/通知，仅供监控快照等订阅方感知状态变化
+        eventPublisher.publishEvent(new ReservationChangedEvent("away", reservation.getId(), userId, reservation.getSeatId()));
 
         // 暂离时不更新占座检测记录的lastDetectedTime，让占座检测能够计算离开时长
         // 用户暂离期间也会被占座检测监控
@@ -477,21 +565,18 @@ public class ReservationService extends ServiceImpl<ReservationMapper, Reservati
                 reservation.setStatus("violation");
                 reservation.setEndTime(new Date());
                 this.updateById(reservation);
+                onReservationClosed(reservation, originalStatus);
 
                 // 释放座位
-                Seat seat = seatService.getById(reservation.getSeatId());
-                if (seat != null) {
-                    seat.setStatus("available");
-                    seatService.updateById(seat);
-                    seatService.broadcastSeatUpdate(seat.getId(), "available");
-                }
+                Seat seat = releaseSeat(reservation.getSeatId());
 
                 // 扣除信用分 (-10)
                 userDetailsService.deductCreditScore(userId, 10);
 
-                // 发送通知
-                notificationService.send(userId, "退座违约扣分", "由于您在预约起始时间" + bufferTime + "分钟内取消，已被视为违约并扣除信用分。", "error");
-                
+                eventPublisher.publishEvent(new ReservationChangedEvent("violation", reservation.getId(), userId, reservation.getSeatId())
+                        .seatStatus(seat != null ? "available" : null)
+                        .notification("退座违约扣分", "由于您在预约起始时间" + bufferTime + "分钟内取消，已被视为违约并扣除信用分。", "error"));
+
                 return Result.success(true);
             }
         }
@@ -506,27 +591,22 @@ public class ReservationService extends ServiceImpl<ReservationMapper, Reservati
                 reservation.setStatus("violation");
                 reservation.setEndTime(new Date());
                 this.updateById(reservation);
+                onReservationClosed(reservation, originalStatus);
 
                 // 释放座位
-                Seat seat = seatService.getById(reservation.getSeatId());
-                if (seat != null) {
-                    seat.setStatus("available");
-                    seatService.updateById(seat);
-                    seatService.broadcastSeatUpdate(seat.getId(), "available");
-                }
+                Seat seat = releaseSeat(reservation.getSeatId());
 
                 // 扣除信用分 (-10)
                 userDetailsService.deductCreditScore(userId, 10);
 
-                // 发送通知
-                notificationService.send(userId, "退座违约扣分", "由于您使用座位时长不足" + minUsageTime + "分钟，已被视为恶意占座并扣除信用分。", "error");
-                
-                // 记录日志
-                SysUser user = userDetailsService.getById(userId);
-                if (user != null && seat != null) {
-                    sysLogService.log(user.getUsername(), "恶意占座违约", "座位号: " + seat.getSeatNo() + ", 使用时长: " + actualUsageTime + "分钟");
+                ReservationChangedEvent event = new ReservationChangedEvent("violation", reservation.getId(), userId, reservation.getSeatId())
+                        .notification("退座违约扣分", "由于您使用座位时长不足" + minUsageTime + "分钟，已被视为恶意占座并扣除信用分。", "error");
+                if (seat != null) {
+                    event.seatStatus("available")
+                            .log(null, "恶意占座违约", "座位号: " + seat.getSeatNo() + ", 使用时长: " + actualUsageTime + "分钟");
                 }
-                
+                eventPublisher.publishEvent(event);
+
                 return Result.success(true);
             }
         }
@@ -535,14 +615,10 @@ public class ReservationService extends ServiceImpl<ReservationMapper, Reservati
         reservation.setStatus("completed");
         reservation.setEndTime(new Date()); // Actual end time
         this.updateById(reservation);
+        onReservationClosed(reservation, originalStatus);
 
         // 释放座位
-        Seat seat = seatService.getById(reservation.getSeatId());
-        if (seat != null) {
-            seat.setStatus("available");
-            seatService.updateById(seat);
-            seatService.broadcastSeatUpdate(seat.getId(), "available");
-        }
+        Seat seat = releaseSeat(reservation.getSeatId());
 
         // 履约奖励: +2 信用分 (仅限已签到并正常结束的情况)
         if ("checked_in".equals(originalStatus) || "away".equals(originalStatus)) {
@@ -552,17 +628,18 @@ public class ReservationService extends ServiceImpl<ReservationMapper, Reservati
         // 发送通知
         String notifyTitle = "reserved".equals(originalStatus) ? "取消预约成功" : "释放座位成功";
         String notifyMsg = "reserved".equals(originalStatus) ? "您的预约已取消，座位已释放。" : "您已成功结束座位使用，欢迎下次光临。";
-        notificationService.send(userId, notifyTitle, notifyMsg, "info");
+        ReservationChangedEvent event = new ReservationChangedEvent("released", reservation.getId(), userId, reservation.getSeatId())
+                .notification(notifyTitle, notifyMsg, "info");
 
         // 记录日志
-        SysUser user = userDetailsService.getById(userId);
-        if (user != null && seat != null) {
+        if (seat != null) {
             String op = "取消预约";
             if ("checked_in".equals(originalStatus) || "away".equals(originalStatus)) {
                 op = "释放座位";
             }
-            sysLogService.log(user.getUsername(), op, "座位号: " + seat.getSeatNo());
+            event.seatStatus("available").log(null, op, "座位号: " + seat.getSeatNo());
         }
+        eventPublisher.publishEvent(event);
 
         return Result.success(true);
     }
@@ -581,15 +658,20 @@ public class ReservationService extends ServiceImpl<ReservationMapper, Reservati
                 .last("LIMIT 1"));
 
         if (reservation != null) {
+            String originalStatus = reservation.getStatus();
             reservation.setStatus("completed");
             reservation.setEndTime(new Date());
             this.updateById(reservation);
+            onReservationClosed(reservation, originalStatus);
             
             // 通知学生预约已结束
-            broadcastReservationUpdate(reservation.getUserId(), "reservation_ended", reason, includeStats);
-
-            // 发送系统通知
-            notificationService.send(reservation.getUserId(), "预约被取消", "您预约的座位已被管理员取消，原因: " + reason, "warning");
+            ReservationChangedEvent event = new ReservationChangedEvent("terminated", reservation.getId(), reservation.getUserId(), seatId)
+                    .userEvent("reservation_ended", reason)
+                    .notification("预约被取消", "您预约的座位已被管理员取消，原因: " + reason, "warning");
+            if (includeStats) {
+                event.broadcastStats();
+            }
+            eventPublisher.publishEvent(event);
         }
     }
 
@@ -654,7 +736,7 @@ public class ReservationService extends ServiceImpl<ReservationMapper, Reservati
         appealMapper.insert(appeal);
 
         // 发送通知给管理员
-        notificationService.send(userId, "申诉已提交", "您的违规申诉已提交，请等待管理员审核。", "info");
+        outboxService.enqueueNotification(userId, "申诉已提交", "您的违规申诉已提交，请等待管理员审核。", "info");
 
         // 记录日志
         SysUser user = userDetailsService.getById(userId);
@@ -729,27 +811,26 @@ public class ReservationService extends ServiceImpl<ReservationMapper, Reservati
         // If it was already completed/violation, maybe do nothing?
         // Let's assume we force it to completed status and free seat.
 
+        String originalStatus = reservation.getStatus();
         reservation.setStatus("completed");
         reservation.setEndTime(new Date());
         this.updateById(reservation);
+        onReservationClosed(reservation, originalStatus);
 
         // Free seat
-        Seat seat = seatService.getById(reservation.getSeatId());
-        if (seat != null) {
-            seat.setStatus("available");
-            seatService.updateById(seat);
-            seatService.broadcastSeatUpdate(seat.getId(), "available");
-        }
+        Seat seat = releaseSeat(reservation.getSeatId());
 
-        // 通知学生预约已结束 (解决前端卡顿)
-        broadcastReservationUpdate(reservation.getUserId(), "reservation_ended", "admin_force_release");
-
-        // 发送系统通知
-        notificationService.send(reservation.getUserId(), "预约被取消", "您预约的座位已被管理员取消。", "warning");
-
-        // 记录日志
+        // 通知学生预约已结束 (解决前端卡顿)；操作人需在请求线程中获取
         String adminUsername = org.springframework.security.core.context.SecurityContextHolder.getContext().getAuthentication().getName();
-        sysLogService.log(adminUsername, "强制释放座位", "座位号: " + seat.getSeatNo() + ", 原用户: " + reservation.getUserId());
+        ReservationChangedEvent event = new ReservationChangedEvent("force_released", reservation.getId(), reservation.getUserId(), reservation.getSeatId())
+                .userEvent("reservation_ended", "admin_force_release")
+                .broadcastStats()
+                .notification("预约被取消", "您预约的座位已被管理员取消。", "warning");
+        if (seat != null) {
+            event.seatStatus("available")
+                    .log(adminUsername, "强制释放座位", "座位号: " + seat.getSeatNo() + ", 原用户: " + reservation.getUserId());
+        }
+        eventPublisher.publishEvent(event);
 
         return Result.success(true);
     }
@@ -789,7 +870,7 @@ public class ReservationService extends ServiceImpl<ReservationMapper, Reservati
                 this.updateById(reservation);
 
                 // 发送通知
-                notificationService.send(appeal.getUserId(), "申诉已通过", 
+                outboxService.enqueueNotification(appeal.getUserId(), "申诉已通过", 
                         String.format("您的违规申诉已审核通过，返还%d信用分。", creditToReturn), "success");
 
                 // 记录日志
@@ -804,7 +885,7 @@ public class ReservationService extends ServiceImpl<ReservationMapper, Reservati
             }
         } else {
             // 驳回申诉
-            notificationService.send(appeal.getUserId(), "申诉被驳回", 
+            outboxService.enqueueNotification(appeal.getUserId(), "申诉被驳回", 
                     "您的违规申诉未通过审核，原因：" + reply, "error");
 
             // 记录日志
@@ -844,47 +925,30 @@ public class ReservationService extends ServiceImpl<ReservationMapper, Reservati
 
     /**
      * 统一在场确认入口（优化版）
-     * 所有用户在场行为都调用此方法
+     * 所有用户在场行为都调用此方法。
+     * 只更新 PresenceStore 内存表 (累加离开时长、刷新在场时间、清除预警标记)，由其批量回写数据库，
+     * 心跳等高频在场事件不再逐条读写 sys_reservation。
      * 
      * @param reservationId 预约ID
      * @param type 在场确认类型
      */
-    @Transactional(rollbackFor = Exception.class)
     public void confirmPresence(Long reservationId, com.library.seat.modules.reservation.enums.PresenceType type) {
-        Reservation res = this.getById(reservationId);
-        if (res == null) return;
-
-        Date now = new Date();
-
-        // 累加本次离开时长到总离开时长（用于统计用户行为）
-        if (res.getLastPresentTime() != null) {
-            long awayMillis = now.getTime() - res.getLastPresentTime().getTime();
-            int awayMinutes = (int) (awayMillis / (1000 * 60));
-            if (awayMinutes > 0) {
-                Integer totalAway = res.getTotalAwayMinutes();
-                if (totalAway == null) totalAway = 0;
-                res.setTotalAwayMinutes(totalAway + awayMinutes);
-            }
-        }
-
-        // 更新在场时间
-        res.setLastPresentTime(now);
-        
-        // 重置预警状态（用户已确认在场，清除之前的预警标记）
-        res.setOccupancyAlertSent(0);
-
-        this.updateById(res);
+        PresenceStore.Presence presence = presenceStore.confirm(reservationId, new Date());
+        if (presence == null) return;
 
         // 记录在场事件日志
-        log.info("Presence confirmed: reservationId={}, type={}, userId={}", 
-                reservationId, type, res.getUserId());
+        if (type == com.library.seat.modules.reservation.enums.PresenceType.HEARTBEAT) {
+            log.debug("Presence heartbeat: reservationId={}, userId={}", reservationId, presence.getUserId());
+        } else {
+            log.info("Presence confirmed: reservationId={}, type={}, userId={}",
+                    reservationId, type, presence.getUserId());
+        }
     }
 
     /**
      * 更新用户在场时间（兼容旧方法）
      * 在用户签到、暂离返回、扫码等操作时调用
      */
-    @Transactional(rollbackFor = Exception.class)
     public void updatePresence(Long reservationId) {
         confirmPresence(reservationId, com.library.seat.modules.reservation.enums.PresenceType.CHECK_IN);
     }
@@ -0,0 +1,291 @@
+package com.library.seat.modules.reservation.service;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.library.seat.modules.reservation.entity.Reservation;
+
+/**
+ * 座位可用性内存索引
+ * 以 (日期, 座位ID) 和 (日期, 用户ID) 为键，使用位图记录 morning/afternoon/evening 三个时段的占用情况，
+ * 预约时在内存中完成冲突判断，避免每个时段两次 selectCount 查询。
+ * 启动时从活跃预约加载，之后随预约状态变更同步维护。
+ * 索引只反映本节点上的变更，多实例部署时其它节点的退座/违约/过期不会同步过来，
+ * 因此命中冲突只作为提示：拒绝前由调用方按数据库重新载入相关座位和用户后再判断一次；
+ * 另有定期全量重建兜底。最终的防重由 Redis 占用和活跃预约唯一索引保证。
+ * 本节点事务中尚未提交的占用单独记录，重新载入与重建时保留，不会被数据库中尚不可见的状态覆盖。
+ */
+@Component
+public class SeatAvailabilityIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(SeatAvailabilityIndex.class);
+
+    private static final String[] SLOTS = {"morning", "afternoon", "evening"};
+
+    private final Map<LocalDate, DayIndex> days = new ConcurrentHashMap<>();
+
+    @Autowired
+    @Lazy
+    private ReservationService reservationService;
+
+    /**
+     * 冲突类型: 座位时段已被占用 / 用户时段已有预约
+     */
+    public enum ConflictType {
+        SEAT, USER
+    }
+
+    /**
+     * 冲突信息
+     */
+    public static class Conflict {
+        private final ConflictType type;
+        private final String slot;
+
+        Conflict(ConflictType type, String slot) {
+            this.type = type;
+            this.slot = slot;
+        }
+
+        public ConflictType getType() {
+            return type;
+        }
+
+        public String getSlot() {
+            return slot;
+        }
+    }
+
+    private static class DayIndex {
+        final Map<Long, Integer> seatSlots = new ConcurrentHashMap<>();
+        final Map<Long, Integer> userSlots = new ConcurrentHashMap<>();
+        /**
+         * 本节点尚未提交的占用位
+         */
+        final Map<Long, Integer> pendingSeatSlots = new ConcurrentHashMap<>();
+        final Map<Long, Integer> pendingUserSlots = new ConcurrentHashMap<>();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        rebuild();
+    }
+
+    /**
+     * 从数据库的活跃预约重建索引
+     */
+    @Scheduled(fixedDelayString = "${reservation.availability-index.rebuild-interval-ms:60000}",
+            initialDelayString = "${reservation.availability-index.rebuild-interval-ms:60000}")
+    public synchronized void rebuild() {
+        List<Reservation> active = reservationService.list(new LambdaQueryWrapper<Reservation>()
+                .select(Reservation::getId, Reservation::getUserId, Reservation::getSeatId,
+                        Reservation::getSlot, Reservation::getStartTime)
+                .in(Reservation::getStatus, "reserved", "checked_in", "away"));
+
+        Map<LocalDate, DayIndex> rebuilt = new ConcurrentHashMap<>();
+        for (Map.Entry<LocalDate, DayIndex> entry : days.entrySet()) {
+            DayIndex pending = entry.getValue();
+            if (pending.pendingSeatSlots.isEmpty() && pending.pendingUserSlots.isEmpty()) continue;
+            DayIndex day = new DayIndex();
+            day.pendingSeatSlots.putAll(pending.pendingSeatSlots);
+            day.pendingUserSlots.putAll(pending.pendingUserSlots);
+            day.seatSlots.putAll(pending.pendingSeatSlots);
+            day.userSlots.putAll(pending.pendingUserSlots);
+            rebuilt.put(entry.getKey(), day);
+        }
+        for (Reservation res : active) {
+            int bit = slotBit(res.getSlot());
+            if (bit == 0 || res.getStartTime() == null) continue;
+            DayIndex day = rebuilt.computeIfAbsent(toDate(res.getStartTime()), k -> new DayIndex());
+            day.seatSlots.merge(res.getSeatId(), bit, (a, b) -> a | b);
+            day.userSlots.merge(res.getUserId(), bit, (a, b) -> a | b);
+        }
+        days.clear();
+        days.putAll(rebuilt);
+        log.info("Seat availability index rebuilt from {} active reservations", active.size());
+    }
+
+    /**
+     * 按数据库重新载入指定座位与用户 (可为 null) 在某天的占用位，修正其它节点变更造成的陈旧数据。
+     * 只在命中冲突时调用；本节点尚未提交的占用保留在结果中。
+     */
+    public void reload(Long seatId, Long userId, LocalDate date) {
+        Date dayStart = Date.from(date.atStartOfDay(ZoneId.systemDefault()).toInstant());
+        Date nextDayStart = Date.from(date.plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant());
+        List<Reservation> active = reservationService.list(new LambdaQueryWrapper<Reservation>()
+                .select(Reservation::getUserId, Reservation::getSeatId, Reservation::getSlot)
+                .in(Reservation::getStatus, "reserved", "checked_in", "away")
+                .ge(Reservation::getStartTime, dayStart)
+                .lt(Reservation::getStartTime, nextDayStart)
+                .and(w -> w.eq(Reservation::getSeatId, seatId)
+                        .or(userId != null).eq(userId != null, Reservation::getUserId, userId)));
+
+        int seatBits = 0;
+        int userBits = 0;
+        for (Reservation res : active) {
+            int bit = slotBit(res.getSlot());
+            if (seatId.equals(res.getSeatId())) seatBits |= bit;
+            if (userId != null && userId.equals(res.getUserId())) userBits |= bit;
+        }
+
+        synchronized (this) {
+            DayIndex day = days.computeIfAbsent(date, k -> new DayIndex());
+            put(day.seatSlots, seatId, seatBits | day.pendingSeatSlots.getOrDefault(seatId, 0));
+            if (userId != null) {
+                put(day.userSlots, userId, userBits | day.pendingUserSlots.getOrDefault(userId, 0));
+            }
+        }
+    }
+
+    /**
+     * 原子地检查并占用座位与用户的多个时段。
+     * 任一时段冲突则不做任何修改并返回冲突信息；成功返回 null。
+     * 若当前处于事务中，占用在事务结束前记为未提交，事务回滚时自动撤销。
+     *
+     * @throws IllegalArgumentException 时段不是 morning/afternoon/evening 之一
+     */
+    public synchronized Conflict tryClaim(Long seatId, Long userId, LocalDate date, List<String> slots) {
+        DayIndex day = days.computeIfAbsent(date, k -> new DayIndex());
+        int seatBits = day.seatSlots.getOrDefault(seatId, 0);
+        int userBits = day.userSlots.getOrDefault(userId, 0);
+
+        int mask = 0;
+        for (String slot : slots) {
+            int bit = slotBit(slot);
+            if (bit == 0) {
+                throw new IllegalArgumentException("Unknown slot: " + slot);
+            }
+            if ((seatBits & bit) != 0) {
+                return new Conflict(ConflictType.SEAT, slot);
+            }
+            if ((userBits & bit) != 0) {
+                return new Conflict(ConflictType.USER, slot);
+            }
+            mask |= bit;
+        }
+
+        day.seatSlots.put(seatId, seatBits | mask);
+        day.userSlots.put(userId, userBits | mask);
+
+        final int claimed = mask;
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            day.pendingSeatSlots.merge(seatId, mask, (a, b) -> a | b);
+            day.pendingUserSlots.merge(userId, mask, (a, b) -> a | b);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    completeClaim(seatId, userId, date, claimed, status == STATUS_COMMITTED);
+                }
+            });
+        }
+        return null;
+    }
+
+    /**
+     * 是否为可预约的时段
+     */
+    public static boolean isValidSlot(String slot) {
+        return slotBit(slot) != 0;
+    }
+
+    /**
+     * 座位在指定日期时段是否已被占用 (含本节点尚未提交的占用)
+     */
+    public boolean isSeatTaken(Long seatId, LocalDate date, String slot) {
+        DayIndex day = days.get(date);
+        return day != null && (day.seatSlots.getOrDefault(seatId, 0) & slotBit(slot)) != 0;
+    }
+
+    /**
+     * 撤销 tryClaim 成功占用的时段 (后续校验失败、未写库时调用)
+     */
+    public void releaseClaim(Long seatId, Long userId, LocalDate date, List<String> slots) {
+        int mask = 0;
+        for (String slot : slots) {
+            mask |= slotBit(slot);
+        }
+        release(seatId, userId, date, mask);
+    }
+
+    /**
+     * 预约离开活跃状态 (完成/取消/违规) 时释放其时段。
+     * 在事务中调用时延迟到提交之后执行，避免回滚后索引与数据库不一致。
+     */
+    public void releaseAfterCommit(Reservation res) {
+        if (res == null || res.getStartTime() == null) return;
+        Long seatId = res.getSeatId();
+        Long userId = res.getUserId();
+        LocalDate date = toDate(res.getStartTime());
+        int bit = slotBit(res.getSlot());
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    release(seatId, userId, date, bit);
+                }
+            });
+        } else {
+            release(seatId, userId, date, bit);
+        }
+    }
+
+    private synchronized void completeClaim(Long seatId, Long userId, LocalDate date, int mask, boolean committed) {
+        DayIndex day = days.get(date);
+        if (day != null) {
+            day.pendingSeatSlots.computeIfPresent(seatId, (k, v) -> (v & ~mask) == 0 ? null : v & ~mask);
+            day.pendingUserSlots.computeIfPresent(userId, (k, v) -> (v & ~mask) == 0 ? null : v & ~mask);
+        }
+        if (!committed) {
+            release(seatId, userId, date, mask);
+        }
+    }
+
+    private synchronized void release(Long seatId, Long userId, LocalDate date, int mask) {
+        DayIndex day = days.get(date);
+        if (day == null || mask == 0) return;
+        day.seatSlots.computeIfPresent(seatId, (k, v) -> (v & ~mask) == 0 ? null : v & ~mask);
+        day.userSlots.computeIfPresent(userId, (k, v) -> (v & ~mask) == 0 ? null : v & ~mask);
+        // 丢弃已经清空的历史日期
+        if (day.seatSlots.isEmpty() && day.userSlots.isEmpty() && date.isBefore(LocalDate.now())) {
+            days.remove(date);
+        }
+    }
+
+    private static void put(Map<Long, Integer> slots, Long id, int bits) {
+        if (bits == 0) {
+            slots.remove(id);
+        } else {
+            slots.put(id, bits);
+        }
+    }
+
+    public static LocalDate toDate(Date date) {
+        return date.toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+    }
+
+    private static int slotBit(String slot) {
+        for (int i = 0; i < SLOTS.length; i++) {
+            if (SLOTS[i].equals(slot)) {
+                return 1 << i;
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,194 @@
+package com.library.seat.modules.reservation.service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.RedisStringCommands.SetOption;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.library.seat.modules.reservation.entity.Reservation;
+
+/**
+ * 基于 Redis Lua 脚本的时段占用原语
+ * 一次调用内原子地检查并占用所有请求时段的 座位-时段 键和 用户-时段 键，
+ * 替代 lock:seat:* 互斥锁 + 数据库预检查，既缩短了持锁时间也避免了同一用户跨座位重复预约的竞态。
+ * 键使用 {日期} 作为 hash tag，保证同一天的所有键落在同一个槽位，可在 Redis Cluster 中执行。
+ */
+@Service
+public class SlotClaimService {
+
+    private static final Logger log = LoggerFactory.getLogger(SlotClaimService.class);
+
+    /**
+     * KEYS: 座位-时段键 ... 用户-时段键 ...; ARGV[1]: 持有者, ARGV[2]: 过期秒数
+     * 返回 0 表示占用成功，否则返回第一个冲突键的下标 (从 1 开始)
+     */
+    private static final DefaultRedisScript<Long> CLAIM_SCRIPT = new DefaultRedisScript<>(
+            "for i = 1, #KEYS do\n" +
+            "  if redis.call('EXISTS', KEYS[i]) == 1 then\n" +
+            "    return i\n" +
+            "  end\n" +
+            "end\n" +
+            "for i = 1, #KEYS do\n" +
+            "  redis.call('SET', KEYS[i], ARGV[1], 'EX', ARGV[2])\n" +
+            "end\n" +
+            "return 0", Long.class);
+
+    /**
+     * 仅删除仍由指定持有者占用的键，避免误删他人后续的占用
+     */
+    private static final DefaultRedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "local n = 0\n" +
+            "for i = 1, #KEYS do\n" +
+            "  if redis.call('GET', KEYS[i]) == ARGV[1] then\n" +
+            "    n = n + redis.call('DEL', KEYS[i])\n" +
+            "  end\n" +
+            "end\n" +
+            "return n", Long.class);
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    @Autowired
+    @Lazy
+    private ReservationService reservationService;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        try {
+            restore();
+        } catch (Exception e) {
+            log.warn("Failed to restore slot claims into Redis: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 将数据库中的活跃预约补写到 Redis (SET NX)，防止 Redis 数据丢失后出现重复占用
+     */
+    public void restore() {
+        List<Reservation> active = reservationService.list(new LambdaQueryWrapper<Reservation>()
+                .select(Reservation::getUserId, Reservation::getSeatId, Reservation::getSlot, Reservation::getStartTime)
+                .in(Reservation::getStatus, "reserved", "checked_in", "away"));
+        if (active.isEmpty()) return;
+
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            for (Reservation res : active) {
+                if (res.getStartTime() == null || res.getSlot() == null) continue;
+                LocalDate date = SeatAvailabilityIndex.toDate(res.getStartTime());
+                Duration ttl = ttlFor(date);
+                if (ttl.isNegative() || ttl.isZero()) continue;
+                String owner = String.valueOf(res.getUserId());
+                conn.set(seatKey(date, res.getSeatId(), res.getSlot()), owner, Expiration.from(ttl), SetOption.SET_IF_ABSENT);
+                conn.set(userKey(date, res.getUserId(), res.getSlot()), owner, Expiration.from(ttl), SetOption.SET_IF_ABSENT);
+            }
+            return null;
+        });
+        log.info("Restored Redis slot claims for {} active reservations", active.size());
+    }
+
+    /**
+     * 原子占用所有时段；成功返回 null，否则返回冲突信息。
+     * 当前处于事务中时，事务未提交 (回滚) 会自动补偿删除本次占用的键。
+     */
+    public SeatAvailabilityIndex.Conflict tryClaim(Long seatId, Long userId, LocalDate date, List<String> slots) {
+        List<String> keys = keysFor(seatId, userId, date, slots);
+        String owner = String.valueOf(userId);
+        long ttlSeconds = Math.max(60, ttlFor(date).getSeconds());
+
+        Long result = redisTemplate.execute(CLAIM_SCRIPT, keys, owner, String.valueOf(ttlSeconds));
+        if (result != null && result > 0) {
+            int index = result.intValue() - 1;
+            if (index < slots.size()) {
+                return new SeatAvailabilityIndex.Conflict(SeatAvailabilityIndex.ConflictType.SEAT, slots.get(index));
+            }
+            return new SeatAvailabilityIndex.Conflict(SeatAvailabilityIndex.ConflictType.USER, slots.get(index - slots.size()));
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        release(keys, owner);
+                    }
+                }
+            });
+        }
+        return null;
+    }
+
+    /**
+     * 预约离开活跃状态后释放对应的 Redis 键 (事务提交之后执行)
+     */
+    public void releaseAfterCommit(Reservation res) {
+        if (res == null || res.getStartTime() == null || res.getSlot() == null) return;
+        List<String> keys = keysFor(res.getSeatId(), res.getUserId(),
+                SeatAvailabilityIndex.toDate(res.getStartTime()), Collections.singletonList(res.getSlot()));
+        String owner = String.valueOf(res.getUserId());
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    release(keys, owner);
+                }
+            });
+        } else {
+            release(keys, owner);
+        }
+    }
+
+    private void release(List<String> keys, String owner) {
+        try {
+            redisTemplate.execute(RELEASE_SCRIPT, keys, owner);
+        } catch (Exception e) {
+            // 键带有过期时间，释放失败时最迟在当天结束后自动失效
+            log.warn("Failed to release slot claims {}: {}", keys, e.getMessage());
+        }
+    }
+
+    private List<String> keysFor(Long seatId, Long userId, LocalDate date, List<String> slots) {
+        List<String> keys = new ArrayList<>(slots.size() * 2);
+        for (String slot : slots) {
+            keys.add(seatKey(date, seatId, slot));
+        }
+        for (String slot : slots) {
+            keys.add(userKey(date, userId, slot));
+        }
+        return keys;
+    }
+
+    private static String seatKey(LocalDate date, Long seatId, String slot) {
+        return "claim:{" + date + "}:seat:" + seatId + ":" + slot;
+    }
+
+    private static String userKey(LocalDate date, Long userId, String slot) {
+        return "claim:{" + date + "}:user:" + userId + ":" + slot;
+    }
+
+    /**
+     * 占用键保留到预约日次日凌晨 1 点，确保闭馆后的收尾任务仍能看到占用
+     */
+    private static Duration ttlFor(LocalDate date) {
+        return Duration.between(LocalDateTime.now(), date.plusDays(1).atTime(1, 0));
+    }
+}
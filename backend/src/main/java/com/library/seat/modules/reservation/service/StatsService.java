@@ -1,6 +1,7 @@
 package com.library.seat.modules.reservation.service;
 
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.library.seat.common.websocket.BroadcastMessages;
 import com.library.seat.modules.reservation.entity.Reservation;
 import com.library.seat.modules.reservation.service.ReservationService;
 import com.library.seat.modules.seat.entity.Seat;
@@ -29,6 +30,50 @@ public class StatsService {
         messagingTemplate.convertAndSend("/topic/stats", getDashboardStats());
     }
 
+    /**
+     * 按区域广播座位状态统计 (/topic/stats/{area})，只统计本次发生变化的区域
+     */
+    public void broadcastAreaStats(Collection<String> areas) {
+        for (BroadcastMessages.AreaStats stats : getAreaStats(areas)) {
+            messagingTemplate.convertAndSend("/topic/stats/" + stats.area(), stats);
+        }
+    }
+
+    /**
+     * 各区域的座位状态计数 (一条分组查询)
+     */
+    public List<BroadcastMessages.AreaStats> getAreaStats(Collection<String> areas) {
+        if (areas == null || areas.isEmpty()) return Collections.emptyList();
+        // total, available, occupied, maintenance
+        Map<String, long[]> counts = new LinkedHashMap<>();
+        for (String area : areas) {
+            counts.put(area, new long[4]);
+        }
+
+        QueryWrapper<Seat> wrapper = new QueryWrapper<>();
+        wrapper.select("area", "status", "count(*) as count")
+                .in("area", areas)
+                .eq("deleted", 0)
+                .groupBy("area", "status");
+        for (Map<String, Object> row : seatService.listMaps(wrapper)) {
+            long[] c = counts.get((String) row.get("area"));
+            if (c == null) continue;
+            long count = ((Number) row.get("count")).longValue();
+            c[0] += count;
+            String status = (String) row.get("status");
+            if ("available".equals(status)) c[1] = count;
+            else if ("occupied".equals(status)) c[2] = count;
+            else if ("maintenance".equals(status)) c[3] = count;
+        }
+
+        List<BroadcastMessages.AreaStats> result = new ArrayList<>(counts.size());
+        for (Map.Entry<String, long[]> entry : counts.entrySet()) {
+            long[] c = entry.getValue();
+            result.add(new BroadcastMessages.AreaStats(entry.getKey(), c[0], c[1], c[2], c[3]));
+        }
+        return result;
+    }
+
     public Map<String, Object> getDashboardStats() {
         Map<String, Object> stats = new HashMap<>();
         
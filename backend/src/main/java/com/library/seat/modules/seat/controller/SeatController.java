@@ -4,15 +4,19 @@ import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.library.seat.common.Result;
 import com.library.seat.modules.reservation.service.ReservationService;
 import com.library.seat.modules.seat.entity.Seat;
+import com.library.seat.modules.seat.service.SeatBroadcastCoalescer;
+import com.library.seat.modules.seat.service.SeatMapSnapshot;
 import com.library.seat.modules.seat.service.SeatService;
 import com.library.seat.modules.sys.service.SysLogService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 import java.util.Map;
@@ -31,23 +35,60 @@ public class SeatController {
     @Autowired
     private SysLogService sysLogService;
 
+    @Autowired
+    private SeatMapSnapshot seatMapSnapshot;
+
+    @Autowired
+    private SeatBroadcastCoalescer broadcastCoalescer;
+
     private String getCurrentUsername() {
         return SecurityContextHolder.getContext().getAuthentication().getName();
     }
 
-    @Operation(summary = "获取所有座位列表", description = "支持区域筛选")
+    @Operation(summary = "获取所有座位列表", description = "支持区域筛选；支持 If-None-Match，未变化时返回 304")
     @GetMapping
-    public Result<List<Seat>> list(@Parameter(description = "区域 (A区/B区...)", required = false) @RequestParam(required = false) String area) {
-        return Result.success(seatService.listWithSlotStatus(new LambdaQueryWrapper<Seat>()
-                .eq(area != null, Seat::getArea, area)
-                .eq(Seat::getDeleted, 0)));
+    public Result<List<Seat>> list(@Parameter(description = "区域 (A区/B区...)", required = false) @RequestParam(required = false) String area,
+                                   WebRequest webRequest, HttpServletResponse response) {
+        SeatMapSnapshot.Snapshot snapshot = seatMapSnapshot.current();
+        if (notModified(snapshot, webRequest, response)) {
+            return null;
+        }
+        // 响应体与 ETag 取自同一份快照
+        return Result.success(snapshot.getSeats(area));
     }
 
-    @Operation(summary = "获取座位地图数据", description = "包含坐标信息的座位列表")
+    @Operation(summary = "获取座位地图数据", description = "包含坐标信息的座位列表；支持 If-None-Match，未变化时返回 304")
     @GetMapping("/map")
-    public Result<List<Seat>> getMap() {
-        return Result.success(seatService.listWithSlotStatus(new LambdaQueryWrapper<Seat>()
-                .eq(Seat::getDeleted, 0)));
+    public Result<List<Seat>> getMap(WebRequest webRequest, HttpServletResponse response) {
+        SeatMapSnapshot.Snapshot snapshot = seatMapSnapshot.current();
+        if (notModified(snapshot, webRequest, response)) {
+            return null;
+        }
+        return Result.success(snapshot.getSeats());
+    }
+
+    @Operation(summary = "座位增量同步", description = "返回 since 版本之后各时段状态有变化的座位；纪元不符或版本过旧时返回全量 (full=true)")
+    @GetMapping("/changes")
+    public Result<Map<String, Object>> changes(@Parameter(description = "客户端已有的快照版本号") @RequestParam(defaultValue = "0") long since,
+                                               @Parameter(description = "该版本号所属的快照纪元") @RequestParam(required = false) String epoch) {
+        return Result.success(seatMapSnapshot.changesSince(since, epoch));
+    }
+
+    @Operation(summary = "座位广播合并统计（提交次数、实际发送帧数）")
+    @GetMapping("/broadcast/stats")
+    @PreAuthorize("hasAnyAuthority('admin', 'librarian')")
+    public Result<Map<String, Object>> broadcastStats() {
+        return Result.success(broadcastCoalescer.getStats());
+    }
+
+    /**
+     * 以快照 纪元+版本 作为 ETag；要求客户端每次都重新验证，纪元与版本号随响应头返回供增量同步使用
+     */
+    private boolean notModified(SeatMapSnapshot.Snapshot snapshot, WebRequest webRequest, HttpServletResponse response) {
+        response.setHeader("Cache-Control", "no-cache");
+        response.setHeader("X-Seat-Map-Epoch", snapshot.getEpoch());
+        response.setHeader("X-Seat-Map-Version", String.valueOf(snapshot.getVersion()));
+        return webRequest.checkNotModified(snapshot.getEtag());
     }
 
     @Operation(summary = "新增座位")
@@ -158,6 +199,7 @@ public class SeatController {
         boolean success = seatService.updateById(seat);
         
         if (success) {
+             seatMapSnapshot.refreshAfterCommit(java.util.Collections.singletonList(id));
              sysLogService.log(getCurrentUsername(), "修改座位状态", 
                      String.format("ID: %d, %s -> %s", id, oldStatus, status));
              
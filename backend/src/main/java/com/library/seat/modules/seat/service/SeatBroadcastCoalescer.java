@@ -0,0 +1,197 @@
+package com.library.seat.modules.seat.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+
+import com.library.seat.common.websocket.BroadcastMessages.SeatBatch;
+import com.library.seat.common.websocket.BroadcastMessages.SeatUpdate;
+import com.library.seat.modules.reservation.service.StatsService;
+import com.library.seat.modules.seat.entity.Seat;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * /topic/seats 广播合并器
+ * 座位状态变更先按座位去重暂存 (同一座位只保留最后一次状态)，每个时间窗口结束时合并成一帧 seat_batch 发送，
+ * 闭馆自动签退、批量违约等集中变更不再向每个客户端逐座位推送数百帧。
+ * 每帧带递增的 seq 和本节点的 origin，客户端按 origin 分别检查 seq，发现不连续时通过 /seats/changes 增量同步补齐。
+ * 多实例部署时各节点的帧经集群中继送达同一客户端，seq 只在同一 origin 内可比；服务重启后 origin 随之改变。
+ * 除全局 /topic/seats 外，同一窗口的变更还按区域拆分发送到 /topic/seats/{area} (各自独立的 seq)，
+ * 并刷新这些区域的 /topic/stats/{area}，只关注单个区域的客户端无需接收整馆的变更。
+ */
+@Component
+public class SeatBroadcastCoalescer {
+
+    private static final Logger log = LoggerFactory.getLogger(SeatBroadcastCoalescer.class);
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Autowired
+    @Lazy
+    private SeatMapSnapshot seatMapSnapshot;
+
+    @Autowired
+    @Lazy
+    private SeatService seatService;
+
+    @Autowired
+    @Lazy
+    private StatsService statsService;
+
+    @Value("${seat.broadcast.window-ms:150}")
+    private long windowMs;
+
+    private final Object lock = new Object();
+
+    private Map<Long, String> pending = new LinkedHashMap<>();
+
+    /**
+     * 本节点发出的帧的来源标识，进程内唯一
+     */
+    private final String origin = UUID.randomUUID().toString().substring(0, 8);
+
+    private final AtomicLong sequence = new AtomicLong(System.currentTimeMillis());
+
+    private final Map<String, AtomicLong> areaSequences = new ConcurrentHashMap<>();
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong frames = new AtomicLong();
+
+    private ScheduledExecutorService executor;
+
+    @PostConstruct
+    public void start() {
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "seat-broadcast");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::flush, windowMs, windowMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+        flush();
+    }
+
+    /**
+     * 暂存一次座位状态变更，在当前窗口结束时随批次发送
+     */
+    public void submit(Long seatId, String status) {
+        if (seatId == null) return;
+        synchronized (lock) {
+            pending.put(seatId, status);
+        }
+        submitted.incrementAndGet();
+    }
+
+    /**
+     * 发送当前窗口内合并后的变更 (窗口内无变更时不发送)
+     */
+    public void flush() {
+        Map<Long, String> batch;
+        synchronized (lock) {
+            if (pending.isEmpty()) return;
+            batch = pending;
+            pending = new LinkedHashMap<>();
+        }
+
+        Map<Long, String> areas = resolveAreas(batch.keySet());
+        Map<String, List<SeatUpdate>> updatesByArea = new LinkedHashMap<>();
+        List<SeatUpdate> updates = new ArrayList<>(batch.size());
+        for (Map.Entry<Long, String> entry : batch.entrySet()) {
+            SeatUpdate update = new SeatUpdate(entry.getKey(), entry.getValue());
+            updates.add(update);
+
+            String area = areas.get(entry.getKey());
+            if (area != null) {
+                updatesByArea.computeIfAbsent(area, k -> new ArrayList<>()).add(update);
+            }
+        }
+
+        send("/topic/seats", sequence, updates);
+        for (Map.Entry<String, List<SeatUpdate>> entry : updatesByArea.entrySet()) {
+            AtomicLong areaSequence = areaSequences.computeIfAbsent(entry.getKey(), k -> new AtomicLong(System.currentTimeMillis()));
+            send("/topic/seats/" + entry.getKey(), areaSequence, entry.getValue());
+        }
+
+        if (!updatesByArea.isEmpty()) {
+            try {
+                statsService.broadcastAreaStats(updatesByArea.keySet());
+            } catch (Exception e) {
+                log.error("Failed to broadcast area stats for {}", updatesByArea.keySet(), e);
+            }
+        }
+    }
+
+    private void send(String destination, AtomicLong seq, List<SeatUpdate> updates) {
+        SeatBatch frame = new SeatBatch(origin, seq.incrementAndGet(), updates);
+        try {
+            messagingTemplate.convertAndSend(destination, frame);
+            frames.incrementAndGet();
+        } catch (Exception e) {
+            // seq 已递增，客户端会识别为缺帧并自行增量同步
+            log.error("Failed to broadcast seat batch of {} updates to {}", updates.size(), destination, e);
+        }
+    }
+
+    /**
+     * 座位所属区域：优先取快照，快照中没有的 (新增或刚删除的座位) 一次批量查库
+     */
+    private Map<Long, String> resolveAreas(Set<Long> seatIds) {
+        Map<Long, String> areas = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        for (Long seatId : seatIds) {
+            String area = seatMapSnapshot.areaOf(seatId);
+            if (area != null) {
+                areas.put(seatId, area);
+            } else {
+                missing.add(seatId);
+            }
+        }
+        if (!missing.isEmpty()) {
+            try {
+                for (Seat seat : seatService.listByIds(missing)) {
+                    if (seat.getArea() != null) {
+                        areas.put(seat.getId(), seat.getArea());
+                    }
+                }
+            } catch (Exception e) {
+                log.warn("Failed to resolve areas for seats {}: {}", missing, e.getMessage());
+            }
+        }
+        return areas;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("windowMs", windowMs);
+        stats.put("origin", origin);
+        stats.put("sequence", sequence.get());
+        stats.put("submitted", submitted.get());
+        stats.put("frames", frames.get());
+        stats.put("areas", areaSequences.size());
+        return stats;
+    }
+}
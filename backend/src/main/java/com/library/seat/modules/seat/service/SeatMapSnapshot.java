@@ -0,0 +1,356 @@
+package com.library.seat.modules.seat.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.library.seat.modules.reservation.entity.Reservation;
+import com.library.seat.modules.reservation.event.ReservationChangedEvent;
+import com.library.seat.modules.reservation.event.ReservationsBulkClosedEvent;
+import com.library.seat.modules.reservation.service.ReservationService;
+import com.library.seat.modules.seat.entity.Seat;
+
+/**
+ * 带版本号的座位地图快照
+ * 座位列表连同各时段状态 (slotStatuses) 预先计算好，以不可变快照的形式整体替换发布，
+ * GET /seats 与 /seats/map 直接读取内存，不再每次查询全部座位和全部活跃预约。
+ * 座位或预约变更后只重新计算受影响的座位，内容确有变化时才递增版本号并记录该座位的变更版本，
+ * 供 /seats/changes?since= 增量同步；定期全量比对一次，兜底其它节点上的变更。
+ * 版本号只在本节点内递增，因此带上本节点的纪元 (epoch)：ETag 与增量同步都按 纪元+版本号 比对，
+ * 客户端持有的版本来自其它节点或本节点重启前时一律返回全量。
+ * 启动完成前收到的读取请求会先同步构建首个快照，不会返回空的 0 号版本。
+ */
+@Component
+public class SeatMapSnapshot {
+
+    private static final Logger log = LoggerFactory.getLogger(SeatMapSnapshot.class);
+
+    private static final String[] SLOTS = {"morning", "afternoon", "evening"};
+
+    @Autowired
+    private SeatService seatService;
+
+    @Autowired
+    @Lazy
+    private ReservationService reservationService;
+
+    /**
+     * 本节点快照的纪元，进程内唯一
+     */
+    private final String epoch = UUID.randomUUID().toString().substring(0, 8);
+
+    private volatile Snapshot current = new Snapshot(epoch, 0, 0, new TreeMap<>(), new HashMap<>());
+
+    /**
+     * 某一版本的座位地图；seats/changedAt 在发布后不再修改
+     */
+    public static class Snapshot {
+        private final String epoch;
+        private final long version;
+        private final long baseVersion;
+        private final TreeMap<Long, Seat> seats;
+        /**
+         * seatId -> 最后一次变更的版本号 (包括已删除的座位)
+         */
+        private final Map<Long, Long> changedAt;
+        private final List<Seat> seatList;
+
+        Snapshot(String epoch, long version, long baseVersion, TreeMap<Long, Seat> seats, Map<Long, Long> changedAt) {
+            this.epoch = epoch;
+            this.version = version;
+            this.baseVersion = baseVersion;
+            this.seats = seats;
+            this.changedAt = changedAt;
+            this.seatList = Collections.unmodifiableList(new ArrayList<>(seats.values()));
+        }
+
+        public String getEpoch() {
+            return epoch;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public List<Seat> getSeats() {
+            return seatList;
+        }
+
+        /**
+         * 本快照中指定区域的座位 (area 为空时返回全部)
+         */
+        public List<Seat> getSeats(String area) {
+            if (area == null) return seatList;
+            List<Seat> result = new ArrayList<>();
+            for (Seat seat : seatList) {
+                if (area.equals(seat.getArea())) {
+                    result.add(seat);
+                }
+            }
+            return result;
+        }
+
+        public String getEtag() {
+            return "\"seats-" + epoch + "-" + version + "\"";
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        rebuild();
+    }
+
+    /**
+     * 当前快照；首个快照尚未构建 (应用启动完成前) 时先同步构建
+     */
+    public Snapshot current() {
+        Snapshot snapshot = current;
+        if (snapshot.baseVersion == 0) {
+            ensureBuilt();
+            snapshot = current;
+        }
+        return snapshot;
+    }
+
+    private synchronized void ensureBuilt() {
+        if (current.baseVersion == 0) {
+            rebuild();
+        }
+    }
+
+    /**
+     * 座位所属区域 (快照中不存在时返回 null)
+     */
+    public String areaOf(Long seatId) {
+        Seat seat = current.seats.get(seatId);
+        return seat != null ? seat.getArea() : null;
+    }
+
+    /**
+     * 自 since 版本以来变更的座位。
+     * since 来自其它纪元 (其它节点或重启前)、早于当前快照的基线版本或晚于当前版本时返回全量 (full = true)。
+     */
+    public Map<String, Object> changesSince(long since, String sinceEpoch) {
+        Snapshot snapshot = current();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("epoch", snapshot.epoch);
+        result.put("version", snapshot.version);
+
+        if (!snapshot.epoch.equals(sinceEpoch) || since < snapshot.baseVersion || since > snapshot.version) {
+            result.put("full", true);
+            result.put("seats", snapshot.getSeats());
+            result.put("removed", Collections.emptyList());
+            return result;
+        }
+
+        List<Seat> changed = new ArrayList<>();
+        List<Long> removed = new ArrayList<>();
+        for (Map.Entry<Long, Long> entry : snapshot.changedAt.entrySet()) {
+            if (entry.getValue() <= since) continue;
+            Seat seat = snapshot.seats.get(entry.getKey());
+            if (seat != null) {
+                changed.add(seat);
+            } else {
+                removed.add(entry.getKey());
+            }
+        }
+        result.put("full", false);
+        result.put("seats", changed);
+        result.put("removed", removed);
+        return result;
+    }
+
+    /**
+     * 全量重新计算并与当前快照比对。首次构建时以当前时间作为基线版本，
+     * 保证重启后客户端持有的旧版本号一定早于新基线，从而触发全量同步。
+     */
+    @Scheduled(fixedDelayString = "${seat.snapshot.rebuild-interval-ms:60000}",
+            initialDelayString = "${seat.snapshot.rebuild-interval-ms:60000}")
+    public synchronized void rebuild() {
+        List<Seat> seats = seatService.list(new LambdaQueryWrapper<Seat>().eq(Seat::getDeleted, 0));
+        List<Reservation> reservations = reservationService.list(new LambdaQueryWrapper<Reservation>()
+                .select(Reservation::getSeatId, Reservation::getSlot, Reservation::getStatus)
+                .in(Reservation::getStatus, "reserved", "checked_in", "away")
+                .eq(Reservation::getDeleted, 0));
+
+        if (current.baseVersion == 0) {
+            long base = System.currentTimeMillis();
+            TreeMap<Long, Seat> initial = new TreeMap<>();
+            for (Seat seat : withSlotStatuses(seats, reservations)) {
+                initial.put(seat.getId(), seat);
+            }
+            current = new Snapshot(epoch, base, base, initial, new HashMap<>());
+            log.info("Seat map snapshot built with {} seats at version {}", initial.size(), base);
+            return;
+        }
+
+        Set<Long> scope = new LinkedHashSet<>(current.seats.keySet());
+        for (Seat seat : seats) {
+            scope.add(seat.getId());
+        }
+        apply(scope, withSlotStatuses(seats, reservations));
+    }
+
+    /**
+     * 重新计算指定座位 (座位不存在或已删除时从快照移除)
+     */
+    public synchronized void refresh(Collection<Long> seatIds) {
+        if (seatIds == null || seatIds.isEmpty()) return;
+        List<Seat> seats = seatService.list(new LambdaQueryWrapper<Seat>()
+                .in(Seat::getId, seatIds)
+                .eq(Seat::getDeleted, 0));
+        List<Reservation> reservations = reservationService.list(new LambdaQueryWrapper<Reservation>()
+                .select(Reservation::getSeatId, Reservation::getSlot, Reservation::getStatus)
+                .in(Reservation::getSeatId, seatIds)
+                .in(Reservation::getStatus, "reserved", "checked_in", "away")
+                .eq(Reservation::getDeleted, 0));
+        apply(seatIds, withSlotStatuses(seats, reservations));
+    }
+
+    /**
+     * 座位管理操作在事务提交后刷新对应座位 (无事务时立即刷新)
+     */
+    public void refreshAfterCommit(Collection<Long> seatIds) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    refreshQuietly(seatIds);
+                }
+            });
+        } else {
+            refreshQuietly(seatIds);
+        }
+    }
+
+    /**
+     * 批量座位变更 (清空、导入) 在事务提交后全量比对
+     */
+    public void rebuildAfterCommit() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    rebuild();
+                }
+            });
+        } else {
+            rebuild();
+        }
+    }
+
+    @Async("reservationEventExecutor")
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onReservationChanged(ReservationChangedEvent event) {
+        if (event.getSeatId() != null) {
+            refreshQuietly(Collections.singletonList(event.getSeatId()));
+        }
+    }
+
+    @Async("reservationEventExecutor")
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onReservationsBulkClosed(ReservationsBulkClosedEvent event) {
+        refreshQuietly(event.getSeatIds());
+    }
+
+    private void refreshQuietly(Collection<Long> seatIds) {
+        try {
+            refresh(seatIds);
+        } catch (Exception e) {
+            // 下一次定期全量比对会修正
+            log.error("Failed to refresh seat map snapshot for seats {}", seatIds, e);
+        }
+    }
+
+    /**
+     * 以 scope 内座位的最新计算结果生成新快照；内容未变化的座位不记录变更
+     */
+    private void apply(Collection<Long> scope, List<Seat> recomputed) {
+        Snapshot base = current;
+        Map<Long, Seat> fresh = new HashMap<>();
+        for (Seat seat : recomputed) {
+            fresh.put(seat.getId(), seat);
+        }
+
+        long version = base.version + 1;
+        TreeMap<Long, Seat> seats = null;
+        Map<Long, Long> changedAt = null;
+        for (Long seatId : scope) {
+            Seat before = base.seats.get(seatId);
+            Seat after = fresh.get(seatId);
+            if (before == null && after == null) continue;
+            if (before != null && after != null && sameContent(before, after)) continue;
+
+            if (seats == null) {
+                seats = new TreeMap<>(base.seats);
+                changedAt = new HashMap<>(base.changedAt);
+            }
+            if (after != null) {
+                seats.put(seatId, after);
+            } else {
+                seats.remove(seatId);
+            }
+            changedAt.put(seatId, version);
+        }
+
+        if (seats != null) {
+            current = new Snapshot(epoch, version, base.baseVersion, seats, changedAt);
+        }
+    }
+
+    /**
+     * 按活跃预约计算各时段状态；维护中的座位所有时段均为 maintenance
+     */
+    private static List<Seat> withSlotStatuses(List<Seat> seats, List<Reservation> reservations) {
+        Map<Long, Map<String, String>> seatSlotMap = new HashMap<>();
+        for (Reservation res : reservations) {
+            seatSlotMap.computeIfAbsent(res.getSeatId(), k -> new HashMap<>())
+                    .put(res.getSlot(), res.getStatus());
+        }
+
+        for (Seat seat : seats) {
+            Map<String, String> reservedSlots = seatSlotMap.getOrDefault(seat.getId(), Collections.emptyMap());
+            Map<String, String> slotStatuses = new LinkedHashMap<>();
+            for (String slot : SLOTS) {
+                slotStatuses.put(slot, "maintenance".equals(seat.getStatus())
+                        ? "maintenance" : reservedSlots.getOrDefault(slot, "available"));
+            }
+            seat.setSlotStatuses(Collections.unmodifiableMap(slotStatuses));
+        }
+        return seats;
+    }
+
+    private static boolean sameContent(Seat a, Seat b) {
+        return Objects.equals(a.getSeatNo(), b.getSeatNo())
+                && Objects.equals(a.getArea(), b.getArea())
+                && Objects.equals(a.getType(), b.getType())
+                && Objects.equals(a.getStatus(), b.getStatus())
+                && Objects.equals(a.getXCoord(), b.getXCoord())
+                && Objects.equals(a.getYCoord(), b.getYCoord())
+                && Objects.equals(a.getSlotStatuses(), b.getSlotStatuses());
+    }
+}
@@ -0,0 +1,70 @@
+package com.library.seat.modules.seat.service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.library.seat.modules.seat.entity.Seat;
+
+/**
+ * 座位号 -> 座位ID 缓存
+ * 供传感器等只携带座位号的高频入口使用；未命中时按最小间隔重新加载，避免未知座位号反复打到数据库。
+ */
+@Component
+public class SeatNoCache {
+
+    private static final Logger log = LoggerFactory.getLogger(SeatNoCache.class);
+
+    private static final long RELOAD_INTERVAL_MILLIS = 60 * 1000L;
+
+    @Autowired
+    private SeatService seatService;
+
+    private volatile Map<String, Long> seatIds = new HashMap<>();
+
+    private volatile long loadedAt;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        reload();
+    }
+
+    public Long resolve(String seatNo) {
+        if (seatNo == null) return null;
+        Long id = seatIds.get(seatNo);
+        if (id == null && System.currentTimeMillis() - loadedAt > RELOAD_INTERVAL_MILLIS) {
+            reloadIfStale();
+            id = seatIds.get(seatNo);
+        }
+        return id;
+    }
+
+    private synchronized void reloadIfStale() {
+        if (System.currentTimeMillis() - loadedAt > RELOAD_INTERVAL_MILLIS) {
+            reload();
+        }
+    }
+
+    public synchronized void reload() {
+        List<Seat> seats = seatService.list(new LambdaQueryWrapper<Seat>().select(Seat::getId, Seat::getSeatNo));
+        Map<String, Long> map = new HashMap<>(seats.size() * 2);
+        for (Seat seat : seats) {
+            map.put(seat.getSeatNo(), seat.getId());
+        }
+        seatIds = map;
+        loadedAt = System.currentTimeMillis();
+        log.info("Seat number cache loaded {} seats", map.size());
+    }
+
+    public int size() {
+        return seatIds.size();
+    }
+}
@@ -6,20 +6,17 @@ import com.library.seat.common.Result;
 import com.library.seat.modules.seat.entity.Seat;
 import com.library.seat.modules.seat.mapper.SeatMapper;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Date;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 @Service
 public class SeatService extends ServiceImpl<SeatMapper, Seat> {
 
     @Autowired
-    private SimpMessagingTemplate messagingTemplate;
+    private SeatBroadcastCoalescer broadcastCoalescer;
 
     @Autowired
     @org.springframework.context.annotation.Lazy
@@ -29,12 +26,15 @@ public class SeatService extends ServiceImpl<SeatMapper, Seat> {
     @org.springframework.context.annotation.Lazy
     private com.library.seat.modules.reservation.service.StatsService statsService;
 
+    @Autowired
+    @org.springframework.context.annotation.Lazy
+    private SeatMapSnapshot seatMapSnapshot;
+
+    /**
+     * 座位状态广播，经合并器按时间窗口批量发送 (seat_batch)
+     */
     public void broadcastSeatUpdate(Long seatId, String status) {
-        Map<String, Object> message = new HashMap<>();
-        message.put("id", seatId); // Change to 'id' to match frontend handleSeatUpdate
-        message.put("status", status);
-        message.put("event", "seat_update");
-        messagingTemplate.convertAndSend("/topic/seats", message);
+        broadcastCoalescer.submit(seatId, status);
     }
 
     @Transactional(rollbackFor = Exception.class)
@@ -54,7 +54,9 @@ public class SeatService extends ServiceImpl<SeatMapper, Seat> {
             seat.setStatus("available");
         }
         
-        return Result.success(this.save(seat));
+        boolean saved = this.save(seat);
+        seatMapSnapshot.refreshAfterCommit(java.util.Collections.singletonList(seat.getId()));
+        return Result.success(saved);
     }
 
     @Transactional(rollbackFor = Exception.class)
@@ -75,7 +77,9 @@ public class SeatService extends ServiceImpl<SeatMapper, Seat> {
         }
         
         seat.setUpdateTime(new Date());
-        return Result.success(this.updateById(seat));
+        boolean updated = this.updateById(seat);
+        seatMapSnapshot.refreshAfterCommit(java.util.Collections.singletonList(seat.getId()));
+        return Result.success(updated);
     }
 
     @Transactional(rollbackFor = Exception.class)
@@ -91,7 +95,9 @@ public class SeatService extends ServiceImpl<SeatMapper, Seat> {
         
         seat.setDeleted(1);
         seat.setUpdateTime(new Date());
-        return Result.success(this.updateById(seat));
+        boolean deleted = this.updateById(seat);
+        seatMapSnapshot.refreshAfterCommit(java.util.Collections.singletonList(id));
+        return Result.success(deleted);
     }
     
     @Transactional(rollbackFor = Exception.class)
@@ -133,6 +139,7 @@ public class SeatService extends ServiceImpl<SeatMapper, Seat> {
                 .set(Seat::getDeleted, 1)
                 .set(Seat::getUpdateTime, new Date())
                 .eq(Seat::getDeleted, 0));
+        seatMapSnapshot.rebuildAfterCommit();
         
         // 3. 广播统计信息更新 (只广播一次)
         statsService.broadcastStats();
@@ -140,43 +147,6 @@ public class SeatService extends ServiceImpl<SeatMapper, Seat> {
         return Result.success(success);
     }
 
-    public List<Seat> listWithSlotStatus(LambdaQueryWrapper<Seat> queryWrapper) {
-        List<Seat> seats = this.list(queryWrapper);
-        if (seats.isEmpty()) return seats;
-
-        // 获取今天的所有活跃预约
-        List<com.library.seat.modules.reservation.entity.Reservation> reservations = reservationService.list(
-                new com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper<com.library.seat.modules.reservation.entity.Reservation>()
-                .in(com.library.seat.modules.reservation.entity.Reservation::getStatus, "reserved", "checked_in", "away")
-                .eq(com.library.seat.modules.reservation.entity.Reservation::getDeleted, 0));
-
-        // 建立 座位ID -> 时段 -> 状态 的映射
-        Map<Long, Map<String, String>> seatSlotMap = new HashMap<>();
-        for (com.library.seat.modules.reservation.entity.Reservation res : reservations) {
-            seatSlotMap.computeIfAbsent(res.getSeatId(), k -> new HashMap<>())
-                    .put(res.getSlot(), res.getStatus());
-        }
-
-        for (Seat seat : seats) {
-            Map<String, String> slotStatuses = new HashMap<>();
-            Map<String, String> reservedSlots = seatSlotMap.getOrDefault(seat.getId(), new HashMap<>());
-            
-            slotStatuses.put("morning", reservedSlots.getOrDefault("morning", "available"));
-            slotStatuses.put("afternoon", reservedSlots.getOrDefault("afternoon", "available"));
-            slotStatuses.put("evening", reservedSlots.getOrDefault("evening", "available"));
-            
-            // 如果座位本身在维护，则所有时段都是 maintenance
-            if ("maintenance".equals(seat.getStatus())) {
-                slotStatuses.put("morning", "maintenance");
-                slotStatuses.put("afternoon", "maintenance");
-                slotStatuses.put("evening", "maintenance");
-            }
-            
-            seat.setSlotStatuses(slotStatuses);
-        }
-        return seats;
-    }
-
     public void updateStatus(Long seatId, String status) {
         this.update(new com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper<Seat>()
                 .set(Seat::getStatus, status)
@@ -0,0 +1,42 @@
+package com.library.seat.modules.sensor.controller;
+
+import com.library.seat.common.Result;
+import com.library.seat.modules.sensor.service.MqttPresenceSubscriber;
+import com.library.seat.modules.sensor.service.PresenceIngestPipeline;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@Tag(name = "传感器模块", description = "座位传感器在场数据接入")
+@RestController
+@RequestMapping("/api/v1/sensors")
+public class SensorController {
+
+    @Autowired
+    private PresenceIngestPipeline pipeline;
+
+    @Autowired
+    private ObjectProvider<MqttPresenceSubscriber> mqttSubscriber;
+
+    @Operation(summary = "接入管道吞吐与丢弃统计（管理员）")
+    @GetMapping("/stats")
+    @PreAuthorize("hasAnyAuthority('admin', 'librarian')")
+    public Result<Map<String, Object>> stats() {
+        Map<String, Object> stats = pipeline.getStats();
+        MqttPresenceSubscriber subscriber = mqttSubscriber.getIfAvailable();
+        stats.put("mqttEnabled", subscriber != null);
+        if (subscriber != null) {
+            stats.put("mqttConnected", subscriber.isConnected());
+            stats.put("mqttReceived", subscriber.getReceived());
+            stats.put("mqttMalformed", subscriber.getMalformed());
+        }
+        return Result.success(stats);
+    }
+}
@@ -0,0 +1,166 @@
+package com.library.seat.modules.sensor.service;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
+import org.eclipse.paho.client.mqttv3.MqttCallbackExtended;
+import org.eclipse.paho.client.mqttv3.MqttClient;
+import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * MQTT 座位传感器订阅 (EMQX，见 docker-compose.yml)
+ * 订阅 library/{area}/{seatNo}/presence，解码后交给 {@link PresenceIngestPipeline}。
+ * 默认使用共享订阅 ($share/group/...)，多实例部署时每条读数只投递给其中一个节点。
+ * 回调线程在管道满时阻塞等待，从而把背压传递到 broker 连接上。
+ */
+@Component
+@ConditionalOnProperty(prefix = "mqtt", name = "enabled", havingValue = "true")
+public class MqttPresenceSubscriber implements MqttCallbackExtended {
+
+    private static final Logger log = LoggerFactory.getLogger(MqttPresenceSubscriber.class);
+
+    @Autowired
+    private PresenceIngestPipeline pipeline;
+
+    @Value("${mqtt.broker-url:tcp://localhost:11883}")
+    private String brokerUrl;
+
+    @Value("${mqtt.client-id:library-seat-backend}")
+    private String clientId;
+
+    @Value("${mqtt.topic:$share/library-seat/library/+/+/presence}")
+    private String topic;
+
+    @Value("${mqtt.qos:0}")
+    private int qos;
+
+    @Value("${mqtt.username:}")
+    private String username;
+
+    @Value("${mqtt.password:}")
+    private String password;
+
+    private MqttClient client;
+
+    private volatile boolean running = true;
+
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong malformed = new AtomicLong();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        // 首次连接失败时 Paho 不会自动重连，这里在后台线程中退避重试
+        Thread connector = new Thread(this::connectWithRetry, "mqtt-connect");
+        connector.setDaemon(true);
+        connector.start();
+    }
+
+    private void connectWithRetry() {
+        long backoff = 1000;
+        try {
+            client = new MqttClient(brokerUrl, clientId + "-" + UUID.randomUUID().toString().substring(0, 8), new MemoryPersistence());
+            client.setCallback(this);
+        } catch (MqttException e) {
+            log.error("Invalid MQTT client configuration for {}", brokerUrl, e);
+            return;
+        }
+
+        MqttConnectOptions options = new MqttConnectOptions();
+        options.setAutomaticReconnect(true);
+        options.setCleanSession(true);
+        options.setKeepAliveInterval(30);
+        if (StringUtils.hasText(username)) {
+            options.setUserName(username);
+            options.setPassword(password.toCharArray());
+        }
+
+        while (running) {
+            try {
+                client.connect(options);
+                return;
+            } catch (MqttException e) {
+                log.warn("MQTT connect to {} failed: {}, retrying in {} ms", brokerUrl, e.getMessage(), backoff);
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                backoff = Math.min(backoff * 2, 60000);
+            }
+        }
+    }
+
+    @Override
+    public void connectComplete(boolean reconnect, String serverURI) {
+        try {
+            client.subscribe(topic, qos);
+            log.info("MQTT {} to {}, subscribed {}", reconnect ? "reconnected" : "connected", serverURI, topic);
+        } catch (MqttException e) {
+            log.error("MQTT subscribe {} failed", topic, e);
+        }
+    }
+
+    @Override
+    public void connectionLost(Throwable cause) {
+        log.warn("MQTT connection lost: {}", cause != null ? cause.getMessage() : "unknown");
+    }
+
+    @Override
+    public void messageArrived(String topic, MqttMessage message) {
+        received.incrementAndGet();
+        // library/{area}/{seatNo}/presence
+        String[] parts = topic.split("/");
+        SensorReading reading = parts.length >= 2 ? SensorReading.decode(parts[parts.length - 2], message.getPayload()) : null;
+        if (reading == null) {
+            malformed.incrementAndGet();
+            return;
+        }
+        pipeline.submit(reading);
+    }
+
+    @Override
+    public void deliveryComplete(IMqttDeliveryToken token) {
+    }
+
+    public long getReceived() {
+        return received.get();
+    }
+
+    public long getMalformed() {
+        return malformed.get();
+    }
+
+    public boolean isConnected() {
+        return client != null && client.isConnected();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        if (client == null) return;
+        try {
+            if (client.isConnected()) {
+                client.disconnect();
+            }
+            client.close();
+        } catch (MqttException e) {
+            log.warn("MQTT disconnect failed: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,358 @@
+package com.library.seat.modules.sensor.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONArray;
+import com.alibaba.fastjson2.JSONObject;
+import com.library.seat.modules.reservation.enums.PresenceType;
+import com.library.seat.modules.reservation.service.PresenceStore;
+import com.library.seat.modules.reservation.service.ReservationService;
+import com.library.seat.modules.seat.service.SeatNoCache;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * 传感器在场数据接入管道
+ * 读数进入有界队列，由单个工作线程分批取出：同一座位在一批内只保留最新读数，
+ * 按座位号找到签到/暂离中的预约后以 HEARTBEAT 确认在场 (只写 PresenceStore 内存表，由其批量回写)。
+ * 队列满时提交方最多等待 offer-timeout-ms，对上游 (MQTT 回调线程) 形成背压，仍超时则丢弃并计数。
+ * HTTP 批量接口直接调用 {@link #ingest} 同步处理。同一座位在 dedupe-window-ms 内只确认一次。
+ */
+@Service
+public class PresenceIngestPipeline {
+
+    private static final Logger log = LoggerFactory.getLogger(PresenceIngestPipeline.class);
+
+    @Autowired
+    private ReservationService reservationService;
+
+    @Autowired
+    private PresenceStore presenceStore;
+
+    @Autowired
+    private SeatNoCache seatNoCache;
+
+    @Value("${sensor.queue-capacity:20000}")
+    private int queueCapacity;
+
+    @Value("${sensor.batch-size:500}")
+    private int batchSize;
+
+    @Value("${sensor.offer-timeout-ms:50}")
+    private long offerTimeoutMs;
+
+    @Value("${sensor.max-reading-age-seconds:300}")
+    private int maxReadingAgeSeconds;
+
+    @Value("${sensor.dedupe-window-ms:10000}")
+    private long dedupeWindowMs;
+
+    private BlockingQueue<SensorReading> queue;
+
+    private Thread worker;
+
+    private volatile boolean running = true;
+
+    /**
+     * 各座位最近一次确认在场的时间，用于窗口内去重
+     */
+    private final Map<Long, Long> lastConfirmed = new ConcurrentHashMap<>();
+
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong deduplicated = new AtomicLong();
+    private final AtomicLong absent = new AtomicLong();
+    private final AtomicLong stale = new AtomicLong();
+    private final AtomicLong unknownSeat = new AtomicLong();
+    private final AtomicLong idleSeat = new AtomicLong();
+    private final AtomicLong confirmed = new AtomicLong();
+    private final Map<String, SourceStats> sources = new ConcurrentHashMap<>();
+
+    /**
+     * 单批处理结果
+     */
+    public static class BatchResult {
+        private int received;
+        private int confirmed;
+        private int deduplicated;
+        private int ignored;
+        private int unknownSeat;
+        private long elapsedMillis;
+
+        public Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("received", received);
+            map.put("confirmed", confirmed);
+            map.put("deduplicated", deduplicated);
+            map.put("ignored", ignored);
+            map.put("unknownSeat", unknownSeat);
+            map.put("elapsedMillis", elapsedMillis);
+            return map;
+        }
+    }
+
+    /**
+     * 按来源 (mqtt / http) 统计的批次延迟与吞吐
+     */
+    private static class SourceStats {
+        final AtomicLong batches = new AtomicLong();
+        final AtomicLong readings = new AtomicLong();
+        final AtomicLong confirmed = new AtomicLong();
+        final AtomicLong totalMillis = new AtomicLong();
+        final AtomicLong maxMillis = new AtomicLong();
+        final long createdAt = System.currentTimeMillis();
+        volatile long lastMillis;
+
+        void record(BatchResult result) {
+            batches.incrementAndGet();
+            readings.addAndGet(result.received);
+            confirmed.addAndGet(result.confirmed);
+            totalMillis.addAndGet(result.elapsedMillis);
+            maxMillis.accumulateAndGet(result.elapsedMillis, Math::max);
+            lastMillis = result.elapsedMillis;
+        }
+
+        Map<String, Object> snapshot() {
+            long count = batches.get();
+            long elapsedSeconds = Math.max(1, (System.currentTimeMillis() - createdAt) / 1000);
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("batches", count);
+            map.put("readings", readings.get());
+            map.put("confirmed", confirmed.get());
+            map.put("readingsPerSecond", (double) readings.get() / elapsedSeconds);
+            map.put("avgBatchMillis", count > 0 ? (double) totalMillis.get() / count : 0);
+            map.put("maxBatchMillis", maxMillis.get());
+            map.put("lastBatchMillis", lastMillis);
+            return map;
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        worker = new Thread(this::run, "sensor-ingest");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        worker.interrupt();
+    }
+
+    /**
+     * 提交一条读数；队列满且等待超时返回 false
+     */
+    public boolean submit(SensorReading reading) {
+        try {
+            if (queue.offer(reading, offerTimeoutMs, TimeUnit.MILLISECONDS)) {
+                accepted.incrementAndGet();
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        dropped.incrementAndGet();
+        return false;
+    }
+
+    private void run() {
+        List<SensorReading> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                SensorReading first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                ingest(batch, "mqtt");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("Sensor ingest batch failed", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * 同步处理一批读数
+     *
+     * @param source 来源 (mqtt / http)，用于分别统计批次延迟与吞吐
+     */
+    public BatchResult ingest(List<SensorReading> batch, String source) {
+        long begin = System.currentTimeMillis();
+        BatchResult result = new BatchResult();
+        result.received = batch.size();
+
+        // 同一座位只保留最新的读数
+        Map<String, SensorReading> latest = new HashMap<>();
+        for (SensorReading reading : batch) {
+            SensorReading previous = latest.put(reading.getSeatNo(), reading);
+            if (previous != null) {
+                result.deduplicated++;
+                if (previous.getTimestamp() > reading.getTimestamp()) {
+                    latest.put(reading.getSeatNo(), previous);
+                }
+            }
+        }
+
+        // 同一座位上若残留多条在场信息 (尚未移除的已结束预约)，只取最新的预约
+        Map<Long, Long> reservationBySeat = new HashMap<>();
+        for (PresenceStore.Presence presence : presenceStore.snapshot()) {
+            reservationBySeat.merge(presence.getSeatId(), presence.getReservationId(), Math::max);
+        }
+
+        long oldest = begin - maxReadingAgeSeconds * 1000L;
+        for (SensorReading reading : latest.values()) {
+            if (!reading.isPresent()) {
+                absent.incrementAndGet();
+                result.ignored++;
+                continue;
+            }
+            if (reading.getTimestamp() < oldest) {
+                stale.incrementAndGet();
+                result.ignored++;
+                continue;
+            }
+            Long seatId = seatNoCache.resolve(reading.getSeatNo());
+            if (seatId == null) {
+                unknownSeat.incrementAndGet();
+                result.unknownSeat++;
+                continue;
+            }
+            Long reservationId = reservationBySeat.get(seatId);
+            if (reservationId == null) {
+                idleSeat.incrementAndGet();
+                result.ignored++;
+                continue;
+            }
+            Long previous = lastConfirmed.get(seatId);
+            if (previous != null && begin - previous < dedupeWindowMs) {
+                result.deduplicated++;
+                continue;
+            }
+            lastConfirmed.put(seatId, begin);
+            reservationService.confirmPresence(reservationId, PresenceType.HEARTBEAT);
+            result.confirmed++;
+        }
+
+        deduplicated.addAndGet(result.deduplicated);
+        confirmed.addAndGet(result.confirmed);
+        result.elapsedMillis = System.currentTimeMillis() - begin;
+        sources.computeIfAbsent(source, k -> new SourceStats()).record(result);
+        return result;
+    }
+
+    /**
+     * 解析并处理 HTTP 上报的读数：JSON 数组，或 NDJSON (每行一个对象，逐行流式读取)，按 batch-size 分批处理
+     */
+    public Map<String, Object> ingestJson(Reader reader, String source) throws IOException {
+        BufferedReader in = reader instanceof BufferedReader br ? br : new BufferedReader(reader);
+        int c;
+        do {
+            in.mark(1);
+            c = in.read();
+        } while (c != -1 && Character.isWhitespace(c));
+        if (c != -1) in.reset();
+
+        int malformed = 0;
+        List<BatchResult> results = new ArrayList<>();
+        List<SensorReading> batch = new ArrayList<>(batchSize);
+        if (c == '[') {
+            StringWriter body = new StringWriter();
+            in.transferTo(body);
+            JSONArray array = JSON.parseArray(body.toString());
+            for (int i = 0; array != null && i < array.size(); i++) {
+                SensorReading reading = array.get(i) instanceof JSONObject json ? SensorReading.fromJson(json) : null;
+                if (reading == null) {
+                    malformed++;
+                    continue;
+                }
+                batch.add(reading);
+                if (batch.size() >= batchSize) {
+                    results.add(ingest(batch, source));
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+        } else {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.isBlank()) continue;
+                SensorReading reading;
+                try {
+                    reading = SensorReading.fromJson(JSON.parseObject(line));
+                } catch (Exception e) {
+                    reading = null;
+                }
+                if (reading == null) {
+                    malformed++;
+                    continue;
+                }
+                batch.add(reading);
+                if (batch.size() >= batchSize) {
+                    results.add(ingest(batch, source));
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            results.add(ingest(batch, source));
+        }
+
+        BatchResult total = new BatchResult();
+        for (BatchResult r : results) {
+            total.received += r.received;
+            total.confirmed += r.confirmed;
+            total.deduplicated += r.deduplicated;
+            total.ignored += r.ignored;
+            total.unknownSeat += r.unknownSeat;
+            total.elapsedMillis += r.elapsedMillis;
+        }
+        Map<String, Object> summary = total.toMap();
+        summary.put("malformed", malformed);
+        summary.put("batches", results.size());
+        return summary;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("queueDepth", queue.size());
+        stats.put("queueCapacity", queueCapacity);
+        stats.put("accepted", accepted.get());
+        stats.put("dropped", dropped.get());
+        stats.put("deduplicated", deduplicated.get());
+        stats.put("absent", absent.get());
+        stats.put("stale", stale.get());
+        stats.put("unknownSeat", unknownSeat.get());
+        stats.put("idleSeat", idleSeat.get());
+        stats.put("confirmed", confirmed.get());
+        Map<String, Object> bySource = new LinkedHashMap<>();
+        sources.forEach((source, sourceStats) -> bySource.put(source, sourceStats.snapshot()));
+        stats.put("sources", bySource);
+        return stats;
+    }
+}
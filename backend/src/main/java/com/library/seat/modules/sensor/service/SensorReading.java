@@ -0,0 +1,80 @@
+package com.library.seat.modules.sensor.service;
+
+import java.nio.charset.StandardCharsets;
+
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONObject;
+
+/**
+ * 座位传感器读数
+ * 紧凑载荷格式: "1" / "0" 或 "1:时间戳(秒)"；也兼容 JSON {"p":1,"ts":1718000000} / {"present":true}
+ * HTTP 批量接口使用 {"seatNo":"A-01","present":true,"ts":1718000000}
+ */
+public class SensorReading {
+
+    private final String seatNo;
+    private final boolean present;
+    private final long timestamp;
+
+    public SensorReading(String seatNo, boolean present, long timestamp) {
+        this.seatNo = seatNo;
+        this.present = present;
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * 解码载荷；格式不正确时返回 null
+     */
+    public static SensorReading decode(String seatNo, byte[] payload) {
+        if (seatNo == null || payload == null || payload.length == 0) return null;
+        long now = System.currentTimeMillis();
+
+        // 最常见的单字节载荷走快速路径
+        if (payload.length == 1) {
+            if (payload[0] == '1') return new SensorReading(seatNo, true, now);
+            if (payload[0] == '0') return new SensorReading(seatNo, false, now);
+            return null;
+        }
+
+        String text = new String(payload, StandardCharsets.UTF_8).trim();
+        try {
+            if (text.startsWith("{")) {
+                JSONObject json = JSON.parseObject(text);
+                json.put("seatNo", seatNo);
+                return fromJson(json);
+            }
+            int sep = text.indexOf(':');
+            String flag = sep >= 0 ? text.substring(0, sep) : text;
+            if (!"1".equals(flag) && !"0".equals(flag)) return null;
+            long ts = sep >= 0 ? Long.parseLong(text.substring(sep + 1)) * 1000 : now;
+            return new SensorReading(seatNo, "1".equals(flag), ts);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * 从 JSON 对象解析: {seatNo, present|p, ts}，ts 可以是秒或毫秒；缺少必要字段时返回 null
+     */
+    public static SensorReading fromJson(JSONObject json) {
+        String seatNo = json.getString("seatNo");
+        Object p = json.containsKey("present") ? json.get("present") : json.get("p");
+        if (seatNo == null || p == null) return null;
+        boolean present = p instanceof Boolean b ? b : "1".equals(String.valueOf(p));
+        Long ts = json.getLong("ts");
+        long timestamp = ts == null ? System.currentTimeMillis() : ts < 100_000_000_000L ? ts * 1000 : ts;
+        return new SensorReading(seatNo, present, timestamp);
+    }
+
+    public String getSeatNo() {
+        return seatNo;
+    }
+
+    public boolean isPresent() {
+        return present;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+}
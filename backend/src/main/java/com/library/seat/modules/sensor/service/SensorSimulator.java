@@ -0,0 +1,68 @@
+package com.library.seat.modules.sensor.service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.library.seat.modules.reservation.service.PresenceStore;
+import com.library.seat.modules.seat.entity.Seat;
+import com.library.seat.modules.seat.service.SeatService;
+
+/**
+ * 进程内传感器模拟 (本地联调/压测用，替代 EMQX)
+ * 每秒按 rate-per-second 生成读数直接送入接入管道：大部分落在已签到的座位上，其余为空座位。
+ */
+@Component
+@ConditionalOnProperty(prefix = "sensor.simulator", name = "enabled", havingValue = "true")
+public class SensorSimulator {
+
+    @Autowired
+    private PresenceIngestPipeline pipeline;
+
+    @Autowired
+    private PresenceStore presenceStore;
+
+    @Autowired
+    private SeatService seatService;
+
+    @Value("${sensor.simulator.rate-per-second:2000}")
+    private int ratePerSecond;
+
+    private volatile List<Seat> seats;
+
+    private volatile Map<Long, String> seatNos;
+
+    @Scheduled(fixedRate = 1000)
+    public void emit() {
+        if (seats == null) {
+            List<Seat> all = seatService.list();
+            Map<Long, String> map = new HashMap<>();
+            for (Seat seat : all) {
+                map.put(seat.getId(), seat.getSeatNo());
+            }
+            seatNos = map;
+            seats = all;
+        }
+        if (seats.isEmpty()) return;
+
+        List<PresenceStore.Presence> present = presenceStore.snapshot();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < ratePerSecond; i++) {
+            String seatNo = null;
+            if (!present.isEmpty() && random.nextInt(10) < 8) {
+                seatNo = seatNos.get(present.get(random.nextInt(present.size())).getSeatId());
+            }
+            if (seatNo == null) {
+                seatNo = seats.get(random.nextInt(seats.size())).getSeatNo();
+            }
+            pipeline.submit(new SensorReading(seatNo, true, System.currentTimeMillis()));
+        }
+    }
+}
@@ -2,17 +2,24 @@ package com.library.seat.modules.sys.controller;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.library.seat.common.Result;
+import com.library.seat.common.security.CurrentUser;
+import com.library.seat.common.security.LoginUser;
+import com.library.seat.common.security.PasswordHashExecutor;
+import com.library.seat.common.security.RefreshTokenStore;
 import com.library.seat.common.utils.JwtUtils;
 import com.library.seat.modules.sys.entity.SysUser;
 import com.library.seat.modules.sys.service.UserDetailsServiceImpl;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
@@ -23,12 +30,16 @@ import org.springframework.beans.factory.annotation.Value;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 @Tag(name = "认证管理", description = "用户登录与注册相关接口")
 @RestController
 @RequestMapping("/api/v1/auth")
 public class AuthController {
 
+    private static final Logger log = LoggerFactory.getLogger(AuthController.class);
+
     @Autowired
     private AuthenticationManager authenticationManager;
 
@@ -41,6 +52,16 @@ public class AuthController {
     @Autowired
     private PasswordEncoder passwordEncoder;
 
+    @Autowired
+    private RefreshTokenStore refreshTokenStore;
+
+    @Autowired
+    private PasswordHashExecutor passwordHashExecutor;
+
+    @Autowired
+    @Qualifier("loginExecutor")
+    private Executor loginExecutor;
+
     @Value("${wechat.mp.app-id:}")
     private String wechatAppId;
 
@@ -51,45 +72,73 @@ public class AuthController {
 
     @Operation(summary = "用户登录", description = "使用账号密码登录并获取 JWT Token")
     @PostMapping("/login")
-    public Result<Map<String, Object>> login(@RequestBody LoginRequest loginRequest) {
-        Authentication authentication = authenticationManager.authenticate(
+    public CompletableFuture<Result<Map<String, Object>>> login(@RequestBody LoginRequest loginRequest) {
+        // 只有密码校验在哈希线程池中执行，请求线程立即释放；线程池饱和时直接返回 429
+        // 校验通过后的查库与更新交给登录线程池，不占用哈希线程
+        return passwordHashExecutor.submit(() -> authenticationManager.authenticate(
                 new UsernamePasswordAuthenticationToken(loginRequest.getUsername(), loginRequest.getPassword())
-        );
+        )).thenApplyAsync(authentication -> {
+            UserDetails userDetails = (UserDetails) authentication.getPrincipal();
 
-        SecurityContextHolder.getContext().setAuthentication(authentication);
-        UserDetails userDetails = (UserDetails) authentication.getPrincipal();
-        String token = jwtUtils.generateToken(userDetails);
+            SysUser sysUser = userDetailsService.getOne(new LambdaQueryWrapper<SysUser>()
+                    .eq(SysUser::getUsername, loginRequest.getUsername()));
 
-        SysUser sysUser = userDetailsService.getOne(new LambdaQueryWrapper<SysUser>()
-                .eq(SysUser::getUsername, loginRequest.getUsername()));
+            // Update last login time
+            sysUser.setLastLoginTime(new java.util.Date());
+            userDetailsService.updateById(sysUser);
 
-        // Update last login time
-        sysUser.setLastLoginTime(new java.util.Date());
-        userDetailsService.updateById(sysUser);
+            Map<String, Object> data = loginResponse(userDetails, sysUser);
 
-        Map<String, Object> data = new HashMap<>();
-        data.put("token", token);
-        data.put("userInfo", sysUser);
+            return Result.success(data);
+        }, loginExecutor);
+    }
+
+    @Operation(summary = "刷新令牌", description = "用刷新令牌换取新的访问令牌和刷新令牌，不校验密码")
+    @PostMapping("/refresh")
+    public Result<Map<String, Object>> refresh(@RequestBody RefreshRequest request) {
+        RefreshTokenStore.Rotation rotation;
+        try {
+            rotation = refreshTokenStore.rotate(request.getRefreshToken());
+        } catch (Exception e) {
+            log.warn("Failed to rotate refresh token: {}", e.getMessage());
+            rotation = null;
+        }
+        if (rotation == null) {
+            return Result.error(401, "登录已过期，请重新登录");
+        }
 
+        Map<String, Object> data = new HashMap<>();
+        data.put("token", jwtUtils.generateToken(rotation.user()));
+        data.put("refreshToken", rotation.refreshToken());
         return Result.success(data);
     }
 
+    @Operation(summary = "密码哈希线程池统计（管理员）")
+    @GetMapping("/hash-stats")
+    @PreAuthorize("hasAuthority('admin')")
+    public Result<Map<String, Object>> hashStats() {
+        return Result.success(passwordHashExecutor.getStats());
+    }
+
     @Operation(summary = "退出登录")
     @PostMapping("/logout")
-    public Result<String> logout() {
-        // JWT is stateless, client just discards token.
-        // Can implement blacklist if needed.
+    public Result<String> logout(@RequestBody(required = false) RefreshRequest request) {
+        // 访问令牌无状态，到期自然失效；刷新令牌所在的令牌族立即作废
+        if (request != null && request.getRefreshToken() != null) {
+            try {
+                refreshTokenStore.revoke(request.getRefreshToken());
+            } catch (Exception e) {
+                log.warn("Failed to revoke refresh token: {}", e.getMessage());
+            }
+        }
         return Result.success("Logged out successfully");
     }
 
     @Operation(summary = "获取当前用户信息")
     @GetMapping("/info")
-    public Result<SysUser> info() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String username = authentication.getName();
-        SysUser sysUser = userDetailsService.getOne(new LambdaQueryWrapper<SysUser>()
-                .eq(SysUser::getUsername, username));
-        return Result.success(sysUser);
+    public Result<SysUser> info(@CurrentUser Long userId) {
+        // 返回完整资料仍需读库，按主键查询
+        return Result.success(userDetailsService.getById(userId));
     }
 
     @Operation(summary = "微信小程序登录")
@@ -106,14 +155,11 @@ public class AuthController {
 
         String mockUsername = "student";
         UserDetails userDetails = userDetailsService.loadUserByUsername(mockUsername);
-        String token = jwtUtils.generateToken(userDetails);
 
         SysUser sysUser = userDetailsService.getOne(new LambdaQueryWrapper<SysUser>()
                 .eq(SysUser::getUsername, mockUsername));
 
-        Map<String, Object> data = new HashMap<>();
-        data.put("token", token);
-        data.put("userInfo", sysUser);
+        Map<String, Object> data = loginResponse(userDetails, sysUser);
 
         return Result.success(data);
     }
@@ -174,83 +220,77 @@ public class AuthController {
 
         // 4. Generate Token
         UserDetails userDetails = userDetailsService.loadUserByUsername(sysUser.getUsername());
-        String token = jwtUtils.generateToken(userDetails);
 
         // Update login time
         sysUser.setLastLoginTime(new java.util.Date());
         userDetailsService.updateById(sysUser);
 
-        Map<String, Object> data = new HashMap<>();
-        data.put("token", token);
-        data.put("userInfo", sysUser);
+        Map<String, Object> data = loginResponse(userDetails, sysUser);
 
         return Result.success(data);
     }
 
     @Operation(summary = "用户注册", description = "新用户注册并自动登录")
     @PostMapping("/register")
-    public Result<Map<String, Object>> register(@RequestBody RegisterRequest request) {
+    public CompletableFuture<Result<Map<String, Object>>> register(@RequestBody RegisterRequest request) {
         // 1. Validate params
         if (request.getUsername() == null || request.getUsername().isEmpty()) {
-            return Result.error(400, "用户名不能为空");
+            return CompletableFuture.completedFuture(Result.error(400, "用户名不能为空"));
         }
         if (request.getPassword() == null || request.getPassword().length() < 6) {
-            return Result.error(400, "密码长度不能少于6位");
+            return CompletableFuture.completedFuture(Result.error(400, "密码长度不能少于6位"));
         }
         if (request.getPhone() == null || request.getPhone().isEmpty()) {
-            return Result.error(400, "手机号不能为空");
+            return CompletableFuture.completedFuture(Result.error(400, "手机号不能为空"));
         }
 
         // 2. Check if user exists
         long count = userDetailsService.count(new LambdaQueryWrapper<SysUser>()
                 .eq(SysUser::getUsername, request.getUsername()));
         if (count > 0) {
-            return Result.error(400, "用户名已存在，请直接登录");
+            return CompletableFuture.completedFuture(Result.error(400, "用户名已存在，请直接登录"));
         }
 
         // 3. Check if phone exists (Uniqueness validation)
         long phoneCount = userDetailsService.count(new LambdaQueryWrapper<SysUser>()
                 .eq(SysUser::getPhone, request.getPhone()));
         if (phoneCount > 0) {
-            return Result.error(400, "该手机号已被注册");
+            return CompletableFuture.completedFuture(Result.error(400, "该手机号已被注册"));
         }
 
-        // 4. Create user
-        SysUser user = new SysUser();
-        user.setUsername(request.getUsername());
-        user.setPassword(passwordEncoder.encode(request.getPassword()));
-        user.setPhone(request.getPhone());
-        user.setRole("student");
-        user.setStatus("active");
-        user.setCreditScore(100);
-        user.setCreateTime(new java.util.Date());
-        user.setDeleted(0);
-        // Default avatar
-        user.setAvatar("https://api.dicebear.com/7.x/avataaars/svg?seed=" + request.getUsername());
-
-        userDetailsService.save(user);
-
-        // 5. Auto login (Generate Token)
-        UserDetails userDetails = userDetailsService.loadUserByUsername(user.getUsername());
-        String token = jwtUtils.generateToken(userDetails);
-
-        // Update last login
-        user.setLastLoginTime(new java.util.Date());
-        userDetailsService.updateById(user);
-
-        Map<String, Object> data = new HashMap<>();
-        data.put("token", token);
-        data.put("userInfo", user);
-
-        return Result.success(data);
+        // 4. Create user (密码哈希在专用线程池中执行，写库与签发令牌在登录线程池中执行)
+        return passwordHashExecutor.submit(() -> passwordEncoder.encode(request.getPassword())).thenApplyAsync(encoded -> {
+            SysUser user = new SysUser();
+            user.setUsername(request.getUsername());
+            user.setPassword(encoded);
+            user.setPhone(request.getPhone());
+            user.setRole("student");
+            user.setStatus("active");
+            user.setCreditScore(100);
+            user.setCreateTime(new java.util.Date());
+            user.setDeleted(0);
+            // Default avatar
+            user.setAvatar("https://api.dicebear.com/7.x/avataaars/svg?seed=" + request.getUsername());
+
+            userDetailsService.save(user);
+
+            // 5. Auto login (Generate Token)
+            UserDetails userDetails = userDetailsService.loadUserByUsername(user.getUsername());
+
+            // Update last login
+            user.setLastLoginTime(new java.util.Date());
+            userDetailsService.updateById(user);
+
+            Map<String, Object> data = loginResponse(userDetails, user);
+
+            return Result.success(data);
+        }, loginExecutor);
     }
 
     @Operation(summary = "完善个人信息", description = "更新当前登录用户的真实姓名、手机号和学号/工号")
     @PutMapping("/profile")
-    public Result<Boolean> updateProfile(@RequestBody SysUser user) {
-        String username = SecurityContextHolder.getContext().getAuthentication().getName();
-        SysUser currentUser = userDetailsService.getOne(new LambdaQueryWrapper<SysUser>()
-                .eq(SysUser::getUsername, username));
+    public Result<Boolean> updateProfile(@RequestBody SysUser user, @CurrentUser Long userId) {
+        SysUser currentUser = userDetailsService.getById(userId);
 
         if (currentUser == null) {
             return Result.error("用户不存在");
@@ -279,6 +319,38 @@ public class AuthController {
         return Result.success(userDetailsService.updateById(currentUser));
     }
 
+    /**
+     * 登录成功的响应：访问令牌、刷新令牌和用户信息。
+     * Redis 不可用时不返回刷新令牌，客户端在访问令牌过期后重新登录。
+     */
+    private Map<String, Object> loginResponse(UserDetails userDetails, SysUser sysUser) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("token", jwtUtils.generateToken(userDetails));
+        if (userDetails instanceof LoginUser) {
+            try {
+                data.put("refreshToken", refreshTokenStore.issue((LoginUser) userDetails));
+            } catch (Exception e) {
+                log.warn("Failed to issue refresh token for {}: {}", userDetails.getUsername(), e.getMessage());
+            }
+        }
+        data.put("userInfo", sysUser);
+        return data;
+    }
+
+    @Schema(description = "刷新令牌请求参数")
+    public static class RefreshRequest {
+        @Schema(description = "刷新令牌", required = true)
+        private String refreshToken;
+
+        public String getRefreshToken() {
+            return refreshToken;
+        }
+
+        public void setRefreshToken(String refreshToken) {
+            this.refreshToken = refreshToken;
+        }
+    }
+
     @Schema(description = "登录请求参数")
     public static class LoginRequest {
         @Schema(description = "账号", example = "admin", required = true)
@@ -2,15 +2,14 @@ package com.library.seat.modules.sys.controller;
 
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.library.seat.common.Result;
+import com.library.seat.common.security.CurrentUser;
+import com.library.seat.common.security.LoginUser;
 import com.library.seat.modules.sys.entity.SysMessage;
-import com.library.seat.modules.sys.entity.SysUser;
 import com.library.seat.modules.sys.service.ISysMessageService;
-import com.library.seat.modules.sys.service.UserDetailsServiceImpl;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
@@ -26,9 +25,6 @@ public class SysMessageController {
     @Autowired
     private ISysMessageService messageService;
 
-    @Autowired
-    private UserDetailsServiceImpl userService;
-
     @Autowired
     private com.library.seat.modules.sys.service.ISysNotificationService notificationService;
 
@@ -40,18 +36,14 @@ public class SysMessageController {
 
     @Operation(summary = "发布消息")
     @PostMapping
-    public Result<Boolean> post(@RequestBody SysMessage message) {
+    public Result<Boolean> post(@RequestBody SysMessage message, @CurrentUser LoginUser loginUser) {
         // 检查消息广场是否开启
         String enabled = configService.getValue("message_square_enabled", "true");
         if (!"true".equalsIgnoreCase(enabled)) {
             return Result.error("消息广场发言功能已暂时关闭");
         }
 
-        String username = SecurityContextHolder.getContext().getAuthentication().getName();
-        SysUser user = userService.getOne(new com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper<SysUser>()
-                .eq(SysUser::getUsername, username));
-        
-        message.setUserId(user.getId());
+        message.setUserId(loginUser.getId());
         message.setCreateTime(new Date());
         boolean success = messageService.save(message);
         
@@ -61,7 +53,8 @@ public class SysMessageController {
             messagingTemplate.convertAndSend("/topic/messages", fullMessage);
 
             if (message.getAtUserId() != null) {
-                notificationService.send(message.getAtUserId(), "消息广场提到你", user.getRealName() + " 在消息广场@了你。", "info");
+                String realName = fullMessage != null ? fullMessage.getRealName() : loginUser.getUsername();
+                notificationService.send(message.getAtUserId(), "消息广场提到你", realName + " 在消息广场@了你。", "info");
             }
         }
         
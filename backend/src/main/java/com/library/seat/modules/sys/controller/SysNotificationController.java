@@ -3,14 +3,12 @@ package com.library.seat.modules.sys.controller;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.library.seat.common.Result;
+import com.library.seat.common.security.CurrentUser;
 import com.library.seat.modules.sys.entity.SysNotification;
-import com.library.seat.modules.sys.entity.SysUser;
 import com.library.seat.modules.sys.service.ISysNotificationService;
-import com.library.seat.modules.sys.service.UserDetailsServiceImpl;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
@@ -23,21 +21,12 @@ public class SysNotificationController {
     @Autowired
     private ISysNotificationService notificationService;
 
-    @Autowired
-    private UserDetailsServiceImpl userService;
-
-    private Long getCurrentUserId() {
-        String username = SecurityContextHolder.getContext().getAuthentication().getName();
-        SysUser user = userService.getOne(new LambdaQueryWrapper<SysUser>().eq(SysUser::getUsername, username));
-        return user != null ? user.getId() : null;
-    }
-
     @Operation(summary = "获取当前用户通知列表")
     @GetMapping("/list")
     public Result<Page<SysNotification>> list(
             @RequestParam(defaultValue = "1") Integer page,
-            @RequestParam(defaultValue = "10") Integer size) {
-        Long userId = getCurrentUserId();
+            @RequestParam(defaultValue = "10") Integer size,
+            @CurrentUser Long userId) {
         return Result.success(notificationService.page(new Page<>(page, size), 
                 new LambdaQueryWrapper<SysNotification>()
                         .eq(SysNotification::getUserId, userId)
@@ -57,8 +46,7 @@ public class SysNotificationController {
 
     @Operation(summary = "全部标记为已读")
     @PutMapping("/read-all")
-    public Result<Boolean> readAll() {
-        Long userId = getCurrentUserId();
+    public Result<Boolean> readAll(@CurrentUser Long userId) {
         List<SysNotification> list = notificationService.list(new LambdaQueryWrapper<SysNotification>()
                 .eq(SysNotification::getUserId, userId)
                 .eq(SysNotification::getIsRead, 0));
@@ -70,8 +58,7 @@ public class SysNotificationController {
 
     @Operation(summary = "获取未读消息数")
     @GetMapping("/unread-count")
-    public Result<Long> unreadCount() {
-        Long userId = getCurrentUserId();
+    public Result<Long> unreadCount(@CurrentUser Long userId) {
         return Result.success(notificationService.count(new LambdaQueryWrapper<SysNotification>()
                 .eq(SysNotification::getUserId, userId)
                 .eq(SysNotification::getIsRead, 0)));
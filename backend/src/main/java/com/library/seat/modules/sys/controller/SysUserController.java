@@ -3,6 +3,7 @@ package com.library.seat.modules.sys.controller;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.library.seat.common.Result;
+import com.library.seat.common.security.PrincipalCache;
 import com.library.seat.modules.sys.entity.SysUser;
 import com.library.seat.modules.sys.service.UserDetailsServiceImpl;
 import io.swagger.v3.oas.annotations.Operation;
@@ -27,6 +28,9 @@ public class SysUserController {
     @Autowired
     private PasswordEncoder passwordEncoder;
 
+    @Autowired
+    private PrincipalCache principalCache;
+
     @Autowired
     private com.library.seat.modules.sys.service.ISysNotificationService notificationService;
 
@@ -77,6 +81,8 @@ public class SysUserController {
         }
         boolean success = userService.updateById(user);
         if (success) {
+            // 角色等信息可能已变更，下次请求重新载入
+            principalCache.invalidate(id);
             notificationService.send(id, "个人信息修改通知", "管理员已修改您的个人信息，请检查是否正确。", "info");
         }
         return Result.success(success);
@@ -97,6 +103,11 @@ public class SysUserController {
         }
 
         user.setStatus(status);
-        return Result.success(userService.updateById(user));
+        boolean success = userService.updateById(user);
+        if (success) {
+            // 封禁后已签发的令牌立即失效
+            principalCache.invalidate(id);
+        }
+        return Result.success(success);
     }
 }
@@ -3,7 +3,18 @@ package com.library.seat.modules.sys.mapper;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.library.seat.modules.sys.entity.SysUser;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Update;
+
+import java.util.Collection;
 
 @Mapper
 public interface SysUserMapper extends BaseMapper<SysUser> {
+
+    /**
+     * 批量扣除信用分 (不低于 0)
+     */
+    @Update("<script>UPDATE sys_user SET credit_score = GREATEST(credit_score - #{score}, 0) WHERE id IN " +
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach></script>")
+    int deductCreditScore(@Param("ids") Collection<Long> ids, @Param("score") int score);
 }
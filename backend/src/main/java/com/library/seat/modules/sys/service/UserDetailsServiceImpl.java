@@ -2,25 +2,23 @@ package com.library.seat.modules.sys.service;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.library.seat.common.security.LoginUser;
 import com.library.seat.modules.sys.entity.SysUser;
 import com.library.seat.modules.sys.mapper.SysUserMapper;
-import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
-import org.springframework.security.core.userdetails.User;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @Service
 public class UserDetailsServiceImpl extends ServiceImpl<SysUserMapper, SysUser> implements UserDetailsService {
 
     @Override
-    public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
+    public LoginUser loadUserByUsername(String username) throws UsernameNotFoundException {
         SysUser sysUser = this.getOne(new LambdaQueryWrapper<SysUser>()
                 .eq(SysUser::getUsername, username)
                 .eq(SysUser::getStatus, "active"));
@@ -29,12 +27,7 @@ public class UserDetailsServiceImpl extends ServiceImpl<SysUserMapper, SysUser>
             throw new UsernameNotFoundException("User not found or banned: " + username);
         }
 
-        List<GrantedAuthority> authorities = new ArrayList<>();
-        if (sysUser.getRole() != null) {
-            authorities.add(new SimpleGrantedAuthority(sysUser.getRole()));
-        }
-
-        return new User(sysUser.getUsername(), sysUser.getPassword(), authorities);
+        return new LoginUser(sysUser.getId(), sysUser.getUsername(), sysUser.getPassword(), sysUser.getRole(), sysUser.getStatus());
     }
     
     public void deductCreditScore(Long userId, int score) {
@@ -46,6 +39,17 @@ public class UserDetailsServiceImpl extends ServiceImpl<SysUserMapper, SysUser>
         }
     }
 
+    /**
+     * 批量扣除信用分，按扣分值分组，每组一条 UPDATE
+     *
+     * @param deductions 用户ID -> 扣除分数
+     */
+    public void deductCreditScores(Map<Long, Integer> deductions) {
+        Map<Integer, List<Long>> byScore = new HashMap<>();
+        deductions.forEach((userId, score) -> byScore.computeIfAbsent(score, k -> new ArrayList<>()).add(userId));
+        byScore.forEach((score, userIds) -> this.baseMapper.deductCreditScore(userIds, score));
+    }
+
     public void addCreditScore(Long userId, int score) {
         SysUser user = this.getById(userId);
         if (user != null) {
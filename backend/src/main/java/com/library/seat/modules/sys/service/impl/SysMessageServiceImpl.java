@@ -12,7 +12,7 @@ import com.library.seat.modules.sys.entity.SysUser;
 import com.library.seat.modules.sys.mapper.SysMessageMapper;
 import com.library.seat.modules.sys.service.ISysMessageService;
 import com.library.seat.modules.sys.service.UserDetailsServiceImpl;
-import com.library.seat.common.websocket.WebSocketEventListener;
+import com.library.seat.common.websocket.OnlineUserRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -30,6 +30,9 @@ public class SysMessageServiceImpl extends ServiceImpl<SysMessageMapper, SysMess
     @Autowired
     private SeatService seatService;
 
+    @Autowired
+    private OnlineUserRegistry onlineUserRegistry;
+
     @Override
     public Page<SysMessage> getMessagePage(Page<SysMessage> page) {
         Page<SysMessage> result = this.page(page, new LambdaQueryWrapper<SysMessage>().orderByDesc(SysMessage::getCreateTime));
@@ -58,7 +61,7 @@ public class SysMessageServiceImpl extends ServiceImpl<SysMessageMapper, SysMess
             msg.setAvatar(user.getAvatar());
             
             // 使用 WebSocket 实时在线状态
-            msg.setStatus(WebSocketEventListener.isOnline(user.getUsername()) ? "active" : "offline");
+            msg.setStatus(onlineUserRegistry.isOnline(user.getUsername()) ? "active" : "offline");
             
             // 获取当前占用座位
             Reservation activeRes = reservationService.getOne(new LambdaQueryWrapper<Reservation>()
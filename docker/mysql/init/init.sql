@@ -71,9 +71,15 @@ CREATE TABLE `sys_reservation` (
   `create_time` datetime DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
   `update_time` datetime DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
   `deleted` int(11) DEFAULT '0' COMMENT '是否删除 0:否 1:是',
+  `active_seat_key` varchar(64) GENERATED ALWAYS AS (IF(`status` IN ('reserved','checked_in','away') AND `deleted` = 0, CONCAT(`seat_id`, ':', DATE(`start_time`), ':', `slot`), NULL)) STORED COMMENT '活跃预约座位键',
+  `active_user_key` varchar(64) GENERATED ALWAYS AS (IF(`status` IN ('reserved','checked_in','away') AND `deleted` = 0, CONCAT(`user_id`, ':', DATE(`start_time`), ':', `slot`), NULL)) STORED COMMENT '活跃预约用户键',
   PRIMARY KEY (`id`),
   KEY `idx_user_id` (`user_id`),
-  KEY `idx_seat_id` (`seat_id`)
+  KEY `idx_seat_id` (`seat_id`),
+  KEY `idx_status_deadline` (`status`, `deadline`),
+  KEY `idx_status_present` (`status`, `last_present_time`),
+  UNIQUE KEY `uk_active_seat` (`active_seat_key`),
+  UNIQUE KEY `uk_active_user` (`active_user_key`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='预约记录表';
 
 -- ----------------------------
@@ -163,6 +169,45 @@ CREATE TABLE `sys_notification` (
   KEY `idx_user_id` (`user_id`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='消息通知表';
 
+-- ----------------------------
+-- Table structure for sys_outbox
+-- ----------------------------
+DROP TABLE IF EXISTS `sys_outbox`;
+CREATE TABLE `sys_outbox` (
+  `id` bigint(20) NOT NULL AUTO_INCREMENT COMMENT '主键ID',
+  `event_type` varchar(32) NOT NULL COMMENT '类型: user_push, notification',
+  `recipient` varchar(64) DEFAULT NULL COMMENT '接收人 (用户ID或用户名)',
+  `destination` varchar(128) DEFAULT NULL COMMENT '推送目的地',
+  `payload` text NOT NULL COMMENT '消息内容 (JSON)',
+  `status` varchar(16) DEFAULT 'pending' COMMENT 'pending, sent, failed',
+  `attempts` int(11) DEFAULT '0' COMMENT '投递失败次数',
+  `last_error` varchar(500) DEFAULT NULL COMMENT '最近一次失败原因',
+  `create_time` datetime(3) DEFAULT CURRENT_TIMESTAMP(3) COMMENT '创建时间',
+  `sent_time` datetime(3) DEFAULT NULL COMMENT '投递时间',
+  PRIMARY KEY (`id`),
+  KEY `idx_status_id` (`status`, `id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='事务消息发件箱表';
+
+-- ----------------------------
+-- Table structure for sys_job_log
+-- Quartz 集群调度使用的 QRTZ_ 表由后端启动时根据 Quartz 自带脚本创建
+-- ----------------------------
+DROP TABLE IF EXISTS `sys_job_log`;
+CREATE TABLE `sys_job_log` (
+  `id` bigint(20) NOT NULL AUTO_INCREMENT COMMENT '主键ID',
+  `job_name` varchar(64) NOT NULL COMMENT '任务名称',
+  `instance_id` varchar(128) DEFAULT NULL COMMENT '执行节点',
+  `scheduled_time` datetime(3) DEFAULT NULL COMMENT '计划触发时间',
+  `fire_time` datetime(3) DEFAULT NULL COMMENT '实际触发时间',
+  `duration_ms` bigint(20) DEFAULT NULL COMMENT '耗时(毫秒)',
+  `status` varchar(16) NOT NULL COMMENT 'success, failed, misfired',
+  `message` varchar(500) DEFAULT NULL COMMENT '错误信息或补偿说明',
+  `create_time` datetime(3) DEFAULT CURRENT_TIMESTAMP(3) COMMENT '创建时间',
+  PRIMARY KEY (`id`),
+  KEY `idx_job_time` (`job_name`, `fire_time`),
+  KEY `idx_create_time` (`create_time`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='定时任务运行记录表';
+
 -- ----------------------------
 -- Records of sys_user
 -- ----------------------------
@@ -0,0 +1,80 @@
+-- ============================================
+-- 数据库迁移脚本：活跃预约唯一性约束
+-- 版本：1.0
+-- 日期：2026-10-18
+-- 说明：为 sys_reservation 表添加活跃预约生成列及唯一索引，
+--       保证同一 (座位, 日期, 时段) 与 (用户, 日期, 时段) 最多只有一条活跃预约
+-- 特点：幂等性设计，可重复执行
+-- ============================================
+
+CREATE TABLE IF NOT EXISTS `sys_migration` (
+    `id` INT AUTO_INCREMENT PRIMARY KEY,
+    `version` VARCHAR(50) NOT NULL UNIQUE,
+    `description` VARCHAR(255),
+    `executed_at` DATETIME DEFAULT CURRENT_TIMESTAMP,
+    `success` TINYINT(1) DEFAULT 1
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='数据库迁移记录表';
+
+SET @migration_version = '002_add_active_reservation_keys';
+
+-- 执行前请先确认不存在重复的活跃预约，否则唯一索引会创建失败：
+-- SELECT seat_id, DATE(start_time), slot, COUNT(*) FROM sys_reservation
+--  WHERE status IN ('reserved','checked_in','away') AND deleted = 0
+--  GROUP BY seat_id, DATE(start_time), slot HAVING COUNT(*) > 1;
+
+-- 添加 active_seat_key 生成列
+SET @sql1 = IF(
+    (SELECT COUNT(*) FROM INFORMATION_SCHEMA.COLUMNS 
+     WHERE TABLE_SCHEMA = DATABASE() 
+     AND TABLE_NAME = 'sys_reservation' 
+     AND COLUMN_NAME = 'active_seat_key') = 0,
+    'ALTER TABLE sys_reservation ADD COLUMN active_seat_key VARCHAR(64) GENERATED ALWAYS AS (IF(status IN (''reserved'',''checked_in'',''away'') AND deleted = 0, CONCAT(seat_id, '':'', DATE(start_time), '':'', slot), NULL)) STORED COMMENT ''活跃预约座位键''',
+    'SELECT ''Column active_seat_key already exists'' AS message'
+);
+PREPARE stmt1 FROM @sql1;
+EXECUTE stmt1;
+DEALLOCATE PREPARE stmt1;
+
+-- 添加 active_user_key 生成列
+SET @sql2 = IF(
+    (SELECT COUNT(*) FROM INFORMATION_SCHEMA.COLUMNS 
+     WHERE TABLE_SCHEMA = DATABASE() 
+     AND TABLE_NAME = 'sys_reservation' 
+     AND COLUMN_NAME = 'active_user_key') = 0,
+    'ALTER TABLE sys_reservation ADD COLUMN active_user_key VARCHAR(64) GENERATED ALWAYS AS (IF(status IN (''reserved'',''checked_in'',''away'') AND deleted = 0, CONCAT(user_id, '':'', DATE(start_time), '':'', slot), NULL)) STORED COMMENT ''活跃预约用户键''',
+    'SELECT ''Column active_user_key already exists'' AS message'
+);
+PREPARE stmt2 FROM @sql2;
+EXECUTE stmt2;
+DEALLOCATE PREPARE stmt2;
+
+-- 添加唯一索引 uk_active_seat
+SET @sql3 = IF(
+    (SELECT COUNT(*) FROM INFORMATION_SCHEMA.STATISTICS 
+     WHERE TABLE_SCHEMA = DATABASE() 
+     AND TABLE_NAME = 'sys_reservation' 
+     AND INDEX_NAME = 'uk_active_seat') = 0,
+    'ALTER TABLE sys_reservation ADD UNIQUE KEY uk_active_seat (active_seat_key)',
+    'SELECT ''Index uk_active_seat already exists'' AS message'
+);
+PREPARE stmt3 FROM @sql3;
+EXECUTE stmt3;
+DEALLOCATE PREPARE stmt3;
+
+-- 添加唯一索引 uk_active_user
+SET @sql4 = IF(
+    (SELECT COUNT(*) FROM INFORMATION_SCHEMA.STATISTICS 
+     WHERE TABLE_SCHEMA = DATABASE() 
+     AND TABLE_NAME = 'sys_reservation' 
+     AND INDEX_NAME = 'uk_active_user') = 0,
+    'ALTER TABLE sys_reservation ADD UNIQUE KEY uk_active_user (active_user_key)',
+    'SELECT ''Index uk_active_user already exists'' AS message'
+);
+PREPARE stmt4 FROM @sql4;
+EXECUTE stmt4;
+DEALLOCATE PREPARE stmt4;
+
+INSERT IGNORE INTO `sys_migration` (`version`, `description`) 
+VALUES (@migration_version, '添加活跃预约唯一性约束：active_seat_key, active_user_key');
+
+SELECT CONCAT('迁移 ', @migration_version, ' 执行完成') AS '状态';
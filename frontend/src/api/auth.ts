@@ -13,6 +13,8 @@ export interface RegisterParams {
 
 export interface LoginResult {
   token: string
+  // 模拟登录与访客登录没有刷新令牌
+  refreshToken?: string
   userInfo: UserInfo
 }
 
@@ -182,13 +184,14 @@ export function getUserInfo() {
   })
 }
 
-export function logout() {
+export function logout(refreshToken?: string) {
   if (USE_MOCK) {
     return Promise.resolve()
   }
   return request({
     url: '/auth/logout',
-    method: 'post'
+    method: 'post',
+    data: refreshToken ? { refreshToken } : undefined
   })
 }
 
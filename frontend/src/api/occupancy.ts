@@ -1,4 +1,5 @@
 import request from '../utils/request'
+import { useUserStore } from '../stores/user'
 
 export interface OccupancyRecord {
   id: number
@@ -12,6 +13,7 @@ export interface OccupancyRecord {
   checkInTime: string
   lastDetectedTime: string
   totalAwayMinutes: number
+  currentAwayMinutes?: number
   occupancyStatus: 'normal' | 'warning' | 'occupied'
   warningCount: number
 }
@@ -97,3 +99,82 @@ export function performOccupancyCheck() {
     method: 'post'
   })
 }
+
+/**
+ * 数据流公共字段：流中的行不含 currentAwayMinutes / occupancyStatus，由看板按阈值自行计算
+ */
+export interface OccupancyStreamMeta {
+  version: number
+  serverTime: number
+  occupancyThreshold: number
+  warningTime: number
+}
+
+export interface OccupancyChanges extends OccupancyStreamMeta {
+  changed: OccupancyRecord[]
+  removed: number[]
+}
+
+export interface OccupancyStreamHandlers {
+  onSnapshot: (rows: OccupancyRecord[], meta?: OccupancyStreamMeta) => void
+  onChanges: (changes: OccupancyChanges) => void
+  onError?: (error: unknown) => void
+}
+
+/**
+ * 订阅监控数据流 (SSE)。EventSource 无法携带 Authorization 头，这里用 fetch 读取事件流。
+ * 返回关闭函数。
+ */
+export function subscribeOccupancyStream(handlers: OccupancyStreamHandlers): () => void {
+  const controller = new AbortController()
+  if (USE_MOCK) {
+    handlers.onSnapshot(mockOccupancyData)
+    return () => controller.abort()
+  }
+
+  const userStore = useUserStore()
+  const baseURL = import.meta.env.VITE_API_BASE_URL || '/api'
+
+  const dispatch = (block: string) => {
+    let event = 'message'
+    const data: string[] = []
+    for (const line of block.split('\n')) {
+      if (line.startsWith('event:')) event = line.slice(6).trim()
+      else if (line.startsWith('data:')) data.push(line.slice(5).replace(/^ /, ''))
+    }
+    if (data.length === 0) return
+    const payload = JSON.parse(data.join('\n'))
+    if (event === 'snapshot') handlers.onSnapshot(payload.rows || [], payload)
+    else if (event === 'changes') handlers.onChanges(payload)
+  }
+
+  ;(async () => {
+    const res = await fetch(`${baseURL}/occupancy/monitoring/stream`, {
+      headers: {
+        Accept: 'text/event-stream',
+        ...(userStore.token ? { Authorization: `Bearer ${userStore.token}` } : {})
+      },
+      signal: controller.signal
+    })
+    if (!res.ok || !res.body) throw new Error(`stream failed: ${res.status}`)
+
+    const reader = res.body.getReader()
+    const decoder = new TextDecoder()
+    let buffer = ''
+    for (;;) {
+      const { done, value } = await reader.read()
+      if (done) break
+      buffer += decoder.decode(value, { stream: true }).replace(/\r/g, '')
+      let index
+      while ((index = buffer.indexOf('\n\n')) >= 0) {
+        dispatch(buffer.slice(0, index))
+        buffer = buffer.slice(index + 2)
+      }
+    }
+    throw new Error('stream closed')
+  })().catch((error) => {
+    if (!controller.signal.aborted) handlers.onError?.(error)
+  })
+
+  return () => controller.abort()
+}
@@ -13,6 +13,14 @@ export interface ReservationRecord {
 
 const USE_MOCK = import.meta.env.VITE_USE_MOCK === 'true'
 
+// 幂等键: 同一次用户操作的重试需复用同一个键，服务端会直接返回首次请求的结果
+export function newIdempotencyKey(): string {
+  if (typeof crypto !== 'undefined' && typeof crypto.randomUUID === 'function') {
+    return crypto.randomUUID()
+  }
+  return `${Date.now().toString(36)}-${Math.random().toString(36).slice(2, 12)}`
+}
+
 // Mock Data
 const mockHistory: ReservationRecord[] = [
   {
@@ -57,13 +65,23 @@ const mockHistory: ReservationRecord[] = [
   }
 ]
 
-export function createReservation(data: { seatId: number, slot: string }) {
+export function createReservation(data: { seatId: number, slot: string }, idempotencyKey = newIdempotencyKey()) {
   if (USE_MOCK) {
     return new Promise((resolve) => setTimeout(resolve, 1000))
   }
   return request({
     url: '/reservations',
     method: 'post',
+    headers: { 'Idempotency-Key': idempotencyKey },
+    data
+  })
+}
+
+// 抢座模式: 返回票据号，结果通过 reservation_update (event = flash_booking_result) 推送
+export function createFlashReservation(data: { seatId: number, slots: string[] }) {
+  return request<{ ticketId: number, area: string, queuePosition: number }>({
+    url: '/reservations/flash',
+    method: 'post',
     data
   })
 }
@@ -152,11 +170,12 @@ export function reviewAppeal(id: number, data: { status: 'approved' | 'rejected'
   })
 }
 
-export function checkIn(id: number, params: { qrCode?: string; lat?: number; lng?: number }) {
+export function checkIn(id: number, params: { qrCode?: string; lat?: number; lng?: number }, idempotencyKey = newIdempotencyKey()) {
   if (USE_MOCK) return Promise.resolve()
   return request({
     url: `/reservations/${id}/check-in`,
     method: 'post',
+    headers: { 'Idempotency-Key': idempotencyKey },
     data: params
   })
 }
@@ -169,10 +188,11 @@ export function temporaryLeave(id: number) {
   })
 }
 
-export function releaseSeat(id: number) {
+export function releaseSeat(id: number, idempotencyKey = newIdempotencyKey()) {
   if (USE_MOCK) return Promise.resolve()
   return request({
     url: `/reservations/${id}/release`,
-    method: 'post'
+    method: 'post',
+    headers: { 'Idempotency-Key': idempotencyKey }
   })
 }
\ No newline at end of file
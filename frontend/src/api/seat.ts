@@ -34,6 +34,29 @@ export function getSeats(params?: { area?: string }) {
   })
 }
 
+export interface SeatChanges {
+  epoch: string
+  version: number
+  full: boolean
+  seats: Seat[]
+  removed: number[]
+}
+
+/**
+ * 增量同步：返回 since 版本之后有变化的座位；版本号只在同一纪元 (服务节点) 内可比，
+ * 纪元不符或 since 过旧时服务端返回全量 (full = true)
+ */
+export function getSeatChanges(since: number, epoch?: string) {
+  if (USE_MOCK) {
+    return Promise.resolve({ epoch: 'mock', version: 1, full: true, seats: mockSeats, removed: [] } as unknown as SeatChanges)
+  }
+  return request<SeatChanges>({
+    url: '/seats/changes',
+    method: 'get',
+    params: { since, epoch }
+  })
+}
+
 export function addSeat(data: Partial<Seat>) {
   if (USE_MOCK) {
     return Promise.resolve(true)
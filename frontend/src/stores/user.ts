@@ -6,6 +6,7 @@ import { getActiveReservation } from '../api/reservation'
 
 export const useUserStore = defineStore('user', () => {
   const token = ref<string>(localStorage.getItem('token') || '')
+  const refreshToken = ref<string>(localStorage.getItem('refreshToken') || '')
   // 从 localStorage 恢复 userInfo，防止刷新丢失
   const userInfo = ref<UserInfo | null>(
     localStorage.getItem('userInfo') 
@@ -24,9 +25,15 @@ export const useUserStore = defineStore('user', () => {
   // 新用户标记：如果未绑定信息，则视为新用户/需要绑定用户
   const isNewUser = computed(() => !isInfoBound.value)
 
-  function setToken(newToken: string) {
+  function setToken(newToken: string, newRefreshToken?: string) {
     token.value = newToken
     localStorage.setItem('token', newToken)
+    refreshToken.value = newRefreshToken || ''
+    if (newRefreshToken) {
+      localStorage.setItem('refreshToken', newRefreshToken)
+    } else {
+      localStorage.removeItem('refreshToken')
+    }
   }
 
   function setUserInfo(info: UserInfo) {
@@ -79,7 +86,9 @@ export const useUserStore = defineStore('user', () => {
     userInfo.value = null
     menus.value = []
     clearReservation() // 登出时清除预约
+    refreshToken.value = ''
     localStorage.removeItem('token')
+    localStorage.removeItem('refreshToken')
     localStorage.removeItem('userInfo')
   }
 
@@ -87,7 +96,7 @@ export const useUserStore = defineStore('user', () => {
     try {
       const res = await login(params)
       
-      setToken(res.token)
+      setToken(res.token, res.refreshToken)
       setUserInfo(res.userInfo)
       
       // 登录成功后获取菜单
@@ -104,7 +113,7 @@ export const useUserStore = defineStore('user', () => {
     try {
       const res = await register(params)
       
-      setToken(res.token)
+      setToken(res.token, res.refreshToken)
       setUserInfo(res.userInfo)
       
       await fetchMenus()
@@ -120,7 +129,7 @@ export const useUserStore = defineStore('user', () => {
     try {
       const res = await guestLogin()
       
-      setToken(res.token)
+      setToken(res.token, res.refreshToken)
       setUserInfo(res.userInfo)
       
       await fetchMenus()
@@ -137,7 +146,7 @@ export const useUserStore = defineStore('user', () => {
     try {
       const res = await wechatLogin(code)
       
-      setToken(res.token)
+      setToken(res.token, res.refreshToken)
       setUserInfo(res.userInfo)
       await fetchMenus()
       
@@ -156,7 +165,7 @@ export const useUserStore = defineStore('user', () => {
 
   async function handleLogout() {
     try {
-      await logout()
+      await logout(refreshToken.value || undefined)
     } finally {
       clearToken()
     }
@@ -202,6 +211,7 @@ export const useUserStore = defineStore('user', () => {
 
   return {
     token,
+    refreshToken,
     userInfo,
     menus,
     isNewUser,
@@ -210,6 +220,7 @@ export const useUserStore = defineStore('user', () => {
     setAway,
     checkIn,
     clearReservation,
+    setToken,
     clearToken,
     handleLogin,
     handleRegister,
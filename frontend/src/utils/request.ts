@@ -8,6 +8,36 @@ const service = axios.create({
   timeout: 5000
 })
 
+let refreshing: Promise<string> | null = null
+
+// 用刷新令牌换取新的访问令牌；同一时间只发起一次，并发的 401 请求与 WebSocket 重连共用结果
+export function refreshAccessToken(): Promise<string> {
+  if (!refreshing) {
+    const userStore = useUserStore()
+    const sent = localStorage.getItem('refreshToken') || ''
+    refreshing = axios.post(`${service.defaults.baseURL}/auth/refresh`, { refreshToken: sent })
+      .then((response) => {
+        const res = response.data
+        if (res && res.code === 200) {
+          userStore.setToken(res.data.token, res.data.refreshToken)
+          return res.data.token as string
+        }
+        // 其它标签页已先一步轮换，改用其写入的新令牌
+        const current = localStorage.getItem('refreshToken')
+        if (current && current !== sent) {
+          const token = localStorage.getItem('token') || ''
+          userStore.setToken(token, current)
+          return token
+        }
+        throw new Error(res?.msg || '登录已过期')
+      })
+      .finally(() => {
+        refreshing = null
+      })
+  }
+  return refreshing
+}
+
 service.interceptors.request.use(
   (config) => {
     const userStore = useUserStore()
@@ -37,7 +67,26 @@ service.interceptors.response.use(
     // 兼容 Mock 数据或无包装的响应
     return res
   },
-  (error) => {
+  async (error) => {
+    const config = error.config
+    // 访问令牌过期：用刷新令牌换新令牌后重试一次，无需重新登录
+    if (error.response && error.response.status === 401 && config && !config._retried
+        && !String(config.url || '').startsWith('/auth/') && localStorage.getItem('refreshToken')) {
+      config._retried = true
+      try {
+        const token = await refreshAccessToken()
+        config.headers.Authorization = `Bearer ${token}`
+        return service(config)
+      } catch (e) {
+        console.warn('Token refresh failed:', e)
+      }
+    }
+    if (error.response && error.response.status === 429) {
+      // 登录高峰限流，按 Retry-After 提示稍后重试
+      const retryAfter = error.response.headers?.['retry-after']
+      message.warning(`${error.response.data?.msg || '请求过多'}${retryAfter ? `（约 ${retryAfter} 秒后）` : ''}`)
+      return Promise.reject(error)
+    }
     if (error.response && (error.response.status === 401 || error.response.status === 403)) {
       const userStore = useUserStore()
       userStore.clearToken()
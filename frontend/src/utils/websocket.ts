@@ -1,15 +1,62 @@
 import SockJS from 'sockjs-client'
 import Stomp from 'stompjs'
+import { refreshAccessToken } from './request'
+
+// 访问令牌剩余有效期不足该值时，连接前先刷新
+const TOKEN_REFRESH_MARGIN_MS = 30 * 1000
+
+// 读取 JWT 的过期时间 (毫秒)，无法解析时返回 null
+function tokenExpiresAt(token: string): number | null {
+  try {
+    const payload = JSON.parse(atob(token.split('.')[1].replace(/-/g, '+').replace(/_/g, '/')))
+    return typeof payload.exp === 'number' ? payload.exp * 1000 : null
+  } catch (e) {
+    return null
+  }
+}
 
 class WebSocketService {
   private stompClient: Stomp.Client | null = null
   private listeners: Map<string, Function[]> = new Map()
   private isConnected: boolean = false
+  private connecting: boolean = false
+  // 主动断开时递增，丢弃断开前尚在刷新令牌的连接请求
+  private generation: number = 0
+  // 各来源节点最近一帧 seat_batch 的序号，用于发现缺帧 (集群部署时每个节点的 seq 各自递增)
+  private seatSeqs: Map<string, number> = new Map()
+  // 当前关注的区域，null 表示订阅全馆 /topic/seats
+  private seatArea: string | null = null
+  private seatSubscriptions: Stomp.Subscription[] = []
 
   connect(url: string = 'http://localhost:8082/ws') {
-    if (this.stompClient && this.isConnected) return
+    if ((this.stompClient && this.isConnected) || this.connecting) return
 
+    // 服务端只在 CONNECT 时校验令牌，过期令牌会使连接降级为匿名、收不到个人消息，因此先换新令牌
+    this.connecting = true
+    const generation = this.generation
+    this.validToken()
+      .then((token) => {
+        if (generation === this.generation) this.open(url, token)
+      })
+      .finally(() => {
+        this.connecting = false
+      })
+  }
+
+  private async validToken(): Promise<string | null> {
     const token = localStorage.getItem('token')
+    if (!token || !localStorage.getItem('refreshToken')) return token
+    const expiresAt = tokenExpiresAt(token)
+    if (expiresAt === null || expiresAt - Date.now() > TOKEN_REFRESH_MARGIN_MS) return token
+    try {
+      return await refreshAccessToken()
+    } catch (e) {
+      console.warn('Token refresh before WebSocket connect failed:', e)
+      return token
+    }
+  }
+
+  private open(url: string, token: string | null) {
     const socket = new SockJS(url)
     this.stompClient = Stomp.over(socket)
     
@@ -22,18 +69,15 @@ class WebSocketService {
       () => {
         this.isConnected = true
         console.log('WebSocket connected')
+
+        // 断线期间可能漏掉座位广播，重连后要求页面重新同步
+        if (this.seatSeqs.size > 0) {
+          this.seatSeqs.clear()
+          this.notify('seat_resync', {})
+        }
         
-        // Subscribe to seat updates
-        this.stompClient?.subscribe('/topic/seats', (message) => {
-          try {
-            const data = JSON.parse(message.body)
-            if (data.event === 'seat_update') {
-              this.notify('seat_update', data)
-            }
-          } catch (e) {
-            console.error('Failed to parse WebSocket message:', e)
-          }
-        })
+        // Subscribe to seat updates (全馆或当前关注的区域)
+        this.subscribeSeats()
 
         // Subscribe to private alerts
         this.stompClient?.subscribe('/user/queue/alerts', (message) => {
@@ -74,7 +118,14 @@ class WebSocketService {
         this.stompClient?.subscribe('/topic/online_status', (message) => {
           try {
             const data = JSON.parse(message.body)
-            this.notify('online_status', data)
+            // 服务端按窗口合并推送，逐个用户分发，订阅方仍按 { username, status } 处理
+            if (data.event === 'user_status_batch') {
+              for (const change of data.changes || []) {
+                this.notify('online_status', change)
+              }
+            } else {
+              this.notify('online_status', data)
+            }
           } catch (e) {
             console.error('Failed to parse online status:', e)
           }
@@ -116,6 +167,7 @@ class WebSocketService {
     // only on actual logout or if explicitly forced
     if (!force) return
 
+    this.generation++
     if (this.stompClient) {
       this.stompClient.disconnect(() => {
         this.isConnected = false
@@ -141,6 +193,71 @@ class WebSocketService {
     }
   }
 
+  /**
+   * 只接收指定区域的座位变更与统计 (/topic/seats/{area}、/topic/stats/{area})，传 null 恢复全馆订阅。
+   * 切换后通知页面重新同步一次，补齐切换期间的变更。
+   */
+  setSeatArea(area: string | null) {
+    if (area === this.seatArea) return
+    this.seatArea = area
+    if (this.stompClient && this.isConnected) {
+      this.subscribeSeats()
+      this.notify('seat_resync', {})
+    }
+  }
+
+  private subscribeSeats() {
+    this.seatSubscriptions.forEach(sub => {
+      try {
+        sub.unsubscribe()
+      } catch (e) {
+        // 断线重连后旧订阅所在的连接已失效
+      }
+    })
+    this.seatSubscriptions = []
+    this.seatSeqs.clear()
+    if (!this.stompClient) return
+
+    const destination = this.seatArea ? `/topic/seats/${this.seatArea}` : '/topic/seats'
+    this.seatSubscriptions.push(this.stompClient.subscribe(destination, (message) => {
+      try {
+        const data = JSON.parse(message.body)
+        if (data.event === 'seat_batch') {
+          this.handleSeatBatch(data)
+        } else if (data.event === 'seat_update') {
+          this.notify('seat_update', data)
+        }
+      } catch (e) {
+        console.error('Failed to parse WebSocket message:', e)
+      }
+    }))
+
+    if (this.seatArea) {
+      this.seatSubscriptions.push(this.stompClient.subscribe(`/topic/stats/${this.seatArea}`, (message) => {
+        try {
+          this.notify('area_stats_update', JSON.parse(message.body))
+        } catch (e) {
+          console.error('Failed to parse area stats update:', e)
+        }
+      }))
+    }
+  }
+
+  /**
+   * 服务端按时间窗口合并的座位变更；同一来源节点的 seq 不连续说明漏帧，通知页面走增量同步补齐。
+   * 首次收到某个节点的帧 (新节点或节点重启) 时只记录其序号
+   */
+  private handleSeatBatch(data: { origin?: string, seq: number, updates: { id: number, status: string }[] }) {
+    const origin = data.origin || ''
+    const last = this.seatSeqs.get(origin)
+    const gap = last !== undefined && data.seq !== last + 1
+    this.seatSeqs.set(origin, data.seq)
+    if (gap) {
+      this.notify('seat_resync', {})
+    }
+    data.updates.forEach(update => this.notify('seat_update', update))
+  }
+
   private notify(event: string, data: any) {
     const callbacks = this.listeners.get(event)
     callbacks?.forEach(cb => cb(data))